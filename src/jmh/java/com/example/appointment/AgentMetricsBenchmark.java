@@ -0,0 +1,39 @@
+package com.example.appointment;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of the recording path the handler runs for every message: one histogram record from several
+// threads at once (run with -prof gc to confirm it allocates nothing), and a snapshot for comparison.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AgentMetricsBenchmark {
+    private final AgentMetrics metrics = new AgentMetrics();
+
+    @State(Scope.Thread)
+    public static class Latency {
+        long nanos = 1;
+
+        long next() {
+            // Spread over ~1us..1s so records land in many buckets
+            nanos = nanos * 6364136223846793005L + 1442695040888963407L;
+            return 1_000 + (nanos >>> 34);
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void record(Latency latency) {
+        metrics.record(AgentMetrics.Timer.USER_MESSAGE, latency.next());
+    }
+
+    @Benchmark
+    public AgentMetrics.Snapshot snapshot() {
+        return metrics.snapshot();
+    }
+}
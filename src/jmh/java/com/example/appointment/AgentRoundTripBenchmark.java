@@ -0,0 +1,101 @@
+package com.example.appointment;
+
+import com.cajunsystems.ActorContext;
+import com.cajunsystems.ActorSystem;
+import com.cajunsystems.Pid;
+import com.cajunsystems.handler.Handler;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// End-to-end dispatch through a real ActorSystem: a message is told to a conversation actor and the
+// benchmark waits for its AgentResponse. userMessage goes all the way through the HTTP client to a
+// local MockCompletionServer (so it includes loopback HTTP but no model latency); availableSlots
+// stays inside the actor.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AgentRoundTripBenchmark {
+
+    @Param({"false", "true"})
+    boolean streaming;
+
+    // 0 disables the response cache so every userMessage reaches the server; with a cache the same
+    // question is answered from memory after the first time
+    @Param({"0", "1000"})
+    int cacheSize;
+
+    private ActorSystem system;
+    private MockCompletionServer llm;
+    private AgentSessions sessions;
+    private Pid replyTo;
+    private final BlockingQueue<AgentResponse> replies = new LinkedBlockingQueue<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        llm = MockCompletionServer.replying(
+                "We have openings on 2025-11-05 at 10:00 and 14:00.\nWhich one works best for you?");
+        LlmSettings settings = new LlmSettings(
+                LlmSettings.completionsUri(llm.baseUrl()), "benchmark", "gpt-4", streaming, false);
+
+        SlotInventory calendar = SlotInventory.empty();
+        LocalDate start = LocalDate.of(2025, 11, 5);
+        for (int d = 0; d < 7; d++) {
+            for (int hour = 9; hour < 17; hour++) {
+                calendar = calendar.withSlot(start.plusDays(d), LocalTime.of(hour, 0));
+            }
+        }
+
+        system = new ActorSystem();
+        sessions = new AgentSessions(system, new SlotInventoryService(calendar),
+                new ContextWindow(3000, 6), settings, new LlmCallScheduler(256, 4, 8, 32, 15_000),
+                new LlmRetryPolicy(30_000, 60_000, 3, 250, 20, false),
+                new ResponseCache(cacheSize, 300, 4), AppointmentJournal.NONE, new AgentMetrics());
+        sessions.sessionFor("benchmark");
+        replyTo = system.actorOf(new Collector(replies)).withId("benchmark-replies").spawn();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        system.shutdown();
+        llm.close();
+    }
+
+    @Benchmark
+    public AgentResponse userMessage() throws InterruptedException {
+        sessions.tell("benchmark", new UserMessage("What times do you have on Wednesday?", replyTo));
+        // Streamed replies arrive as fragments first; the round trip ends with the complete reply
+        AgentResponse response;
+        do {
+            response = replies.take();
+        } while (response.part() == AgentResponse.Part.FRAGMENT);
+        return response;
+    }
+
+    @Benchmark
+    public AgentResponse availableSlots() throws InterruptedException {
+        sessions.tell("benchmark", new GetAvailableSlots(replyTo));
+        return replies.take();
+    }
+
+    static final class Collector implements Handler<AgentResponse> {
+        private final BlockingQueue<AgentResponse> replies;
+
+        Collector(BlockingQueue<AgentResponse> replies) {
+            this.replies = replies;
+        }
+
+        @Override
+        public void receive(AgentResponse message, ActorContext context) {
+            replies.add(message);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.appointment;
+
+import com.cajunsystems.ActorSystem;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+// Time to spawn sessions conversation actors in a fresh ActorSystem, and what they cost to keep: after
+// each iteration the heap in use (after a GC) per session and the platform threads added are reported
+// as counters next to the score. Every session shares LlmClient and the JSON mapper, so neither number
+// should grow with connection pools or selector threads per session.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AgentStartupBenchmark {
+
+    @Param({"10000"})
+    int sessions;
+
+    private ActorSystem system;
+    private AgentSessions agents;
+
+    // Measured against the freshly set up benchmark, before and after the sessions are spawned
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long heapBytesPerSession;
+        public long addedThreads;
+        private long baselineHeap;
+        private int baselineThreads;
+
+        @Setup(Level.Iteration)
+        public void baseline(AgentStartupBenchmark benchmark) {
+            baselineHeap = usedHeap();
+            baselineThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+        }
+
+        @TearDown(Level.Iteration)
+        public void measure(AgentStartupBenchmark benchmark) {
+            heapBytesPerSession = (usedHeap() - baselineHeap) / Math.max(1, benchmark.agents.size());
+            addedThreads = ManagementFactory.getThreadMXBean().getThreadCount() - baselineThreads;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        LlmSettings settings = new LlmSettings(
+                LlmSettings.completionsUri("http://localhost:1"), "benchmark", "gpt-4", false, false);
+        SlotInventory calendar = SlotInventory.empty()
+                .withSlots(LocalDate.of(2025, 11, 5), LocalTime.of(9, 0), LocalTime.of(10, 0));
+        system = new ActorSystem();
+        agents = new AgentSessions(system, new SlotInventoryService(calendar),
+                new ContextWindow(3000, 6), settings, new LlmCallScheduler(256, 4, 8, 32, 15_000),
+                new LlmRetryPolicy(30_000, 60_000, 3, 250, 20, false),
+                new ResponseCache(0, 300, 4), AppointmentJournal.NONE, new AgentMetrics());
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        system.shutdown();
+    }
+
+    @Benchmark
+    public int spawnSessions(Footprint footprint) {
+        for (int i = 0; i < sessions; i++) {
+            agents.sessionFor("session-" + i);
+        }
+        return agents.size();
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
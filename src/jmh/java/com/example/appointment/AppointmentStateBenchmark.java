@@ -0,0 +1,146 @@
+package com.example.appointment;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// Compares the persistent AppointmentState against the copy-on-write implementation it replaced.
+// Bookings are spread across the calendar so the copy-on-write hasBooking scan has real work to do.
+// Run with the gc profiler (enabled in build.gradle) to get gc.alloc.rate.norm, i.e. bytes per update.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AppointmentStateBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    int historySize;
+
+    @Param({"7", "365"})
+    int calendarDays;
+
+    private AppointmentState persistent;
+    private SlotInventory inventory;
+    private CopyOnWriteState copyOnWrite;
+    private String bookDate;
+    private String lastDate;
+    // The same slots as SlotTime epoch minutes, for the persistent side
+    private int bookSlot;
+    private int lastFreeSlot;
+    private int lastBookedSlot;
+
+    @Setup
+    public void setUp() {
+        inventory = SlotInventory.empty();
+        Map<String, List<String>> mutableSlots = new HashMap<>();
+        LocalDate start = LocalDate.of(2025, 11, 5);
+        for (int d = 0; d < calendarDays; d++) {
+            LocalDate date = start.plusDays(d);
+            inventory = inventory.withSlots(date, LocalTime.of(9, 0), LocalTime.of(10, 0), LocalTime.of(11, 0),
+                    LocalTime.of(14, 0), LocalTime.of(15, 0), LocalTime.of(16, 0));
+            mutableSlots.put(date.toString(), List.of("09:00", "10:00", "11:00", "14:00", "15:00", "16:00"));
+        }
+        persistent = new AppointmentState();
+        copyOnWrite = new CopyOnWriteState(new ArrayList<>(), mutableSlots, new ArrayList<>());
+        for (int i = 0; i < historySize; i++) {
+            persistent = persistent.addMessage("user", "message " + i);
+            copyOnWrite = copyOnWrite.addMessage("user", "message " + i);
+        }
+        for (int d = 0; d < calendarDays; d++) {
+            String date = start.plusDays(d).toString();
+            inventory = inventory.book(SlotTime.of(start.plusDays(d), LocalTime.of(9, 0)));
+            copyOnWrite = copyOnWrite.bookSlot(date, "09:00");
+        }
+        bookDate = start.plusDays(calendarDays / 2).toString();
+        lastDate = start.plusDays(calendarDays - 1).toString();
+        bookSlot = SlotTime.parse(bookDate, "10:00");
+        lastFreeSlot = SlotTime.parse(lastDate, "16:00");
+        lastBookedSlot = SlotTime.parse(lastDate, "09:00");
+    }
+
+    @Benchmark
+    public AppointmentState persistentAddMessage() {
+        return persistent.addMessage("assistant", "reply");
+    }
+
+    @Benchmark
+    public CopyOnWriteState copyOnWriteAddMessage() {
+        return copyOnWrite.addMessage("assistant", "reply");
+    }
+
+    @Benchmark
+    public SlotInventory persistentBookAndCancel() {
+        return inventory.book(bookSlot).cancel(bookSlot);
+    }
+
+    @Benchmark
+    public CopyOnWriteState copyOnWriteBookAndCancel() {
+        return copyOnWrite.bookSlot(bookDate, "10:00").removeBooking(bookDate, "10:00");
+    }
+
+    @Benchmark
+    public boolean persistentIsAvailable() {
+        return inventory.isAvailable(lastFreeSlot);
+    }
+
+    @Benchmark
+    public boolean copyOnWriteIsAvailable() {
+        List<String> slots = copyOnWrite.availableSlots().get(lastDate);
+        return slots != null && slots.contains("16:00");
+    }
+
+    @Benchmark
+    public boolean persistentHasBooking() {
+        return inventory.isBooked(lastBookedSlot);
+    }
+
+    @Benchmark
+    public boolean copyOnWriteHasBooking() {
+        return copyOnWrite.hasBooking(lastDate, "09:00");
+    }
+
+    // Verbatim copy of the pre-persistent AppointmentState, kept as the baseline
+    record CopyOnWriteState(List<Message> conversationHistory, Map<String, List<String>> availableSlots,
+                            List<Booking> confirmedBookings) {
+        CopyOnWriteState addMessage(String role, String content) {
+            List<Message> newHistory = new ArrayList<>(conversationHistory);
+            newHistory.add(new Message(role, content));
+            return new CopyOnWriteState(newHistory, availableSlots, confirmedBookings);
+        }
+
+        CopyOnWriteState bookSlot(String date, String time) {
+            List<Booking> newBookings = new ArrayList<>(confirmedBookings);
+            newBookings.add(new Booking(date, time));
+            Map<String, List<String>> newSlots = new HashMap<>(availableSlots);
+            List<String> daySlots = new ArrayList<>(newSlots.get(date));
+            daySlots.remove(time);
+            newSlots.put(date, daySlots);
+            return new CopyOnWriteState(conversationHistory, newSlots, newBookings);
+        }
+
+        boolean hasBooking(String date, String time) {
+            return confirmedBookings.stream().anyMatch(b -> b.date().equals(date) && b.time().equals(time));
+        }
+
+        CopyOnWriteState removeBooking(String date, String time) {
+            List<Booking> newBookings = new ArrayList<>(confirmedBookings);
+            boolean removed = newBookings.removeIf(b -> b.date().equals(date) && b.time().equals(time));
+            if (!removed) return this;
+            Map<String, List<String>> newSlots = new HashMap<>(availableSlots);
+            List<String> daySlots = new ArrayList<>(newSlots.getOrDefault(date, new ArrayList<>()));
+            if (!daySlots.contains(time)) {
+                daySlots.add(time);
+                Collections.sort(daySlots);
+            }
+            newSlots.put(date, daySlots);
+            return new CopyOnWriteState(conversationHistory, newSlots, newBookings);
+        }
+    }
+
+    record Booking(String date, String time) {}
+}
@@ -0,0 +1,104 @@
+package com.example.appointment;
+
+import com.cajunsystems.ActorContext;
+import com.cajunsystems.ActorSystem;
+import com.cajunsystems.Pid;
+import com.cajunsystems.handler.Handler;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// A bulk import through a real ActorSystem: batchSize slots are booked and then cancelled again, either
+// as one BookAppointment / CancelAppointment message per slot or as a single BookAppointments and
+// CancelAppointments. The per-slot variant waits for every cancellation reply, the batched one for its
+// two BatchResults, so both end when the calendar is back where it started.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BulkBookingBenchmark {
+
+    @Param({"100", "1000"})
+    int batchSize;
+
+    private ActorSystem system;
+    private AgentSessions sessions;
+    private Pid replyTo;
+    private int[] slots;
+    private final BlockingQueue<Object> replies = new LinkedBlockingQueue<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Two weeks of slots every 15 minutes from 8:00 to 20:00, booked in calendar order
+        SlotInventory calendar = SlotInventory.empty();
+        LocalDate start = LocalDate.of(2025, 11, 3);
+        slots = new int[batchSize];
+        int count = 0;
+        for (int d = 0; d < 14; d++) {
+            for (int minute = 8 * 60; minute < 20 * 60; minute += 15) {
+                LocalTime time = LocalTime.of(minute / 60, minute % 60);
+                calendar = calendar.withSlot(start.plusDays(d), time);
+                if (count < batchSize) {
+                    slots[count++] = SlotTime.of(start.plusDays(d), time);
+                }
+            }
+        }
+
+        LlmSettings settings = new LlmSettings(
+                LlmSettings.completionsUri("http://localhost:1"), "benchmark", "gpt-4", false, false);
+        system = new ActorSystem();
+        sessions = new AgentSessions(system, new SlotInventoryService(calendar),
+                new ContextWindow(3000, 6), settings, new LlmCallScheduler(256, 4, 8, 32, 15_000),
+                new LlmRetryPolicy(30_000, 60_000, 3, 250, 20, false),
+                new ResponseCache(0, 300, 4), AppointmentJournal.NONE, new AgentMetrics());
+        sessions.sessionFor("import");
+        replyTo = system.actorOf(new Collector(replies)).withId("import-replies").spawn();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        system.shutdown();
+    }
+
+    @Benchmark
+    public Object perSlotMessages() throws InterruptedException {
+        for (int slot : slots) {
+            sessions.tell("import", new BookAppointment(slot, replyTo));
+        }
+        for (int slot : slots) {
+            sessions.tell("import", new CancelAppointment(slot, replyTo));
+        }
+        Object last = null;
+        for (int i = 0; i < slots.length; i++) {
+            last = replies.take();
+        }
+        return last;
+    }
+
+    @Benchmark
+    public Object batchMessages() throws InterruptedException {
+        sessions.tell("import", new BookAppointments(slots, replyTo));
+        sessions.tell("import", new CancelAppointments(slots, replyTo));
+        replies.take();
+        return replies.take();
+    }
+
+    static final class Collector implements Handler<Object> {
+        private final BlockingQueue<Object> replies;
+
+        Collector(BlockingQueue<Object> replies) {
+            this.replies = replies;
+        }
+
+        @Override
+        public void receive(Object message, ActorContext context) {
+            replies.add(message);
+        }
+    }
+}
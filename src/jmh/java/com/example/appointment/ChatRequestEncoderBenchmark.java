@@ -0,0 +1,77 @@
+package com.example.appointment;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Bytes allocated per request body (gc.alloc.rate.norm) for the String.format builder that
+// buildOpenAIRequest used, including the getBytes copy made by BodyPublishers.ofString,
+// against the pooled streaming encoder, including the copy its publisher hands the HttpClient.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatRequestEncoderBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int historySize;
+
+    private AppointmentState state;
+    private ChatRequestEncoder encoder;
+    private String systemPrompt;
+
+    @Setup
+    public void setUp() {
+        state = new AppointmentState();
+        for (int i = 0; i < historySize; i++) {
+            state = state.addMessage(i % 2 == 0 ? "user" : "assistant",
+                    "Could I get the \"11:00\" slot on 2025-11-06?\nThanks - message " + i);
+        }
+        encoder = new ChatRequestEncoder("gpt-4");
+        systemPrompt = new SystemPromptRenderer(new SlotInventoryService(SlotInventory.empty())).systemPrompt();
+    }
+
+    @Benchmark
+    public long streamingEncoder() {
+        ChatRequestEncoder.Body body = encoder.encode(systemPrompt, state, false);
+        long length = body.publisher().contentLength();
+        encoder.release(body);
+        return length;
+    }
+
+    @Benchmark
+    public byte[] legacyStringFormat() {
+        return legacyRequest(systemPrompt, state).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // The pre-encoder buildOpenAIRequest, kept as the baseline
+    private static String legacyRequest(String systemPrompt, AppointmentState state) {
+        String conversationHistory = state.conversationHistory().stream()
+                .map(m -> String.format("{\"role\": \"%s\", \"content\": \"%s\"}",
+                        m.role(), escapeJson(m.content())))
+                .collect(Collectors.joining(",\n                    "));
+
+        return String.format("""
+                        {
+                            "model": "gpt-4",
+                            "messages": [
+                                {"role": "system", "content": "%s"}%s
+                            ]
+                        }
+                        """,
+                escapeJson(systemPrompt),
+                conversationHistory.isEmpty() ? "" : ",\n                    " + conversationHistory);
+    }
+
+    private static String escapeJson(String text) {
+        return text.replace("\\", "\\\\")
+                .replace("\"", "\\\"")
+                .replace("\n", "\\n")
+                .replace("\r", "\\r")
+                .replace("\t", "\\t");
+    }
+}
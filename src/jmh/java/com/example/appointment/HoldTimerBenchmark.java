@@ -0,0 +1,64 @@
+package com.example.appointment;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Scheduling the expiry of holds timeouts at once: on the TimerWheel SlotHolds uses, and as one task
+// per hold on a ScheduledThreadPoolExecutor. The timeouts are due a couple of seconds later, after the
+// measurement; each iteration then waits for them to fire so the next starts with an empty wheel.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HoldTimerBenchmark {
+    private static final long DELAY_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    @Param({"1000000"})
+    int holds;
+
+    private final TimerWheel wheel = new TimerWheel("benchmark-wheel", 100, 512);
+    private final AtomicLong expired = new AtomicLong();
+    private ScheduledThreadPoolExecutor executor;
+
+    private final class Expiry extends TimerWheel.Timeout {
+        @Override
+        protected void expire() {
+            expired.incrementAndGet();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        executor = new ScheduledThreadPoolExecutor(1);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws InterruptedException {
+        while (wheel.pending() > 0) {
+            Thread.sleep(100);
+        }
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public long timerWheel() {
+        for (int i = 0; i < holds; i++) {
+            wheel.schedule(new Expiry(), DELAY_NANOS);
+        }
+        return wheel.pending();
+    }
+
+    @Benchmark
+    public long scheduledExecutor() {
+        for (int i = 0; i < holds; i++) {
+            executor.schedule(expired::incrementAndGet, DELAY_NANOS, TimeUnit.NANOSECONDS);
+        }
+        return executor.getQueue().size();
+    }
+}
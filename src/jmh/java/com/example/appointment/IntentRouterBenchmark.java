@@ -0,0 +1,54 @@
+package com.example.appointment;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+// What the local fast path costs per user message: a routed request, a message that falls through to
+// the LLM (which pays this on top of the completion call), and a cancel resolved against the bookings.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntentRouterBenchmark {
+    private static final String SESSION = "session-benchmark";
+
+    private final IntentRouter router = new IntentRouter(Clock.systemDefaultZone());
+    private SlotInventoryService inventory;
+
+    @Setup
+    public void setUp() {
+        SlotInventory calendar = SlotInventory.empty();
+        LocalDate start = LocalDate.now();
+        for (int d = 0; d < 30; d++) {
+            for (int hour = 9; hour < 17; hour++) {
+                calendar = calendar.withSlot(start.plusDays(d), LocalTime.of(hour, 0));
+            }
+        }
+        inventory = new SlotInventoryService(calendar);
+        for (int d = 0; d < 30; d += 3) {
+            inventory.tryBook(SlotTime.of(start.plusDays(d), LocalTime.of(10, 0)), SESSION);
+        }
+        inventory.tryBook(SlotTime.of(start.plusDays(1), LocalTime.of(15, 0)), SESSION);
+    }
+
+    @Benchmark
+    public IntentRouter.Route routeBooking() {
+        return router.route("Please book 2025-11-06 at 09:00.", inventory, SESSION);
+    }
+
+    @Benchmark
+    public IntentRouter.Route fallThrough() {
+        return router.route("Do you have anything on Thursday morning, or maybe Friday?", inventory, SESSION);
+    }
+
+    @Benchmark
+    public IntentRouter.Route resolveCancel() {
+        return router.route("cancel my 3pm", inventory, SESSION);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.appointment;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+// Time to reopen a store after one million events (90% history appends across 1,000 sessions, 10%
+// bookings and cancellations over a 90-day calendar). "journal" has no snapshot and replays all of them;
+// "snapshot" loads a snapshot taken 10,000 events before the end and replays only that tail.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JournalRecoveryBenchmark {
+    static final int EVENTS = 1_000_000;
+    static final int TAIL = 10_000;
+
+    @Param({"journal", "snapshot"})
+    String recoverFrom;
+
+    private Path directory;
+    private SlotInventory calendar;
+    private ContextWindow contextWindow;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal-recovery");
+        contextWindow = new ContextWindow(3000, 6);
+        calendar = SlotInventory.empty();
+        LocalDate start = LocalDate.of(2025, 11, 5);
+        for (int d = 0; d < 90; d++) {
+            for (int hour = 9; hour < 17; hour++) {
+                calendar = calendar.withSlots(start.plusDays(d), LocalTime.of(hour, 0), LocalTime.of(hour, 30));
+            }
+        }
+
+        JournalStore store = JournalStore.open(directory, calendar, contextWindow, 64, 64 << 20, 5, Long.MAX_VALUE);
+        SlotInventoryService inventory = store.inventory();
+        AppointmentState[] sessions = new AppointmentState[1000];
+        for (int i = 0; i < EVENTS; i++) {
+            if (recoverFrom.equals("snapshot") && i == EVENTS - TAIL) {
+                store.snapshot();
+            }
+            if (i % 10 == 0) {
+                int slot = SlotTime.of(start.plusDays((i / 10) % 90), LocalTime.of(9 + (i / 900) % 8, (i / 7200) % 2 * 30));
+                if (!inventory.tryBook(slot)) {
+                    inventory.cancel(slot);
+                }
+            } else {
+                int session = i % sessions.length;
+                String role = (i / sessions.length) % 2 == 0 ? "user" : "assistant";
+                String content = role.equals("user")
+                        ? "Do you have anything on day " + (i % 90) + " in the afternoon?"
+                        : "Yes, we have openings at 14:00 and 15:30 that day. Shall I book one for you?";
+                AppointmentState state = sessions[session] == null ? new AppointmentState() : sessions[session];
+                sessions[session] = contextWindow.fit(state.addMessage(role, content));
+                store.messageAppended("session-" + session, role, content, sessions[session]);
+            }
+        }
+        store.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        JournalWriteBenchmark.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public SlotInventoryService recover() {
+        JournalStore store = JournalStore.open(directory, calendar, contextWindow, 64, 64 << 20, 5, Long.MAX_VALUE);
+        store.close();
+        return store.inventory();
+    }
+}
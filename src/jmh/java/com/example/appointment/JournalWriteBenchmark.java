@@ -0,0 +1,76 @@
+package com.example.appointment;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Journal write throughput: one invocation appends a million events (encode + CRC + copy into the
+// mapping, segments rolling every 64 MiB) to a fresh directory, so the score is the time per event.
+// "durable" additionally waits for the group commit covering the last event.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JournalWriteBenchmark {
+    static final int EVENTS = 1_000_000;
+
+    @Param({"booking", "message"})
+    String event;
+
+    private Path directory;
+    private MappedJournal journal;
+    private String content;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal-write");
+        journal = MappedJournal.open(directory, 64 << 20, 5);
+        content = "Sure! We have openings on 2025-11-05 at 10:00, 14:00 and 16:00. Which one works best for you?";
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        journal.close();
+        deleteRecursively(directory);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public long append() {
+        return write();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public long durable() throws InterruptedException {
+        long position = write();
+        journal.awaitDurable(position);
+        return position;
+    }
+
+    private long write() {
+        long position = 0;
+        for (int i = 0; i < EVENTS; i++) {
+            byte[] payload = event.equals("booking")
+                    ? new SlotBooked(20_397 + (i & 63), 540 + (i & 7) * 30, "session-" + (i & 1023)).encode()
+                    : new MessageAppended("session-" + (i & 1023), (i & 1) == 0 ? "user" : "assistant", content).encode();
+            position = journal.append(payload);
+        }
+        return position;
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.appointment;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Bookkeeping cost the scheduler adds to each LLM call: submit, dispatch, completion and limit
+// update, with calls that complete immediately, from 8 threads acting as separate sessions.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class LlmCallSchedulerBenchmark {
+
+    private static final CompletableFuture<Integer> OK = CompletableFuture.completedFuture(200);
+
+    private final AtomicInteger sessions = new AtomicInteger();
+    private LlmCallScheduler scheduler;
+
+    @State(Scope.Thread)
+    public static class Session {
+        String id;
+
+        @Setup
+        public void setUp(LlmCallSchedulerBenchmark benchmark) {
+            id = "session-" + benchmark.sessions.incrementAndGet();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        scheduler = new LlmCallScheduler(256, 4, 8, 32, 15_000);
+    }
+
+    @Benchmark
+    public boolean submit(Session session) {
+        return scheduler.submit(session.id, () -> OK);
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.appointment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Encode and decode cost of MessageCodec against Java serialization and Jackson, for a session state
+// and a booking message; each encode benchmark also reports the encoded size as its "bytes" counter.
+// Jackson goes through plain mirror records, since it can neither rebuild a PersistentVector nor a Pid
+// on its own, and the booking's replyTo is null for all three because a Pid would drag its ActorSystem
+// into the other two.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageCodecBenchmark {
+    record StateJson(List<Message> conversationHistory, String summary, long evictedTokens) {}
+
+    record BookingJson(int slot, String replyTo) {}
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EncodedSize {
+        public long bytes;
+    }
+
+    @Param({"10", "100"})
+    int historySize;
+
+    private final ObjectMapper json = new ObjectMapper();
+    private AppointmentState state;
+    private BookAppointment booking;
+    private byte[] codecState;
+    private byte[] javaState;
+    private byte[] jacksonState;
+    private byte[] codecBooking;
+    private byte[] javaBooking;
+    private byte[] jacksonBooking;
+
+    @Setup
+    public void setUp() throws IOException {
+        state = new AppointmentState(PersistentVector.empty(), "User asked about 2025-11-05.", 1200);
+        for (int i = 0; i < historySize; i++) {
+            state = i % 2 == 0
+                    ? state.addMessage("user", "Could I get the 11:00 slot on 2025-11-06? Message " + i)
+                    : state.addMessage("assistant", "We have openings on 2025-11-06 at 11:00 and 14:00. "
+                            + "Which one works best for you? Message " + i);
+        }
+        booking = new BookAppointment(SlotTime.parse("2025-11-06", "11:00"), null);
+
+        codecState = MessageCodec.encode(state);
+        javaState = javaEncode(state);
+        jacksonState = json.writeValueAsBytes(state);
+        codecBooking = MessageCodec.encode(booking);
+        javaBooking = javaEncode(booking);
+        jacksonBooking = json.writeValueAsBytes(new BookingJson(booking.slot(), null));
+    }
+
+    @Benchmark
+    public byte[] codecEncodeState(EncodedSize size) {
+        return counted(MessageCodec.encode(state), size);
+    }
+
+    @Benchmark
+    public byte[] javaEncodeState(EncodedSize size) throws IOException {
+        return counted(javaEncode(state), size);
+    }
+
+    @Benchmark
+    public byte[] jacksonEncodeState(EncodedSize size) throws IOException {
+        return counted(json.writeValueAsBytes(state), size);
+    }
+
+    @Benchmark
+    public AppointmentState codecDecodeState() {
+        return MessageCodec.decodeState(ByteBuffer.wrap(codecState));
+    }
+
+    @Benchmark
+    public Object javaDecodeState() throws IOException, ClassNotFoundException {
+        return javaDecode(javaState);
+    }
+
+    @Benchmark
+    public AppointmentState jacksonDecodeState() throws IOException {
+        StateJson decoded = json.readValue(jacksonState, StateJson.class);
+        return new AppointmentState(PersistentVector.copyOf(decoded.conversationHistory()),
+                decoded.summary(), decoded.evictedTokens());
+    }
+
+    @Benchmark
+    public byte[] codecEncodeBooking(EncodedSize size) {
+        return counted(MessageCodec.encode(booking), size);
+    }
+
+    @Benchmark
+    public byte[] javaEncodeBooking(EncodedSize size) throws IOException {
+        return counted(javaEncode(booking), size);
+    }
+
+    @Benchmark
+    public byte[] jacksonEncodeBooking(EncodedSize size) throws IOException {
+        return counted(json.writeValueAsBytes(new BookingJson(booking.slot(), null)), size);
+    }
+
+    @Benchmark
+    public AppointmentMessage codecDecodeBooking() {
+        return MessageCodec.decodeMessage(ByteBuffer.wrap(codecBooking), null);
+    }
+
+    @Benchmark
+    public Object javaDecodeBooking() throws IOException, ClassNotFoundException {
+        return javaDecode(javaBooking);
+    }
+
+    @Benchmark
+    public BookAppointment jacksonDecodeBooking() throws IOException {
+        BookingJson decoded = json.readValue(jacksonBooking, BookingJson.class);
+        return new BookAppointment(decoded.slot(), null);
+    }
+
+    private static byte[] counted(byte[] encoded, EncodedSize size) {
+        size.bytes = encoded.length;
+        return encoded;
+    }
+
+    private static byte[] javaEncode(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object javaDecode(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+}
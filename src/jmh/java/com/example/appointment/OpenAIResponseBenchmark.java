@@ -0,0 +1,51 @@
+package com.example.appointment;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+// Handling of a complete (non-streamed) completion body: Jackson parse of the choices array, then
+// command extraction and reply cleaning.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpenAIResponseBenchmark {
+
+    @Param({"command", "plain"})
+    String reply;
+
+    private AppointmentAgentHandler handler;
+    private String body;
+
+    @Setup
+    public void setUp() {
+        SlotInventoryService inventory = new SlotInventoryService(
+                SlotInventory.empty().withSlots(LocalDate.of(2025, 11, 6), LocalTime.of(9, 0)));
+        handler = new AppointmentAgentHandler(inventory, new ContextWindow(3000, 6),
+                new SystemPromptRenderer(inventory), LlmSettings.fromEnvironment(),
+                LlmCallScheduler.fromEnvironment(), LlmRetryPolicy.fromEnvironment(), ResponseCache.fromEnvironment(),
+                AppointmentJournal.NONE, new AgentMetrics());
+        String content = reply.equals("command")
+                ? "BOOK:2025-11-06:09:00\\nGreat! Your appointment on November 6th, 2025 at 9:00 AM is confirmed."
+                : "We have openings on 2025-11-05 at 10:00, 14:00 and 16:00. Which one works best for you?";
+        body = "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion\",\"created\":1730000000,\"model\":\"gpt-4\","
+                + "\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\"" + content + "\"},"
+                + "\"finish_reason\":\"stop\"}],"
+                + "\"usage\":{\"prompt_tokens\":412,\"completion_tokens\":31,\"total_tokens\":443}}";
+    }
+
+    @Benchmark
+    public String parse() {
+        return handler.parseOpenAIResponse(body);
+    }
+
+    @Benchmark
+    public ResponseInterpreter.Interpretation parseAndInterpret() {
+        return ResponseInterpreter.interpret(handler.parseOpenAIResponse(body));
+    }
+}
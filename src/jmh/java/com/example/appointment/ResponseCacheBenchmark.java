@@ -0,0 +1,48 @@
+package com.example.appointment;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of a cache lookup on the UserMessage path: building the normalized key from the recent turns,
+// then a hit or a miss.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseCacheBenchmark {
+
+    @Param({"1000", "100000"})
+    int cacheSize;
+
+    private ResponseCache cache;
+    private AppointmentState cachedConversation;
+    private AppointmentState newConversation;
+
+    @Setup
+    public void setUp() {
+        cache = new ResponseCache(cacheSize, 300, 4);
+        for (int i = 0; i < cacheSize; i++) {
+            AppointmentState filler = new AppointmentState().addMessage("user", "Do you have anything on day " + i + "?");
+            cache.put(cache.keyFor(1, 0, filler), "Reply " + i, 1_000_000);
+        }
+        cachedConversation = new AppointmentState()
+                .addMessage("user", "Hi, I need an appointment")
+                .addMessage("assistant", "Sure! We have openings on 2025-11-05 at 10:00, 14:00 and 16:00.")
+                .addMessage("user", "What slots do you have tomorrow?");
+        cache.put(cache.keyFor(1, 0, cachedConversation), "Tomorrow we have 09:00, 11:00 and 15:00.", 1_000_000);
+        newConversation = cachedConversation.addMessage("user", "Anything later in the week?");
+    }
+
+    @Benchmark
+    public String hit() {
+        return cache.get(cache.keyFor(1, 0, cachedConversation));
+    }
+
+    @Benchmark
+    public String miss() {
+        return cache.get(cache.keyFor(1, 0, newConversation));
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.appointment;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Book/cancel throughput of the shared inventory under concurrent sessions. "spread" picks a random
+// day per operation (sessions rarely share a stripe); "hot" sends every thread to the same day.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class SlotInventoryServiceBenchmark {
+    private static final int DAYS = 365;
+    private static final LocalDate START = LocalDate.of(2025, 11, 5);
+
+    @Param({"spread", "hot"})
+    String access;
+
+    private SlotInventoryService service;
+    private int[][] slots;
+
+    @Setup
+    public void setUp() {
+        SlotInventory calendar = SlotInventory.empty();
+        slots = new int[DAYS][20];
+        for (int d = 0; d < DAYS; d++) {
+            LocalDate date = START.plusDays(d);
+            for (int i = 0; i < slots[d].length; i++) {
+                LocalTime time = LocalTime.of(8 + i / 2, (i % 2) * 30);
+                calendar = calendar.withSlots(date, time);
+                slots[d][i] = SlotTime.of(date, time);
+            }
+        }
+        service = new SlotInventoryService(calendar);
+    }
+
+    @Benchmark
+    public boolean bookThenCancel() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int[] day = access.equals("hot") ? slots[0] : slots[random.nextInt(DAYS)];
+        int slot = day[random.nextInt(day.length)];
+        return service.tryBook(slot) && service.cancel(slot);
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.appointment;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+// Cost of turning a command's date and time into a slot at the edge: SlotTime reads the digits in place,
+// the java.time path it replaced parsed both strings into objects on every book, cancel and lookup.
+// The gc profiler's gc.alloc.rate.norm shows the per-parse garbage.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlotTimeBenchmark {
+    private final String reply = "Great, you're all set.\nBOOK:2025-11-05:14:30";
+    private final String date = "2025-11-05";
+    private final String time = "14:30";
+    private final int slot = SlotTime.parse(date, time);
+
+    @Benchmark
+    public int slotTimeParse() {
+        return SlotTime.parse(date, time);
+    }
+
+    @Benchmark
+    public int slotTimeParseInPlace() {
+        return SlotTime.parse(reply, 28, reply, 39);
+    }
+
+    @Benchmark
+    public LocalDateTime javaTimeParse() {
+        return LocalDate.parse(date).atTime(LocalTime.parse(time));
+    }
+
+    @Benchmark
+    public String slotTimeFormat() {
+        return SlotTime.formatDate(slot) + " at " + SlotTime.formatTime(slot);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.appointment;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+// Cost of producing the system prompt: "unchanged" is the steady-state hot path (cached string),
+// "afterBooking" re-renders after one day changed; ranges writes that day with SlotRangeFormat.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SystemPromptBenchmark {
+
+    @Param({"7", "90"})
+    int calendarDays;
+
+    @Param({"false", "true"})
+    boolean ranges;
+
+    private SlotInventoryService inventory;
+    private SystemPromptRenderer renderer;
+    private int slot;
+
+    @Setup
+    public void setUp() {
+        SlotInventory calendar = SlotInventory.empty();
+        LocalDate start = LocalDate.of(2025, 11, 5);
+        for (int d = 0; d < calendarDays; d++) {
+            for (int hour = 9; hour < 17; hour++) {
+                calendar = calendar.withSlots(start.plusDays(d), LocalTime.of(hour, 0), LocalTime.of(hour, 30));
+            }
+        }
+        inventory = new SlotInventoryService(calendar);
+        renderer = new SystemPromptRenderer(inventory, ranges, 0, Clock.systemDefaultZone());
+        slot = SlotTime.of(start.plusDays(calendarDays / 2), LocalTime.of(10, 0));
+        renderer.systemPrompt();
+    }
+
+    @Benchmark
+    public String unchanged() {
+        return renderer.systemPrompt();
+    }
+
+    @Benchmark
+    public String afterBooking() {
+        if (!inventory.tryBook(slot)) {
+            inventory.cancel(slot);
+        }
+        return renderer.systemPrompt();
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.appointment;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Where the time goes in the conversation actors: a LatencyHistogram per message type handled by
+// AppointmentAgentHandler.receive and per phase of an LLM call, booking and cancellation outcomes,
+// how many user messages the local fast path answered, and the backlog of messages waiting in session
+// mailboxes. Recording is allocation-free (array lookups and atomic increments); snapshot(), toText()
+// and toJson() build the readable views, and dumpEvery() writes the JSON view to a file periodically.
+public class AgentMetrics {
+    public enum Timer {
+        // One per AppointmentMessage variant: time spent in receive()
+        USER_MESSAGE,
+        LLM_RESPONSE,
+        GET_AVAILABLE_SLOTS,
+        GET_BOOKED_APPOINTMENTS,
+        BOOK_APPOINTMENT,
+        CANCEL_APPOINTMENT,
+        SLOT_CHANGED,
+        QUERY_SLOTS,
+        BOOK_APPOINTMENTS,
+        CANCEL_APPOINTMENTS,
+        SLOTS_CHANGED,
+        // Phases of an LLM call
+        PROMPT_BUILD,
+        REQUEST_ENCODE,
+        // Request sent to response complete (for streamed replies this includes reading the stream)
+        LLM_NETWORK,
+        // Completion JSON to reply text (non-streamed replies only)
+        RESPONSE_PARSE,
+        // BOOK/CANCEL extraction from the reply text
+        REPLY_INTERPRET,
+        // User message received to reply delivered, for replies from the LLM and from the fast path
+        LLM_REPLY,
+        FAST_PATH_REPLY;
+
+        private static final Timer[] VALUES = values();
+
+        static Timer of(AppointmentMessage message) {
+            return switch (message) {
+                case UserMessage um -> USER_MESSAGE;
+                case LLMResponse lr -> LLM_RESPONSE;
+                case GetAvailableSlots gas -> GET_AVAILABLE_SLOTS;
+                case GetBookedAppointments gba -> GET_BOOKED_APPOINTMENTS;
+                case BookAppointment ba -> BOOK_APPOINTMENT;
+                case CancelAppointment ca -> CANCEL_APPOINTMENT;
+                case SlotChanged sc -> SLOT_CHANGED;
+                case QuerySlots qs -> QUERY_SLOTS;
+                case BookAppointments bas -> BOOK_APPOINTMENTS;
+                case CancelAppointments cas -> CANCEL_APPOINTMENTS;
+                case SlotsChanged scs -> SLOTS_CHANGED;
+            };
+        }
+    }
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Timer.VALUES.length];
+    private final AtomicLong bookingsSucceeded = new AtomicLong();
+    private final AtomicLong bookingsFailed = new AtomicLong();
+    private final AtomicLong cancellationsSucceeded = new AtomicLong();
+    private final AtomicLong cancellationsFailed = new AtomicLong();
+    private final AtomicLong fastPathHits = new AtomicLong();
+    private final AtomicLong fastPathMisses = new AtomicLong();
+    // Messages told to session actors through AgentSessions or tellSelf, and messages they have taken
+    private final AtomicLong mailboxEnqueued = new AtomicLong();
+    private final AtomicLong mailboxDequeued = new AtomicLong();
+    private final AtomicLong mailboxBacklogMax = new AtomicLong();
+
+    public AgentMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public void record(Timer timer, long nanos) {
+        histograms[timer.ordinal()].record(nanos);
+    }
+
+    public void booking(boolean succeeded) {
+        (succeeded ? bookingsSucceeded : bookingsFailed).incrementAndGet();
+    }
+
+    public void cancellation(boolean succeeded) {
+        (succeeded ? cancellationsSucceeded : cancellationsFailed).incrementAndGet();
+    }
+
+    // Outcomes of a BookAppointments or CancelAppointments batch
+    public void batch(boolean book, int succeeded, int failed) {
+        (book ? bookingsSucceeded : cancellationsSucceeded).addAndGet(succeeded);
+        (book ? bookingsFailed : cancellationsFailed).addAndGet(failed);
+    }
+
+    // Whether IntentRouter resolved a user message locally or it went on to the LLM
+    public void fastPath(boolean hit) {
+        (hit ? fastPathHits : fastPathMisses).incrementAndGet();
+    }
+
+    public void messageEnqueued() {
+        long backlog = mailboxEnqueued.incrementAndGet() - mailboxDequeued.get();
+        long seen = mailboxBacklogMax.get();
+        while (backlog > seen && !mailboxBacklogMax.compareAndSet(seen, backlog)) {
+            seen = mailboxBacklogMax.get();
+        }
+    }
+
+    public void messageDequeued() {
+        mailboxDequeued.incrementAndGet();
+    }
+
+    public LatencyHistogram histogram(Timer timer) {
+        return histograms[timer.ordinal()];
+    }
+
+    // Messages sent to session actors but not yet handled
+    public long mailboxBacklog() {
+        return Math.max(0, mailboxEnqueued.get() - mailboxDequeued.get());
+    }
+
+    public Snapshot snapshot() {
+        Map<String, LatencyHistogram.Snapshot> latencies = new LinkedHashMap<>();
+        for (Timer timer : Timer.VALUES) {
+            latencies.put(timer.name().toLowerCase(), histograms[timer.ordinal()].snapshot());
+        }
+        return new Snapshot(latencies,
+                bookingsSucceeded.get(), bookingsFailed.get(),
+                cancellationsSucceeded.get(), cancellationsFailed.get(),
+                fastPathHits.get(), fastPathMisses.get(),
+                mailboxBacklog(), mailboxBacklogMax.get());
+    }
+
+    public record Snapshot(
+            Map<String, LatencyHistogram.Snapshot> latencies,
+            long bookingsSucceeded,
+            long bookingsFailed,
+            long cancellationsSucceeded,
+            long cancellationsFailed,
+            long fastPathHits,
+            long fastPathMisses,
+            long mailboxBacklog,
+            long mailboxBacklogMax
+    ) {
+        public double bookingSuccessRate() {
+            long attempts = bookingsSucceeded + bookingsFailed;
+            return attempts == 0 ? 0 : (double) bookingsSucceeded / attempts;
+        }
+
+        public double fastPathHitRate() {
+            long routed = fastPathHits + fastPathMisses;
+            return routed == 0 ? 0 : (double) fastPathHits / routed;
+        }
+    }
+
+    public String toJson() {
+        try {
+            return Json.prettyWriter().writeValueAsString(snapshot());
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // One line per timer that has seen traffic, then the counters
+    public String toText() {
+        Snapshot snapshot = snapshot();
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%-24s %9s %9s %9s %9s %9s %9s%n", "timer", "count", "mean", "p50", "p99", "p99.9", "max"));
+        snapshot.latencies().forEach((name, latency) -> {
+            if (latency.count() > 0) {
+                text.append(String.format("%-24s %9d %9s %9s %9s %9s %9s%n", name, latency.count(),
+                        duration(latency.meanNanos()), duration(latency.p50Nanos()), duration(latency.p99Nanos()),
+                        duration(latency.p999Nanos()), duration(latency.maxNanos())));
+            }
+        });
+        text.append(String.format("bookings: %d ok, %d failed (%.1f%% success)%n",
+                snapshot.bookingsSucceeded(), snapshot.bookingsFailed(), snapshot.bookingSuccessRate() * 100));
+        text.append(String.format("cancellations: %d ok, %d failed%n",
+                snapshot.cancellationsSucceeded(), snapshot.cancellationsFailed()));
+        if (snapshot.fastPathHits() + snapshot.fastPathMisses() > 0) {
+            text.append(String.format("fast path: %d answered locally, %d sent to the LLM (%.1f%% hit rate)%n",
+                    snapshot.fastPathHits(), snapshot.fastPathMisses(), snapshot.fastPathHitRate() * 100));
+        }
+        text.append(String.format("mailbox backlog: %d (max %d)%n",
+                snapshot.mailboxBacklog(), snapshot.mailboxBacklogMax()));
+        return text.toString();
+    }
+
+    // Rewrites the target with toJson() every interval, on a daemon thread; 0 or less does nothing
+    public void dumpEvery(long intervalSeconds, Path target) {
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().daemon().name("metrics-dump").factory());
+        dumper.scheduleAtFixedRate(() -> {
+            try {
+                Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+                Files.writeString(temporary, toJson());
+                Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                System.err.println("Could not write metrics to " + target + ": " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private static String duration(long nanos) {
+        if (nanos < 10_000) {
+            return nanos + "ns";
+        }
+        if (nanos < 10_000_000) {
+            return nanos / 1_000 + "us";
+        }
+        return nanos / 1_000_000 + "ms";
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.appointment;
+
+import com.cajunsystems.ActorSystem;
+import com.cajunsystems.Pid;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// Spawns one conversation actor per session on first use, and owns what those actors share. Sessions run
+// in parallel and only meet on the SlotInventoryService's CAS stripes. One SystemPromptRenderer renders
+// the prompt once per inventory change for all of them, and one ChatRequestEncoder writes their request
+// bodies into one small pool of buffers. Completion calls go through one LlmCallScheduler, which caps
+// them and shares them fairly, and one LlmRetryPolicy, whose budget covers every retry and hedge. One
+// ResponseCache answers a question one session has asked for the next.
+// Sessions record their history to the AppointmentJournal, resume from it after a restart, and report
+// into one AgentMetrics. Given SlotHolds, they hold the slots the LLM offers them. Given an
+// InventoryCluster, they read its whole-calendar view and send bookings and cancellations to the
+// partition that owns the slot.
+public class AgentSessions {
+    private final ActorSystem system;
+    private final SlotInventoryService inventory;
+    private final ContextWindow contextWindow;
+    private final SystemPromptRenderer promptRenderer;
+    private final ChatRequestEncoder requestEncoder;
+    private final LlmSettings settings;
+    private final LlmCallScheduler callScheduler;
+    private final LlmRetryPolicy retryPolicy;
+    private final ResponseCache responseCache;
+    private final AppointmentJournal journal;
+    private final AgentMetrics metrics;
+    private final SlotHolds holds;
+    private final InventoryCluster cluster;
+    private final ConcurrentHashMap<String, Pid> sessions = new ConcurrentHashMap<>();
+
+    public AgentSessions(
+            ActorSystem system,
+            SlotInventoryService inventory,
+            ContextWindow contextWindow,
+            LlmSettings settings,
+            LlmCallScheduler callScheduler,
+            LlmRetryPolicy retryPolicy,
+            ResponseCache responseCache,
+            AppointmentJournal journal,
+            AgentMetrics metrics
+    ) {
+        this(system, inventory, null, contextWindow, settings, callScheduler, retryPolicy, responseCache, journal,
+                metrics, null);
+    }
+
+    // Sessions hold the slots the LLM offers them on holds, which must be on this inventory
+    public AgentSessions(
+            ActorSystem system,
+            SlotInventoryService inventory,
+            SlotHolds holds,
+            ContextWindow contextWindow,
+            LlmSettings settings,
+            LlmCallScheduler callScheduler,
+            LlmRetryPolicy retryPolicy,
+            ResponseCache responseCache,
+            AppointmentJournal journal,
+            AgentMetrics metrics
+    ) {
+        this(system, inventory, null, contextWindow, settings, callScheduler, retryPolicy, responseCache, journal,
+                metrics, holds);
+    }
+
+    public AgentSessions(
+            ActorSystem system,
+            InventoryCluster cluster,
+            ContextWindow contextWindow,
+            LlmSettings settings,
+            LlmCallScheduler callScheduler,
+            LlmRetryPolicy retryPolicy,
+            ResponseCache responseCache,
+            AppointmentJournal journal,
+            AgentMetrics metrics
+    ) {
+        this(system, cluster.view(), cluster, contextWindow, settings, callScheduler, retryPolicy, responseCache,
+                journal, metrics, null);
+    }
+
+    private AgentSessions(
+            ActorSystem system,
+            SlotInventoryService inventory,
+            InventoryCluster cluster,
+            ContextWindow contextWindow,
+            LlmSettings settings,
+            LlmCallScheduler callScheduler,
+            LlmRetryPolicy retryPolicy,
+            ResponseCache responseCache,
+            AppointmentJournal journal,
+            AgentMetrics metrics,
+            SlotHolds holds
+    ) {
+        this.system = system;
+        this.cluster = cluster;
+        this.inventory = inventory;
+        this.contextWindow = contextWindow;
+        this.promptRenderer = SystemPromptRenderer.fromEnvironment(inventory);
+        this.requestEncoder = new ChatRequestEncoder(settings.model());
+        this.settings = settings;
+        this.callScheduler = callScheduler;
+        this.retryPolicy = retryPolicy;
+        this.responseCache = responseCache;
+        this.journal = journal;
+        this.metrics = metrics;
+        this.holds = holds;
+    }
+
+    public Pid sessionFor(String sessionId) {
+        return sessions.computeIfAbsent(sessionId, id -> system.statefulActorOf(
+                        new AppointmentAgentHandler(inventory, contextWindow, promptRenderer, requestEncoder,
+                                settings, callScheduler, retryPolicy, responseCache, journal, metrics, holds, cluster),
+                        // Picks up where the session left off before a restart
+                        journal.recoveredSession("session-" + id)
+                )
+                .withId("session-" + id)
+                .spawn());
+    }
+
+    // Tells the session's actor, counting the message into the mailbox backlog
+    public void tell(String sessionId, AppointmentMessage message) {
+        Pid session = sessionFor(sessionId);
+        metrics.messageEnqueued();
+        session.tell(message);
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+}
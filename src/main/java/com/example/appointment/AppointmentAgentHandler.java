@@ -4,28 +4,106 @@ import com.cajunsystems.ActorContext;
 import com.cajunsystems.Pid;
 import com.cajunsystems.handler.StatefulHandler;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
-import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 public class AppointmentAgentHandler
         implements StatefulHandler<AppointmentState, AppointmentMessage> {
 
-    private final HttpClient httpClient;
-    private final String apiKey;
-    private final ObjectMapper objectMapper;
+    // Replies the handler sends itself rather than relaying from the LLM
+    static final String OVERLOADED = "Sorry, I'm handling too many requests right now. Please try again in a moment.";
+    static final String ERROR_PREFIX = "Sorry, I encountered an error: ";
+    static final String SLOT_UNAVAILABLE = "Sorry, that slot is not available.";
+    static final String NO_SUCH_APPOINTMENT = "No such appointment found to cancel.";
+    static final String BOOKED_PREFIX = "Done! You're booked for ";
+    static final String CANCELLED_PREFIX = "Done! Your appointment on ";
+    static final String NOT_CANCELLED_PREFIX = "I couldn't find an appointment on ";
+    // Largest page a QuerySlots gets, whatever limit it asks for
+    static final int MAX_PAGE_SIZE = 1000;
+    // How many of the latest turns are searched for the date that anchors the prompt's slot window
+    static final int FOCUS_TURNS = 4;
+    static final String HELD_PREFIX = "Held for this user, so not in the list above but still bookable: ";
+
+    private final LlmClient llmClient;
+    private final LlmSettings settings;
+    private final SlotInventoryService inventory;
+    private final ContextWindow contextWindow;
+    private final SystemPromptRenderer promptRenderer;
+    private final ChatRequestEncoder requestEncoder;
+    private final LlmCallScheduler callScheduler;
+    private final LlmRetryPolicy retryPolicy;
+    private final ResponseCache responseCache;
+    private final AppointmentJournal journal;
+    private final AgentMetrics metrics;
+    private final IntentRouter router;
+    // Owns bookings and cancellations when the inventory is partitioned; null applies them locally
+    private final InventoryCluster cluster;
+    // Holds on the slots the LLM offers this session; null when holds are off or the inventory is partitioned
+    private final SlotHolds holds;
+    // What this session holds, as of its last offer; some may have expired since. Read by LLM calls,
+    // which can start on another thread, so it is only ever replaced.
+    private volatile int[] heldSlots = new int[0];
+    // While a booking, cancellation or batch is out at its partitions, this session's other messages
+    // wait here
+    private final ArrayDeque<AppointmentMessage> deferred = new ArrayDeque<>();
+    // Partition replies still to come; always zero without a cluster
+    private int pendingChanges;
+    // The batch being filled in by partitions, and who gets it
+    private BatchResult pendingBatch;
+    private Pid pendingBatchReplyTo;
+
+    public AppointmentAgentHandler(
+            SlotInventoryService inventory,
+            ContextWindow contextWindow,
+            SystemPromptRenderer promptRenderer,
+            LlmSettings settings,
+            LlmCallScheduler callScheduler,
+            LlmRetryPolicy retryPolicy,
+            ResponseCache responseCache,
+            AppointmentJournal journal,
+            AgentMetrics metrics
+    ) {
+        this(inventory, contextWindow, promptRenderer, new ChatRequestEncoder(settings.model()), settings,
+                callScheduler, retryPolicy, responseCache, journal, metrics, null, null);
+    }
 
-    public AppointmentAgentHandler() {
-        this.httpClient = HttpClient.newBuilder()
-                .version(HttpClient.Version.HTTP_2)
-                .build();
-        this.apiKey = System.getenv("OPENAI_API_KEY");
-        this.objectMapper = new ObjectMapper();
+    // requestEncoder is shared with the other sessions, so its buffer pool is too.
+    // holds may be null; holds are not placed on a partitioned inventory
+    AppointmentAgentHandler(
+            SlotInventoryService inventory,
+            ContextWindow contextWindow,
+            SystemPromptRenderer promptRenderer,
+            ChatRequestEncoder requestEncoder,
+            LlmSettings settings,
+            LlmCallScheduler callScheduler,
+            LlmRetryPolicy retryPolicy,
+            ResponseCache responseCache,
+            AppointmentJournal journal,
+            AgentMetrics metrics,
+            SlotHolds holds,
+            InventoryCluster cluster
+    ) {
+        this.inventory = inventory;
+        this.contextWindow = contextWindow;
+        this.promptRenderer = promptRenderer;
+        this.requestEncoder = requestEncoder;
+        this.settings = settings;
+        this.callScheduler = callScheduler;
+        this.retryPolicy = retryPolicy;
+        this.responseCache = responseCache;
+        this.journal = journal;
+        this.metrics = metrics;
+        // One client and one JSON mapper for the whole process, however many sessions there are
+        this.llmClient = LlmClient.shared();
+        this.router = new IntentRouter(Clock.systemDefaultZone());
+        this.cluster = cluster;
+        this.holds = cluster == null && holds != null && holds.enabled() ? holds : null;
     }
 
     @Override
@@ -34,14 +112,36 @@ public class AppointmentAgentHandler
         AppointmentState state,
         ActorContext context
     ) {
-        return switch (message) {
+        metrics.messageDequeued();
+        // Keeps the session's order: a booking's outcome is known before the next message is answered
+        if (pendingChanges > 0 && !(message instanceof SlotChanged || message instanceof SlotsChanged)) {
+            deferred.add(message);
+            return state;
+        }
+        AppointmentState newState = handle(message, state, context);
+        while (pendingChanges == 0 && !deferred.isEmpty()) {
+            newState = handle(deferred.poll(), newState, context);
+        }
+        return newState;
+    }
+
+    private AppointmentState handle(AppointmentMessage message, AppointmentState state, ActorContext context) {
+        long startNanos = System.nanoTime();
+        AppointmentState newState = switch (message) {
             case UserMessage um -> handleUserMessage(um, state, context);
             case GetAvailableSlots gas -> handleGetSlots(gas, state, context);
             case GetBookedAppointments gba -> handleGetBookings(gba, state, context);
             case BookAppointment ba -> handleBooking(ba, state, context);
-            case LLMResponse lr -> state.addMessage("assistant", lr.content());
+            case LLMResponse lr -> handleAssistantMessage(lr, state, context);
             case CancelAppointment ca -> handleCancel(ca, state, context);
+            case SlotChanged sc -> handleSlotChanged(sc, state, context);
+            case QuerySlots qs -> handleQuery(qs, state, context);
+            case BookAppointments bas -> changeSlots(bas.slots(), true, bas.replyTo(), state, context);
+            case CancelAppointments cas -> changeSlots(cas.slots(), false, cas.replyTo(), state, context);
+            case SlotsChanged scs -> handleSlotsChanged(scs, state, context);
         };
+        metrics.record(AgentMetrics.Timer.of(message), System.nanoTime() - startNanos);
+        return newState;
     }
 
     private AppointmentState handleUserMessage(
@@ -49,229 +149,449 @@ public class AppointmentAgentHandler
             AppointmentState state,
             ActorContext context
     ) {
-        // Add user message to history
-        AppointmentState newState = state.addMessage("user", msg.text());
+        long receivedNanos = System.nanoTime();
+
+        // Explicit requests ("book 2025-11-06 09:00", "what's free tomorrow") are answered here
+        if (settings.fastPath()) {
+            IntentRouter.Route route = router.route(msg.text(), inventory, context.getActorId());
+            metrics.fastPath(route != null);
+            if (route != null) {
+                return answerLocally(route, msg, state, context, receivedNanos);
+            }
+        }
+
+        // Add user message to history, folding the oldest turns into the summary if over budget
+        AppointmentState newState = contextWindow.fit(state.addMessage("user", msg.text()));
+
+        // The same recent turns against the same calendar have been answered before
+        // Not while the session holds slots: the reply would be one given without them
+        if (responseCache.enabled() && heldSlots.length == 0) {
+            long window = promptRenderer.promptWindow(focusDay(newState));
+            String cached = responseCache.get(responseCache.keyFor(inventory.version(), window, newState));
+            if (cached != null) {
+                journal.messageAppended(context.getActorId(), "user", msg.text(), newState);
+                completeReply(cached, context, msg.replyTo(), false, AgentResponse.Part.WHOLE);
+                return newState;
+            }
+        }
+
+        // Queue the LLM call; it runs once the shared concurrency limit allows
+        if (!callScheduler.submit(context.getActorId(), () -> callLLM(newState, context, msg.replyTo(), receivedNanos))) {
+            // Overloaded: answer at once and leave the turn out of the history
+            context.tell(msg.replyTo(), new AgentResponse(OVERLOADED));
+            return state;
+        }
+        journal.messageAppended(context.getActorId(), "user", msg.text(), newState);
+        contextWindow.recordRequest(newState);
+        return newState;
+    }
+
+    // Carries out the routed request and replies without a completion call. Both turns go into the
+    // history, so a later LLM turn sees what was done.
+    private AppointmentState answerLocally(
+            IntentRouter.Route route,
+            UserMessage msg,
+            AppointmentState state,
+            ActorContext context,
+            long receivedNanos
+    ) {
+        AppointmentState asked = contextWindow.fit(state.addMessage("user", msg.text()));
+        journal.messageAppended(context.getActorId(), "user", msg.text(), asked);
+        return switch (route) {
+            case IntentRouter.Book book -> changeSlot(book.slot(), true, true, msg.replyTo(), receivedNanos, asked, context);
+            case IntentRouter.Cancel cancel -> changeSlot(cancel.slot(), false, true, msg.replyTo(), receivedNanos, asked, context);
+            case IntentRouter.ShowSlots show -> answered(freeSlots("Free on ", show.epochDay(), "Nothing is free on "),
+                    msg.replyTo(), receivedNanos, asked, context);
+        };
+    }
 
-        // Prepare system prompt with current availability
-        String systemPrompt = buildSystemPrompt(state);
+    private AppointmentState answered(String reply, Pid replyTo, long receivedNanos, AppointmentState state,
+            ActorContext context) {
+        context.tell(replyTo, new AgentResponse(reply, AgentResponse.Part.WHOLE));
+        metrics.record(AgentMetrics.Timer.FAST_PATH_REPLY, System.nanoTime() - receivedNanos);
+        AppointmentState answered = contextWindow.fit(state.addMessage("assistant", reply));
+        journal.messageAppended(context.getActorId(), "assistant", reply, answered);
+        return answered;
+    }
 
-        // Call LLM asynchronously
-        callLLM(systemPrompt, newState, context, msg.replyTo());
+    // "Free on 2025-11-05: 09:00, 10:00." or "Nothing is free on 2025-11-05."
+    private String freeSlots(String prefix, long epochDay, String nonePrefix) {
+        StringBuilder times = new StringBuilder();
+        inventory.forEachFreeSlot(epochDay, slot -> SlotTime.appendTime(times.isEmpty() ? times : times.append(", "), slot));
+        String date = SlotTime.formatDate(SlotTime.of(epochDay, 0));
+        return times.isEmpty() ? nonePrefix + date + "." : prefix + date + ": " + times + ".";
+    }
 
+    private AppointmentState handleAssistantMessage(
+            LLMResponse msg,
+            AppointmentState state,
+            ActorContext context
+    ) {
+        AppointmentState newState = contextWindow.fit(state.addMessage("assistant", msg.content()));
+        journal.messageAppended(context.getActorId(), "assistant", msg.content(), newState);
+        // A reply that books or cancels names the slot it changed, which is no offer - holding a slot
+        // just cancelled would keep it from everyone else
+        if (holds != null && !msg.commanded()) {
+            holdOffered(msg.content(), context.getActorId());
+        }
         return newState;
     }
 
-    private String buildSystemPrompt(AppointmentState state) {
-        StringBuilder prompt = new StringBuilder();
-        prompt.append("You are an appointment scheduling assistant. ");
-        prompt.append("Here are the available time slots:\n");
+    // Holds the slots the reply proposes until the user has had time to pick one, and lets go of the
+    // ones proposed before that this reply no longer offers
+    private void holdOffered(String reply, String holder) {
+        int[] offered = ResponseInterpreter.offeredSlots(reply);
+        if (offered.length == 0 || offered.length > holds.maxOffered()) {
+            return;
+        }
+        for (int slot : heldSlots) {
+            if (Arrays.stream(offered).noneMatch(s -> s == slot)) {
+                holds.release(slot, holder);
+            }
+        }
+        int[] held = new int[offered.length];
+        int count = 0;
+        for (int slot : offered) {
+            if (holds.hold(slot, holder)) {
+                held[count++] = slot;
+            }
+        }
+        heldSlots = Arrays.copyOf(held, count);
+    }
+
+    // Held slots are missing from the shared system prompt, so the session's own are listed for it
+    // separately; null when it holds none
+    private String holdNote(String holder) {
+        StringBuilder note = new StringBuilder();
+        for (int slot : heldSlots) {
+            if (holds.isHeldBy(slot, holder)) {
+                SlotTime.appendTime(SlotTime.appendDate(note.append(note.isEmpty() ? HELD_PREFIX : ", "), slot)
+                        .append(' '), slot);
+            }
+        }
+        return note.isEmpty() ? null : note.append('.').toString();
+    }
 
-        state.availableSlots().forEach((date, times) -> {
-            prompt.append(String.format("%s: %s\n",
-                    date,
-                    String.join(", ", times)));
-        });
+    // The date the conversation is about: the newest of the last few turns that names exactly one
+    private long focusDay(AppointmentState state) {
+        List<Message> history = state.conversationHistory();
+        for (int i = history.size() - 1; i >= Math.max(0, history.size() - FOCUS_TURNS); i--) {
+            long day = router.mentionedDay(history.get(i).content());
+            if (day != IntentRouter.NO_DAY) {
+                return day;
+            }
+        }
+        return SystemPromptRenderer.NO_FOCUS;
+    }
 
-        prompt.append("\nHelp the user find and book a suitable time slot. ");
-        prompt.append("When the user confirms they want to book a specific date and time, you MUST respond with EXACTLY this format on a new line, even if the user uses natural language:\n");
-        prompt.append("BOOK:YYYY-MM-DD:HH:MM\n");
-        prompt.append("For example: BOOK:2025-11-06:09:00\n");
-        prompt.append("Then on the next line, provide your friendly confirmation message.\n");
-        prompt.append("Do not confirm a booking unless you have included the BOOK:... line.\n");
-        prompt.append("\nIf the user wants to cancel an appointment, you MUST respond with EXACTLY this format on a new line, even if the user uses natural language:\n");
-        prompt.append("CANCEL:YYYY-MM-DD:HH:MM\n");
-        prompt.append("For example: CANCEL:2025-11-06:09:00\n");
-        prompt.append("Then on the next line, provide your friendly cancellation confirmation message.\n");
-        prompt.append("Do not confirm a cancellation unless you have included the CANCEL:... line.\n");
-
-        return prompt.toString();
+    // Starts the call; the future completes with the HTTP status once the reply has been delivered. The
+    // scheduler runs this, so a call that cannot even be started is answered here or never at all.
+    private CompletableFuture<Integer> callLLM(
+            AppointmentState state,
+            ActorContext context,
+            Pid replyTo,
+            long receivedNanos
+    ) {
+        try {
+            return startLLM(state, context, replyTo, receivedNanos);
+        } catch (RuntimeException e) {
+            context.tell(replyTo, new AgentResponse(ERROR_PREFIX + e.getMessage()));
+            return CompletableFuture.failedFuture(e);
+        }
     }
 
-    private void callLLM(
-            String systemPrompt,
+    private CompletableFuture<Integer> startLLM(
             AppointmentState state,
             ActorContext context,
-            Pid replyTo
+            Pid replyTo,
+            long receivedNanos
     ) {
-        // Build request body
-        String requestBody = buildOpenAIRequest(systemPrompt, state);
+        // Cache key from the version read before the prompt, so the reply is never filed under a newer
+        // calendar than the one it was given, and from the window the prompt lists, which moves with the
+        // dates the conversation names and with today
+        long focusDay = focusDay(state);
+        String holdNote = holds != null ? holdNote(context.getActorId()) : null;
+        String cacheKey = responseCache.enabled() && holdNote == null
+                ? responseCache.keyFor(inventory.version(), promptRenderer.promptWindow(focusDay), state) : null;
+
+        // System prompt with current availability, re-rendered only when the inventory has changed.
+        // Taken when the call starts rather than when it was queued, so it is as fresh as possible.
+        long promptStart = System.nanoTime();
+        String systemPrompt = promptRenderer.systemPrompt(focusDay);
+
+        // Encode the request body straight into a pooled byte buffer, which the request takes a copy of
+        long encodeStart = System.nanoTime();
+        ChatRequestEncoder.Body body = requestEncoder.encode(systemPrompt, holdNote, state, settings.streaming());
+        metrics.record(AgentMetrics.Timer.PROMPT_BUILD, encodeStart - promptStart);
+        metrics.record(AgentMetrics.Timer.REQUEST_ENCODE, System.nanoTime() - encodeStart);
 
         // Make async HTTP call
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create("https://api.openai.com/v1/chat/completions"))
-                .header("Content-Type", "application/json")
-                .header("Authorization", "Bearer " + apiKey)
-                .POST(HttpRequest.BodyPublishers.ofString(requestBody))
-                .build();
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder()
+                    .uri(settings.completionsUri())
+                    .header("Content-Type", "application/json")
+                    .header("Authorization", "Bearer " + settings.apiKey())
+                    .POST(body.publisher())
+                    .build();
+        } finally {
+            requestEncoder.release(body);
+        }
 
+        return settings.streaming()
+                ? streamLLM(request, context, replyTo, cacheKey, receivedNanos)
+                : sendLLM(request, context, replyTo, cacheKey, receivedNanos);
+    }
+
+    // Both paths send through the retry policy, which reads exactly one attempt's reply, so retries and
+    // hedged duplicates cannot dispatch a command twice
+    private CompletableFuture<Integer> sendLLM(HttpRequest request, ActorContext context, Pid replyTo,
+            String cacheKey, long receivedNanos) {
+        long startNanos = System.nanoTime();
         // Send request asynchronously
-        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                .thenAccept(response -> {
+        return retryPolicy.send(llmClient, request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    long responseNanos = System.nanoTime();
+                    metrics.record(AgentMetrics.Timer.LLM_NETWORK, responseNanos - startNanos);
                     String llmContent = parseOpenAIResponse(response.body());
-
-                    // Check if LLM wants to book an appointment
-                    String bookingCommand = extractBookingCommand(llmContent);
-                    if (bookingCommand != null) {
-                        // Parse the booking command: BOOK:YYYY-MM-DD:HH:MM
-                        String afterBook = bookingCommand.substring(5); // Remove "BOOK:"
-                        String[] parts = afterBook.split(":", 2); // Split into date and time
-                        if (parts.length == 2) {
-                            String date = parts[0]; // YYYY-MM-DD
-                            String time = parts[1]; // HH:MM
-                            // Trigger the actual booking
-                            context.tellSelf(new BookAppointment(date, time, replyTo));
-                            // Remove the booking command from the response (including the line)
-                            llmContent = llmContent.replace(bookingCommand, "").trim();
-                            // Clean up multiple newlines
-                            llmContent = llmContent.replaceAll("\\n\\s*\\n", "\\n").trim();
-                        }
-                    } else if (llmContent.toLowerCase().contains("scheduled") || llmContent.toLowerCase().contains("booked")) {
-                        // Fallback: try to extract date and time from the message if LLM says it booked but didn't include BOOK:...
-                        String[] dateTime = extractDateTimeFromBookingMessage(llmContent);
-                        if (dateTime != null) {
-                            context.tellSelf(new BookAppointment(dateTime[0], dateTime[1], replyTo));
-                        }
-                    }
-
-                    // Check if LLM wants to cancel an appointment
-                    String cancelCommand = extractCancelCommand(llmContent);
-                    if (cancelCommand != null) {
-                        // Parse the cancel command: CANCEL:YYYY-MM-DD:HH:MM
-                        String afterCancel = cancelCommand.substring(7); // Remove "CANCEL:"
-                        String[] parts = afterCancel.split(":", 2); // Split into date and time
-                        if (parts.length == 2) {
-                            String date = parts[0]; // YYYY-MM-DD
-                            String time = parts[1]; // HH:MM
-                            // Trigger the actual cancellation
-                            context.tellSelf(new CancelAppointment(date, time, replyTo));
-                            // Remove the cancel command from the response (including the line)
-                            llmContent = llmContent.replace(cancelCommand, "").trim();
-                            llmContent = llmContent.replaceAll("\\n\\s*\\n", "\\n").trim();
-                        }
-                    } else if (llmContent.toLowerCase().contains("cancelled") || llmContent.toLowerCase().contains("canceled")) {
-                        // Fallback: try to extract date and time from the message if LLM says it cancelled but didn't include CANCEL:...
-                        String[] dateTime = extractDateTimeFromCancelMessage(llmContent);
-                        if (dateTime != null) {
-                            context.tellSelf(new CancelAppointment(dateTime[0], dateTime[1], replyTo));
-                        }
+                    metrics.record(AgentMetrics.Timer.RESPONSE_PARSE, System.nanoTime() - responseNanos);
+                    ResponseInterpreter.Interpretation interpretation = completeReply(llmContent,
+                            context, replyTo, false, AgentResponse.Part.WHOLE);
+                    metrics.record(AgentMetrics.Timer.LLM_REPLY, System.nanoTime() - receivedNanos);
+                    cacheReply(cacheKey, response.statusCode(), llmContent, interpretation, startNanos);
+                    return response.statusCode();
+                })
+                .whenComplete((status, ex) -> {
+                    if (ex != null) {
+                        context.tell(replyTo, new AgentResponse(ERROR_PREFIX + ex.getMessage()));
                     }
+                });
+    }
 
-                    // Send response back to user
-                    context.tell(replyTo, new AgentResponse(llmContent));
-
-                    // Update our state with assistant message
-                    context.tellSelf(new LLMResponse(llmContent));
+    private CompletableFuture<Integer> streamLLM(HttpRequest request, ActorContext context, Pid replyTo,
+            String cacheKey, long receivedNanos) {
+        long startNanos = System.nanoTime();
+        // Forward text as it streams in and fire commands as soon as their line is complete
+        StreamingCommandDetector detector = new StreamingCommandDetector(new StreamingCommandDetector.Listener() {
+            @Override
+            public void onText(String text) {
+                context.tell(replyTo, new AgentResponse(text, AgentResponse.Part.FRAGMENT));
+            }
+
+            @Override
+            public void onIntent(ResponseInterpreter.Intent intent) {
+                tellSelf(context, intent.toMessage(replyTo));
+            }
+        });
+        ServerSentEventSubscriber events = new ServerSentEventSubscriber(Json.mapper(), detector::accept);
+
+        return retryPolicy.send(llmClient, request, HttpResponse.BodyHandlers.fromLineSubscriber(events))
+                .thenApply(response -> {
+                    metrics.record(AgentMetrics.Timer.LLM_NETWORK, System.nanoTime() - startNanos);
+                    detector.finish();
+                    // A body without events is a plain (usually error) response
+                    String llmContent = events.sawEvent()
+                            ? events.content()
+                            : parseOpenAIResponse(events.nonEventBody());
+                    ResponseInterpreter.Interpretation interpretation = completeReply(llmContent,
+                            context, replyTo, detector.commandsFired(), AgentResponse.Part.FINAL);
+                    metrics.record(AgentMetrics.Timer.LLM_REPLY, System.nanoTime() - receivedNanos);
+                    cacheReply(cacheKey, response.statusCode(), llmContent, interpretation, startNanos);
+                    return response.statusCode();
                 })
-                .exceptionally(ex -> {
-                    context.tell(replyTo,
-                            new AgentResponse("Sorry, I encountered an error: " + ex.getMessage()));
-                    return null;
+                .whenComplete((status, ex) -> {
+                    // Fragments may already be on screen, so the error has to end the streamed reply
+                    if (ex != null) {
+                        context.tell(replyTo, new AgentResponse(ERROR_PREFIX + ex.getMessage(),
+                                AgentResponse.Part.FAILED));
+                    }
                 });
     }
 
-    // Fallback: Try to extract date and time from a cancellation message
-    private String[] extractDateTimeFromCancelMessage(String message) {
-        // Look for patterns like 'on 2025-11-05 at 16:00' or 'for 16:00 on November 5th, 2025'
-        java.util.regex.Pattern pattern1 = java.util.regex.Pattern.compile("on (\\d{4}-\\d{2}-\\d{2}) at (\\d{2}:\\d{2})");
-        java.util.regex.Matcher matcher1 = pattern1.matcher(message);
-        if (matcher1.find()) {
-            return new String[] { matcher1.group(1), matcher1.group(2) };
+    // Dispatches any commands not already fired during streaming, then delivers the cleaned reply
+    private ResponseInterpreter.Interpretation completeReply(
+            String llmContent,
+            ActorContext context,
+            Pid replyTo,
+            boolean commandsDispatched,
+            AgentResponse.Part part
+    ) {
+        // One pass finds every BOOK/CANCEL command, or the natural-language fallback if there are none
+        long interpretStart = System.nanoTime();
+        ResponseInterpreter.Interpretation interpretation = ResponseInterpreter.interpret(llmContent);
+        metrics.record(AgentMetrics.Timer.REPLY_INTERPRET, System.nanoTime() - interpretStart);
+        for (ResponseInterpreter.Intent intent : interpretation.intents()) {
+            if (!(commandsDispatched && intent.explicit())) {
+                tellSelf(context, intent.toMessage(replyTo));
+            }
         }
-        java.util.regex.Pattern pattern2 = java.util.regex.Pattern.compile("for (\\d{2}:\\d{2}) on (\\d{4}-\\d{2}-\\d{2})");
-        java.util.regex.Matcher matcher2 = pattern2.matcher(message);
-        if (matcher2.find()) {
-            return new String[] { matcher2.group(2), matcher2.group(1) };
+
+        // Send response back to user
+        context.tell(replyTo, new AgentResponse(interpretation.text(), part));
+
+        // Update our state with assistant message
+        tellSelf(context, new LLMResponse(interpretation.text(), !interpretation.intents().isEmpty()));
+        return interpretation;
+    }
+
+    // Counted, so the metrics can tell how many messages are waiting in the mailbox
+    private void tellSelf(ActorContext context, AppointmentMessage message) {
+        metrics.messageEnqueued();
+        context.tellSelf(message);
+    }
+
+    // Only successful, purely conversational replies are reused; replaying a booking would repeat it.
+    // With holds on, neither is a reply that names slots: the key leaves holds out, so it could offer
+    // slots another session has held since. Without them the key's version covers every change to what
+    // is free.
+    private void cacheReply(
+            String cacheKey,
+            int status,
+            String llmContent,
+            ResponseInterpreter.Interpretation interpretation,
+            long startNanos
+    ) {
+        if (cacheKey != null && status == 200 && interpretation.intents().isEmpty()
+                && (holds == null || ResponseInterpreter.offeredSlots(interpretation.text()).length == 0)) {
+            responseCache.put(cacheKey, llmContent, System.nanoTime() - startNanos);
         }
-        // Add more patterns as needed for robustness
-        return null;
     }
 
-    private String[] extractDateTimeFromBookingMessage(String message) {
-        // 24-hour patterns
-        java.util.regex.Pattern pattern1 = java.util.regex.Pattern.compile("for (\\d{2}:\\d{2}) on (\\w+ \\d{1,2}(?:st|nd|rd|th)?,? \\d{4})");
-        java.util.regex.Matcher matcher1 = pattern1.matcher(message);
-        if (matcher1.find()) {
-            String time = matcher1.group(1);
-            String dateText = matcher1.group(2);
-            String date = parseNaturalLanguageDate(dateText);
-            if (date != null) return new String[] { date, time };
+    private AppointmentState handleBooking(
+            BookAppointment msg,
+            AppointmentState state,
+            ActorContext context
+    ) {
+        return changeSlot(msg.slot(), true, false, msg.replyTo(), System.nanoTime(), state, context);
+    }
+
+    // Books or cancels here, or sends the change to the partition that owns the slot and holds the
+    // session's other messages until its SlotChanged comes back
+    private AppointmentState changeSlot(int slot, boolean book, boolean fastPath, Pid replyTo, long receivedNanos,
+            AppointmentState state, ActorContext context) {
+        if (cluster != null) {
+            cluster.route(new InventoryPartition.SlotChange(slot, book, fastPath, context.self(), replyTo, receivedNanos));
+            // Counted now for the SlotChanged that will land in the mailbox
+            metrics.messageEnqueued();
+            pendingChanges = 1;
+            return state;
         }
-        java.util.regex.Pattern pattern2 = java.util.regex.Pattern.compile("on (\\d{4}-\\d{2}-\\d{2}) at (\\d{2}:\\d{2})");
-        java.util.regex.Matcher matcher2 = pattern2.matcher(message);
-        if (matcher2.find()) {
-            return new String[] { matcher2.group(1), matcher2.group(2) };
+        // Reserve atomically - another session may have taken the slot since the LLM offered it, unless
+        // this session holds it. Bookings belong to the session, and only it can cancel them.
+        String session = context.getActorId();
+        boolean succeeded;
+        if (!book) {
+            succeeded = inventory.cancel(slot, session);
+        } else if (holds == null) {
+            succeeded = inventory.tryBook(slot, session);
+        } else {
+            succeeded = holds.book(slot, session);
+            if (succeeded) {
+                // The other slots offered alongside it are not needed any more
+                for (int held : heldSlots) {
+                    holds.release(held, session);
+                }
+                heldSlots = new int[0];
+            }
+        }
+        return handleSlotChanged(new SlotChanged(slot, book, succeeded, fastPath, replyTo, receivedNanos), state, context);
+    }
+
+    private AppointmentState handleSlotChanged(
+            SlotChanged msg,
+            AppointmentState state,
+            ActorContext context
+    ) {
+        // Only a partition's reply was outstanding; the local path calls this directly
+        if (pendingChanges > 0) {
+            pendingChanges--;
         }
-        java.util.regex.Pattern pattern3 = java.util.regex.Pattern.compile("for (\\d{2}:\\d{2}) on (\\d{4}-\\d{2}-\\d{2})");
-        java.util.regex.Matcher matcher3 = pattern3.matcher(message);
-        if (matcher3.find()) {
-            return new String[] { matcher3.group(2), matcher3.group(1) };
+        int slot = msg.slot();
+        if (msg.book()) {
+            metrics.booking(msg.succeeded());
+        } else {
+            metrics.cancellation(msg.succeeded());
         }
-        // 12-hour patterns
-        java.util.regex.Pattern pattern4 = java.util.regex.Pattern.compile("for (\\d{1,2}:\\d{2}) ?([APap][Mm]) on (\\w+ \\d{1,2}(?:st|nd|rd|th)?,? \\d{4})");
-        java.util.regex.Matcher matcher4 = pattern4.matcher(message);
-        if (matcher4.find()) {
-            String time12 = matcher4.group(1);
-            String ampm = matcher4.group(2);
-            String dateText = matcher4.group(3);
-            String date = parseNaturalLanguageDate(dateText);
-            String time24 = convertTo24Hour(time12, ampm);
-            if (date != null && time24 != null) return new String[] { date, time24 };
+        if (msg.fastPath()) {
+            String reply;
+            if (msg.book()) {
+                reply = msg.succeeded()
+                        ? BOOKED_PREFIX + SlotTime.formatDate(slot) + " at " + SlotTime.formatTime(slot) + "."
+                        : SLOT_UNAVAILABLE + " " + freeSlots("Still free on ", SlotTime.epochDay(slot), "Nothing else is free on ");
+            } else {
+                reply = (msg.succeeded() ? CANCELLED_PREFIX : NOT_CANCELLED_PREFIX) + SlotTime.formatDate(slot) + " at "
+                        + SlotTime.formatTime(slot) + (msg.succeeded() ? " has been cancelled." : " to cancel.");
+            }
+            return answered(reply, msg.replyTo(), msg.receivedNanos(), state, context);
         }
-        java.util.regex.Pattern pattern5 = java.util.regex.Pattern.compile("at (\\d{1,2}:\\d{2}) ?([APap][Mm]) on (\\w+ \\d{1,2}(?:st|nd|rd|th)?,? \\d{4})");
-        java.util.regex.Matcher matcher5 = pattern5.matcher(message);
-        if (matcher5.find()) {
-            String time12 = matcher5.group(1);
-            String ampm = matcher5.group(2);
-            String dateText = matcher5.group(3);
-            String date = parseNaturalLanguageDate(dateText);
-            String time24 = convertTo24Hour(time12, ampm);
-            if (date != null && time24 != null) return new String[] { date, time24 };
+        if (msg.book()) {
+            // The confirmation message was already sent by the AI; only a failed booking needs a reply
+            if (!msg.succeeded()) {
+                context.tell(msg.replyTo(), new AgentResponse(SLOT_UNAVAILABLE));
+            }
+        } else if (msg.succeeded()) {
+            context.tell(msg.replyTo(), new AgentResponse("Your appointment on " + SlotTime.formatDate(slot)
+                    + " at " + SlotTime.formatTime(slot) + " has been cancelled."));
+        } else {
+            context.tell(msg.replyTo(), new AgentResponse(NO_SUCH_APPOINTMENT));
         }
-        return null;
+        return state;
     }
 
-    private String convertTo24Hour(String time12, String ampm) {
-        try {
-            java.time.format.DateTimeFormatter fmt12 = java.time.format.DateTimeFormatter.ofPattern("h:mm a");
-            java.time.format.DateTimeFormatter fmt24 = java.time.format.DateTimeFormatter.ofPattern("HH:mm");
-            java.time.LocalTime t = java.time.LocalTime.parse(time12 + " " + ampm.toUpperCase(), fmt12);
-            return t.format(fmt24);
-        } catch (Exception e) {
-            return null;
+    // Applies the whole batch in this turn, or sends one part to each partition involved and answers once
+    // all of them have reported back
+    private AppointmentState changeSlots(int[] slots, boolean book, Pid replyTo, AppointmentState state,
+            ActorContext context) {
+        BatchResult result = new BatchResult(book, slots, new boolean[slots.length]);
+        if (cluster != null && slots.length > 0) {
+            pendingChanges = cluster.route(slots, book, context.self());
+            for (int i = 0; i < pendingChanges; i++) {
+                metrics.messageEnqueued();
+            }
+            pendingBatch = result;
+            pendingBatchReplyTo = replyTo;
+            return state;
         }
+        inventory.changeAll(slots, book, context.getActorId(), result.succeeded());
+        batchDone(result, replyTo, context);
+        return state;
     }
 
-
-    // Helper to parse natural language date like 'November 5th, 2025' to '2025-11-05'
-    private String parseNaturalLanguageDate(String dateText) {
-        try {
-            java.time.format.DateTimeFormatter inputFmt = java.time.format.DateTimeFormatter.ofPattern("MMMM d['st']['nd']['rd']['th'], yyyy");
-            java.time.format.DateTimeFormatter outputFmt = java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            java.time.LocalDate date = java.time.LocalDate.parse(dateText.replaceAll("(st|nd|rd|th)", ""), inputFmt);
-            return date.format(outputFmt);
-        } catch (Exception e) {
-            return null;
+    private AppointmentState handleSlotsChanged(
+            SlotsChanged msg,
+            AppointmentState state,
+            ActorContext context
+    ) {
+        for (int i = 0; i < msg.positions().length; i++) {
+            pendingBatch.succeeded()[msg.positions()[i]] = msg.succeeded()[i];
         }
+        if (--pendingChanges == 0) {
+            batchDone(pendingBatch, pendingBatchReplyTo, context);
+            pendingBatch = null;
+            pendingBatchReplyTo = null;
+        }
+        return state;
     }
 
-    private AppointmentState handleBooking(
-            BookAppointment msg,
+    private void batchDone(BatchResult result, Pid replyTo, ActorContext context) {
+        int succeeded = result.succeededCount();
+        metrics.batch(result.book(), succeeded, result.slots().length - succeeded);
+        context.tell(replyTo, result);
+    }
+
+    // One more than the page is read, to know whether another page follows
+    private AppointmentState handleQuery(
+            QuerySlots msg,
             AppointmentState state,
             ActorContext context
     ) {
-        // Validate the booking
-        List<String> slots = state.availableSlots().get(msg.date());
-
-        if (slots != null && slots.contains(msg.time())) {
-            // Book the slot - the confirmation message was already sent by the AI
-            AppointmentState newState = state.bookSlot(msg.date(), msg.time());
-            return newState;
-        } else {
-            // Only send error message if booking failed
-            context.tell(msg.replyTo(),
-                    new AgentResponse("Sorry, that slot is not available."));
-            return state;
-        }
+        int limit = Math.max(1, Math.min(msg.limit(), MAX_PAGE_SIZE));
+        int[] found = new int[limit + 1];
+        int count = inventory.slots(msg.fromDay(), msg.toDay(), msg.fromMinute(), msg.toMinute(), msg.booked(),
+                msg.cursor(), found);
+        int[] page = Arrays.copyOf(found, Math.min(count, limit));
+        context.tell(msg.replyTo(), new SlotPage(page, count > limit ? page[limit - 1] : SlotPage.END));
+        return state;
     }
 
     private AppointmentState handleGetSlots(
@@ -279,12 +599,7 @@ public class AppointmentAgentHandler
             AppointmentState state,
             ActorContext context
     ) {
-        StringBuilder slots = new StringBuilder("Available slots:\n");
-        state.availableSlots().forEach((date, times) -> {
-            slots.append(String.format("%s: %s\n", date, String.join(", ", times)));
-        });
-
-        context.tell(msg.replyTo(), new AgentResponse(slots.toString()));
+        context.tell(msg.replyTo(), new AgentResponse("Available slots:\n" + promptRenderer.slotList()));
         return state;
     }
 
@@ -293,15 +608,15 @@ public class AppointmentAgentHandler
             AppointmentState state,
             ActorContext context
     ) {
-        if (state.confirmedBookings().isEmpty()) {
-            context.tell(msg.replyTo(), new AgentResponse("No appointments booked yet."));
-        } else {
-            StringBuilder bookings = new StringBuilder("Booked appointments:\n");
-            state.confirmedBookings().forEach(booking -> {
-                bookings.append(String.format("  - %s at %s\n", booking.date(), booking.time()));
-            });
-            context.tell(msg.replyTo(), new AgentResponse(bookings.toString()));
-        }
+        // Only this session's own bookings
+        StringBuilder bookings = new StringBuilder("Booked appointments:\n");
+        int header = bookings.length();
+        inventory.forEachBookedSlot(context.getActorId(), slot -> {
+            SlotTime.appendDate(bookings.append("  - "), slot).append(" at ");
+            SlotTime.appendTime(bookings, slot).append('\n');
+        });
+        context.tell(msg.replyTo(), new AgentResponse(bookings.length() == header
+                ? "No appointments booked yet." : bookings.toString()));
         return state;
     }
 
@@ -310,75 +625,17 @@ public class AppointmentAgentHandler
             AppointmentState state,
             ActorContext context
     ) {
-        if (state.hasBooking(msg.date(), msg.time())) {
-            AppointmentState newState = state.removeBooking(msg.date(), msg.time());
-            context.tell(msg.replyTo(), new AgentResponse("Your appointment on " + msg.date() + " at " + msg.time() + " has been cancelled."));
-            return newState;
-        } else {
-            context.tell(msg.replyTo(), new AgentResponse("No such appointment found to cancel."));
-            return state;
-        }
-    }
-
-    private String buildOpenAIRequest(String systemPrompt, AppointmentState state) {
-        // Build JSON request
-        String conversationHistory = state.conversationHistory().stream()
-                .map(m -> String.format("{\"role\": \"%s\", \"content\": \"%s\"}",
-                        m.role(), escapeJson(m.content())))
-                .collect(Collectors.joining(",\n                    "));
-
-        return String.format("""
-                        {
-                            "model": "gpt-4",
-                            "messages": [
-                                {"role": "system", "content": "%s"}%s
-                            ]
-                        }
-                        """,
-                escapeJson(systemPrompt),
-                conversationHistory.isEmpty() ? "" : ",\n                    " + conversationHistory);
+        return changeSlot(msg.slot(), false, false, msg.replyTo(), System.nanoTime(), state, context);
     }
 
-    private String parseOpenAIResponse(String responseBody) {
+    String parseOpenAIResponse(String responseBody) {
         // Parse JSON response
         try {
-            JsonNode root = objectMapper.readTree(responseBody);
+            JsonNode root = Json.mapper().readTree(responseBody);
             return root.path("choices").get(0)
                     .path("message").path("content").asText();
         } catch (Exception e) {
             return "Error parsing response: " + e.getMessage();
         }
     }
-
-    private String escapeJson(String text) {
-        return text.replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t");
-    }
-
-    private String extractBookingCommand(String llmResponse) {
-        // Look for BOOK:YYYY-MM-DD:HH:MM pattern anywhere in the response
-        // Pattern: BOOK followed by date (YYYY-MM-DD) and time (HH:MM)
-        java.util.regex.Pattern pattern = java.util.regex.Pattern.compile("BOOK:(\\d{4}-\\d{2}-\\d{2}):(\\d{2}:\\d{2})");
-        java.util.regex.Matcher matcher = pattern.matcher(llmResponse);
-
-        if (matcher.find()) {
-            return matcher.group(0); // Returns the full match: BOOK:2025-11-06:09:00
-        }
-
-        return null;
-    }
-
-    private String extractCancelCommand(String llmResponse) {
-        // Look for CANCEL:YYYY-MM-DD:HH:MM pattern anywhere in the response
-        java.util.regex.Pattern pattern = java.util.regex.Pattern.compile("CANCEL:(\\d{4}-\\d{2}-\\d{2}):(\\d{2}:\\d{2})");
-        java.util.regex.Matcher matcher = pattern.matcher(llmResponse);
-        if (matcher.find()) {
-            return matcher.group(0); // Returns the full match: CANCEL:2025-11-06:09:00
-        }
-        return null;
-    }
 }
-
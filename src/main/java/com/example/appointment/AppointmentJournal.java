@@ -0,0 +1,34 @@
+package com.example.appointment;
+
+// Receives every change that has to survive a restart, and hands back what was recovered.
+// NONE keeps everything in memory only.
+public interface AppointmentJournal {
+    AppointmentJournal NONE = new AppointmentJournal() {
+        @Override
+        public void slotBooked(long epochDay, int minute, String owner) {
+        }
+
+        @Override
+        public void slotCancelled(long epochDay, int minute) {
+        }
+
+        @Override
+        public void messageAppended(String sessionId, String role, String content, AppointmentState state) {
+        }
+
+        @Override
+        public AppointmentState recoveredSession(String sessionId) {
+            return new AppointmentState();
+        }
+    };
+
+    // owner is the session the slot was booked for, or null
+    void slotBooked(long epochDay, int minute, String owner);
+
+    void slotCancelled(long epochDay, int minute);
+
+    // state is the session's state after the message was added (and the context window applied)
+    void messageAppended(String sessionId, String role, String content, AppointmentState state);
+
+    AppointmentState recoveredSession(String sessionId);
+}
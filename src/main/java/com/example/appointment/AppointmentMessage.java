@@ -10,18 +10,80 @@ public sealed interface AppointmentMessage extends Serializable permits
     GetAvailableSlots,
     GetBookedAppointments,
     BookAppointment,
-    CancelAppointment {}
+    CancelAppointment,
+    SlotChanged,
+    QuerySlots,
+    BookAppointments,
+    CancelAppointments,
+    SlotsChanged {}
 
 record UserMessage(String text, Pid replyTo) implements AppointmentMessage {}
 
-record LLMResponse(String content) implements AppointmentMessage {}
+// commanded: the reply carried BOOK/CANCEL commands, so the slots it names are not offers
+record LLMResponse(String content, boolean commanded) implements AppointmentMessage {}
 
 record GetAvailableSlots(Pid replyTo) implements AppointmentMessage {}
 
 record GetBookedAppointments(Pid replyTo) implements AppointmentMessage {}
 
-record BookAppointment(String date, String time, Pid replyTo) implements AppointmentMessage {}
+// Slots are SlotTime epoch minutes
+record BookAppointment(int slot, Pid replyTo) implements AppointmentMessage {}
 
-record CancelAppointment(String date, String time, Pid replyTo) implements AppointmentMessage {}
+record CancelAppointment(int slot, Pid replyTo) implements AppointmentMessage {}
 
-record AgentResponse(String message) implements Serializable {}
+// Outcome of a booking or cancellation applied by an InventoryPartition; fastPath and receivedNanos
+// carry the request's context back so the session can word and time its reply
+record SlotChanged(int slot, boolean book, boolean succeeded, boolean fastPath, Pid replyTo, long receivedNanos)
+        implements AppointmentMessage {}
+
+// Free (or booked) slots on days [fromDay, toDay) whose minute of day is in [fromMinute, toMinute), in
+// order, at most limit of them after the cursor slot (START for the first page); answered with a SlotPage
+record QuerySlots(long fromDay, long toDay, int fromMinute, int toMinute, boolean booked, int cursor, int limit,
+        Pid replyTo) implements AppointmentMessage {
+    static final int START = SlotTime.INVALID;
+
+    // The same query, continuing after the page that was last returned
+    QuerySlots after(SlotPage page) {
+        return new QuerySlots(fromDay, toDay, fromMinute, toMinute, booked, page.nextCursor(), limit, replyTo);
+    }
+}
+
+// Many bookings or cancellations applied in one actor turn; answered with a single BatchResult
+record BookAppointments(int[] slots, Pid replyTo) implements AppointmentMessage {}
+
+record CancelAppointments(int[] slots, Pid replyTo) implements AppointmentMessage {}
+
+// Outcome of the part of a batch an InventoryPartition applied: positions index the session's batch
+record SlotsChanged(int[] positions, boolean[] succeeded) implements AppointmentMessage {}
+
+// One page of a QuerySlots; nextCursor is SlotPage.END once there is nothing more
+record SlotPage(int[] slots, int nextCursor) implements Serializable {
+    static final int END = SlotTime.INVALID;
+
+    boolean hasMore() {
+        return nextCursor != END;
+    }
+}
+
+// succeeded[i] says whether slots[i] was booked (or cancelled)
+record BatchResult(boolean book, int[] slots, boolean[] succeeded) implements Serializable {
+    int succeededCount() {
+        int count = 0;
+        for (boolean ok : succeeded) {
+            if (ok) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
+
+// A streamed reply arrives as FRAGMENTs followed by a FINAL carrying the complete cleaned text, or by
+// a FAILED carrying the error when the stream broke off; everything else is a single WHOLE message
+record AgentResponse(String message, Part part) implements Serializable {
+    enum Part { WHOLE, FRAGMENT, FINAL, FAILED }
+
+    AgentResponse(String message) {
+        this(message, Part.WHOLE);
+    }
+}
@@ -4,97 +4,121 @@ package com.example.appointment;
 import com.cajunsystems.ActorSystem;
 import com.cajunsystems.Pid;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Scanner;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
+// Interactive console front-end. An input thread and the ResponseHandler actor feed one queue of
+// ConsoleEvents, and the main thread takes them in order: typed lines are dispatched to the session,
+// replies are printed the moment they arrive (streamed ones fragment by fragment). Only new lines are
+// written, below whatever is already on screen.
 public class AppointmentSchedulerDemo {
-    public static List<String> chatHistory = new ArrayList<>();
-    public static ConcurrentLinkedQueue<String> agentMessageQueue = new ConcurrentLinkedQueue<>();
+    private static final ConsoleScreen screen = new ConsoleScreen(System.out);
 
     public static void main(String[] args) throws InterruptedException {
         // Create actor system
         ActorSystem system = new ActorSystem();
 
-        // Create our appointment agent
-        Pid agentPid = system.statefulActorOf(
-                        AppointmentAgentHandler.class,
-                        new AppointmentState()
-                )
-                .withId("appointment-agent")
-                .spawn();
+        // Calendar and conversations survive restarts: recovered from the last snapshot plus the journal tail
+        ContextWindow contextWindow = ContextWindow.fromEnvironment();
+        JournalStore store = JournalStore.open(dataDirectory(), initializeSlots(), contextWindow);
+
+        // Latency histograms and counters, readable with /metrics and dumped as JSON next to the journal
+        AgentMetrics metrics = new AgentMetrics();
+        metrics.dumpEvery(Environment.intValue("METRICS_DUMP_SECONDS", 10),
+                dataDirectory().resolve("metrics.json"));
+
+        // Shared calendar, and one conversation actor per session on top of it
+        SlotInventoryService inventory = store.inventory();
+        AgentSessions sessions = new AgentSessions(system, inventory, SlotHolds.fromEnvironment(inventory),
+                contextWindow, LlmSettings.fromEnvironment(),
+                LlmCallScheduler.fromEnvironment(), LlmRetryPolicy.fromEnvironment(), ResponseCache.fromEnvironment(),
+                store, metrics);
 
-        // Create a simple receiver to handle responses
-        Pid receiverPid = system.actorOf(ResponseHandler.class)
+        // Replies and typed lines share one queue
+        BlockingQueue<ConsoleEvent> events = new LinkedBlockingQueue<>();
+        Pid receiverPid = system.actorOf(new ResponseHandler(events))
                 .withId("receiver")
                 .spawn();
+        Thread.ofPlatform().daemon().name("console-input").start(() -> readInput(events));
 
-        // Interactive conversation loop
-        Scanner scanner = new Scanner(System.in);
+        clearScreen();
+        printHeader();
+        screen.prompt();
         boolean running = true;
-        String userInput;
         while (running) {
-            clearScreen();
-            printHeader();
-            printChatHistory();
-            System.out.print("You: ");
-            try {
-                while (System.in.available() == 0 && agentMessageQueue.isEmpty()) {
-                    Thread.sleep(100);
-                    if (!agentMessageQueue.isEmpty()) {
-                        clearScreen();
-                        printHeader();
-                        printChatHistory();
-                        System.out.print("You: ");
-                    }
-                }
-                if (System.in.available() > 0) {
-                    userInput = scanner.nextLine().trim();
-                } else {
-                    userInput = "";
-                }
-            } catch (java.io.IOException e) {
-                userInput = scanner.nextLine().trim();
+            switch (events.take()) {
+                case ConsoleEvent.Input input -> running = dispatch(input.line().trim(), sessions, receiverPid, metrics);
+                case ConsoleEvent.Reply reply -> screen.render(reply.response());
+                case ConsoleEvent.InputClosed closed -> running = false;
             }
-            while (!agentMessageQueue.isEmpty()) {
-                String msg = agentMessageQueue.poll();
-                chatHistory.add("Agent: " + msg);
-            }
-            if (userInput.isEmpty()) {
-                continue;
+        }
+        System.out.println("\nThank you for using the Appointment Scheduling Agent. Goodbye!");
+        system.shutdown();
+        // Leave a fresh snapshot behind so the next start has no journal tail to replay
+        store.snapshot();
+        store.close();
+    }
+
+    // Blocks on standard input, one event per line
+    private static void readInput(BlockingQueue<ConsoleEvent> events) {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                events.add(new ConsoleEvent.Input(line));
             }
-            chatHistory.add("You: " + userInput);
-            if (userInput.equalsIgnoreCase("/quit") || userInput.equalsIgnoreCase("exit")) {
-                chatHistory.add("\nThank you for using the Appointment Scheduling Agent. Goodbye!");
-                running = false;
-            } else if (userInput.equalsIgnoreCase("/slots")) {
-                agentPid.tell(new GetAvailableSlots(receiverPid));
-                Thread.sleep(500);
-            } else if (userInput.equalsIgnoreCase("/booked")) {
-                agentPid.tell(new GetBookedAppointments(receiverPid));
-                Thread.sleep(500);
-            } else if (userInput.toLowerCase().startsWith("/cancel ")) {
-                String[] parts = userInput.split("\\s+");
-                if (parts.length >= 3) {
-                    String date = parts[1];
-                    String time = parts[2];
-                    agentPid.tell(new CancelAppointment(date, time, receiverPid));
-                    Thread.sleep(500);
-                } else {
-                    chatHistory.add("Usage: /cancel <date> <time> (e.g. /cancel 2025-11-06 09:00)");
-                }
+        } catch (IOException e) {
+            System.err.println("Could not read input: " + e.getMessage());
+        }
+        events.add(new ConsoleEvent.InputClosed());
+    }
+
+    // Sends the typed line to the agent; returns false when the user quits. The answer arrives later as
+    // a Reply event, so nothing here waits for it.
+    private static boolean dispatch(String userInput, AgentSessions sessions, Pid receiverPid, AgentMetrics metrics) {
+        screen.inputEchoed();
+        if (userInput.isEmpty()) {
+            screen.prompt();
+        } else if (userInput.equalsIgnoreCase("/quit") || userInput.equalsIgnoreCase("exit")) {
+            return false;
+        } else if (userInput.equalsIgnoreCase("/slots")) {
+            sessions.tell("console", new GetAvailableSlots(receiverPid));
+        } else if (userInput.equalsIgnoreCase("/metrics")) {
+            System.out.print(metrics.toText());
+            screen.prompt();
+        } else if (userInput.equalsIgnoreCase("/booked")) {
+            sessions.tell("console", new GetBookedAppointments(receiverPid));
+        } else if (userInput.toLowerCase().startsWith("/cancel ")) {
+            String[] parts = userInput.split("\\s+");
+            int slot = parts.length >= 3 ? SlotTime.parse(parts[1], parts[2]) : SlotTime.INVALID;
+            if (slot != SlotTime.INVALID) {
+                sessions.tell("console", new CancelAppointment(slot, receiverPid));
             } else {
-                agentPid.tell(new UserMessage(userInput, receiverPid));
-                Thread.sleep(2000);
+                System.out.println("Usage: /cancel <date> <time> (e.g. /cancel 2025-11-06 09:00)");
+                screen.prompt();
             }
+        } else {
+            sessions.tell("console", new UserMessage(userInput, receiverPid));
         }
-        scanner.close();
-        system.shutdown();
+        return true;
+    }
+
+    private static Path dataDirectory() {
+        String directory = System.getenv("DATA_DIR");
+        return Path.of(directory == null || directory.isBlank() ? "data" : directory);
     }
 
-    public static void addAgentMessage(String message) {
-        agentMessageQueue.add(message);
+    private static SlotInventory initializeSlots() {
+        return SlotInventory.empty()
+                .withSlots(LocalDate.of(2025, 11, 5), LocalTime.of(10, 0), LocalTime.of(14, 0), LocalTime.of(16, 0))
+                .withSlots(LocalDate.of(2025, 11, 6), LocalTime.of(9, 0), LocalTime.of(11, 0), LocalTime.of(15, 0));
     }
 
     private static void printHeader() {
@@ -104,19 +128,13 @@ public class AppointmentSchedulerDemo {
         System.out.println("Type your message to interact with the agent.");
         System.out.println("Special commands:");
         System.out.println("  /slots  - Check available appointment slots");
-        System.out.println("  /booked - View all booked appointments");
+        System.out.println("  /booked - View your booked appointments");
+        System.out.println("  /metrics - Show latency histograms and counters");
         System.out.println("  /cancel <date> <time> - Cancel an appointment (e.g. /cancel 2025-11-06 09:00)");
         System.out.println("  /quit   - Exit the application");
         System.out.println("=================================================\n");
     }
 
-    private static void printChatHistory() {
-        for (String msg : chatHistory) {
-            System.out.println(msg);
-        }
-        System.out.println();
-    }
-
     private static void clearScreen() {
         System.out.print("\033[H\033[2J");
         System.out.flush();
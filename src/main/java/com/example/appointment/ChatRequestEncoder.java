@@ -0,0 +1,111 @@
+package com.example.appointment;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Writes chat-completion request bodies straight to UTF-8 bytes with Jackson's streaming generator,
+// with no String to build, escape and encode again for every call. One encoder serves every session.
+// Bodies are written into growable buffers from a small pool; release() hands a buffer back as soon as
+// the request has been built, so buffers are reused rather than regrown, and the process keeps at most
+// MAX_POOLED of them however many sessions there are. Each request still gets an exact-size copy of its
+// body, because a cancelled retry or a losing hedge may still be sending it after the buffer is reused.
+class ChatRequestEncoder {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int MAX_POOLED = 8;
+    private static final String SUMMARY_HEADER = "Summary of the earlier conversation:\n";
+
+    private final String model;
+    private final ConcurrentLinkedQueue<Body> pool = new ConcurrentLinkedQueue<>();
+
+    ChatRequestEncoder(String model) {
+        this.model = model;
+    }
+
+    Body encode(String systemPrompt, AppointmentState state, boolean stream) {
+        return encode(systemPrompt, null, state, stream);
+    }
+
+    // note, if not null, is a second system message for this session alone, after the shared prompt
+    Body encode(String systemPrompt, String note, AppointmentState state, boolean stream) {
+        Body body = pool.poll();
+        if (body == null) {
+            body = new Body();
+        }
+        body.length = 0;
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(body, JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            json.writeStringField("model", model);
+            json.writeBooleanField("stream", stream);
+            json.writeArrayFieldStart("messages");
+            writeMessage(json, "system", systemPrompt);
+            if (note != null) {
+                writeMessage(json, "system", note);
+            }
+            if (!state.summary().isEmpty()) {
+                writeMessage(json, "system", SUMMARY_HEADER + state.summary());
+            }
+            List<Message> history = state.conversationHistory();
+            for (Message message : history) {
+                writeMessage(json, message.role(), message.content());
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        } catch (IOException e) {
+            // Only the in-memory sink is written to, so this cannot happen in practice
+            throw new UncheckedIOException(e);
+        }
+        return body;
+    }
+
+    // Returns the buffer to the pool; its publisher() keeps working
+    void release(Body body) {
+        if (pool.size() < MAX_POOLED) {
+            pool.offer(body);
+        }
+    }
+
+    private static void writeMessage(JsonGenerator json, String role, String content) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("role", role);
+        json.writeStringField("content", content);
+        json.writeEndObject();
+    }
+
+    static final class Body extends OutputStream {
+        private byte[] bytes = new byte[4096];
+        private int length;
+
+        // A copy, so the buffer can go back to the pool while attempts are still sending
+        HttpRequest.BodyPublisher publisher() {
+            return HttpRequest.BodyPublishers.ofByteArray(Arrays.copyOf(bytes, length));
+        }
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(length + 1);
+            bytes[length++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] source, int offset, int count) {
+            ensureCapacity(length + count);
+            System.arraycopy(source, offset, bytes, length, count);
+            length += count;
+        }
+
+        private void ensureCapacity(int required) {
+            if (required > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(required, bytes.length * 2));
+            }
+        }
+    }
+}
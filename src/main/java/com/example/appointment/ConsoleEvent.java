@@ -0,0 +1,12 @@
+package com.example.appointment;
+
+// Everything the console front-end reacts to, in arrival order on one queue: lines typed by the user
+// (from the input thread) and replies from the agent (from ResponseHandler)
+sealed interface ConsoleEvent {
+    record Input(String line) implements ConsoleEvent {}
+
+    record Reply(AgentResponse response) implements ConsoleEvent {}
+
+    // Standard input reached end of file
+    record InputClosed() implements ConsoleEvent {}
+}
@@ -0,0 +1,89 @@
+package com.example.appointment;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// What the console shows: replies are appended below what is already on screen, replacing a pending
+// "You: " prompt, and a streamed reply is written fragment by fragment on one line. Only touched by the
+// console's main thread.
+final class ConsoleScreen {
+    private final PrintStream out;
+    private boolean promptShown;
+    private boolean streaming;
+    // Replies that arrived while another was streaming (e.g. a booking result); shown after it
+    private final List<String> deferred = new ArrayList<>();
+
+    ConsoleScreen(PrintStream out) {
+        this.out = out;
+    }
+
+    void render(AgentResponse response) {
+        switch (response.part()) {
+            case FRAGMENT -> {
+                if (!streaming) {
+                    clearPrompt();
+                    out.print("Agent: ");
+                    streaming = true;
+                }
+                out.print(response.message());
+                out.flush();
+            }
+            case FINAL -> {
+                // The fragments already showed the text; without any, show it now
+                if (streaming) {
+                    out.println();
+                    streaming = false;
+                } else {
+                    clearPrompt();
+                    out.println("Agent: " + response.message());
+                }
+                endTurn();
+            }
+            case FAILED -> {
+                // Close whatever part of the reply was shown, then say why the rest never came
+                if (streaming) {
+                    out.println();
+                    streaming = false;
+                } else {
+                    clearPrompt();
+                }
+                out.println("Agent: " + response.message());
+                endTurn();
+            }
+            case WHOLE -> {
+                if (streaming) {
+                    deferred.add(response.message());
+                    return;
+                }
+                clearPrompt();
+                out.println("Agent: " + response.message());
+                prompt();
+            }
+        }
+    }
+
+    void prompt() {
+        out.print("You: ");
+        out.flush();
+        promptShown = true;
+    }
+
+    // The terminal has echoed a typed line, so the prompt is no longer the last thing on screen
+    void inputEchoed() {
+        promptShown = false;
+    }
+
+    private void endTurn() {
+        deferred.forEach(message -> out.println("Agent: " + message));
+        deferred.clear();
+        prompt();
+    }
+
+    private void clearPrompt() {
+        if (promptShown) {
+            out.print("\r\033[2K");
+            promptShown = false;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.appointment;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Keeps each session's prompt inside a token budget. The most recent turns are always sent verbatim;
+// older turns are folded into a rolling summary (one short line per turn, oldest lines dropped first)
+// and their raw text is evicted from the state. Token counts are the usual ~4 characters per token
+// estimate plus a small per-message overhead, which is close enough for budgeting.
+public class ContextWindow {
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+    private static final int SUMMARY_LINE_CHARS = 160;
+
+    private final int tokenBudget;
+    private final int recentTurns;
+    private final int summaryBudget;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong tokensSent = new AtomicLong();
+    private final AtomicLong tokensSaved = new AtomicLong();
+
+    public ContextWindow(int tokenBudget, int recentTurns) {
+        this.tokenBudget = tokenBudget;
+        this.recentTurns = recentTurns;
+        this.summaryBudget = tokenBudget / 4;
+    }
+
+    public static ContextWindow fromEnvironment() {
+        return new ContextWindow(
+                Environment.intValue("CONTEXT_TOKEN_BUDGET", 3000),
+                Environment.intValue("CONTEXT_RECENT_TURNS", 6));
+    }
+
+    // Evicts the oldest turns into the summary until history and summary fit the budget
+    public AppointmentState fit(AppointmentState state) {
+        PersistentVector<Message> history = state.conversationHistory();
+        int total = estimateTokens(state.summary());
+        for (Message message : history) {
+            total += estimateTokens(message.content());
+        }
+
+        int evicted = 0;
+        long evictedTokens = 0;
+        // Only the new lines are built up; the existing summary is not copied until the cut is known
+        String previous = state.summary();
+        StringBuilder added = new StringBuilder();
+        while (total > tokenBudget && history.size() - evicted > recentTurns) {
+            Message oldest = history.get(evicted++);
+            int tokens = estimateTokens(oldest.content());
+            total -= tokens;
+            evictedTokens += tokens;
+            if (!previous.isEmpty() || !added.isEmpty()) {
+                added.append('\n');
+            }
+            added.append(summarize(oldest));
+        }
+        if (evicted == 0) {
+            return state;
+        }
+
+        // The summary is itself bounded: forget its oldest lines first. The cut is found in one scan
+        // over previous + added and the result copied once.
+        int start = 0;
+        int end = previous.length() + added.length();
+        while (estimateTokens(end - start) > summaryBudget) {
+            int newline = nextLine(previous, added, start);
+            if (newline < 0) {
+                end = start + Math.min(end - start, summaryBudget * 4);
+                break;
+            }
+            start = newline + 1;
+        }
+        return new AppointmentState(history.dropFirst(evicted), slice(previous, added, start, end),
+                state.evictedTokens() + evictedTokens);
+    }
+
+    // Records one outgoing request built from this state
+    public void recordRequest(AppointmentState state) {
+        long sent = estimateTokens(state.summary());
+        for (Message message : state.conversationHistory()) {
+            sent += estimateTokens(message.content());
+        }
+        requests.incrementAndGet();
+        tokensSent.addAndGet(sent);
+        tokensSaved.addAndGet(Math.max(0, state.evictedTokens() - estimateTokens(state.summary())));
+    }
+
+    public Stats stats() {
+        return new Stats(requests.get(), tokensSent.get(), tokensSaved.get());
+    }
+
+    public record Stats(long requests, long tokensSent, long tokensSaved) {
+        public double tokensSavedPerRequest() {
+            return requests == 0 ? 0 : (double) tokensSaved / requests;
+        }
+    }
+
+    static int estimateTokens(CharSequence text) {
+        return estimateTokens(text.length());
+    }
+
+    private static int estimateTokens(int chars) {
+        return chars == 0 ? 0 : (chars + 3) / 4 + MESSAGE_OVERHEAD_TOKENS;
+    }
+
+    // Index of the first newline at or after from in previous + added, or -1
+    private static int nextLine(String previous, StringBuilder added, int from) {
+        if (from < previous.length()) {
+            int newline = previous.indexOf('\n', from);
+            if (newline >= 0) {
+                return newline;
+            }
+        }
+        int newline = added.indexOf("\n", Math.max(0, from - previous.length()));
+        return newline < 0 ? -1 : previous.length() + newline;
+    }
+
+    private static String slice(String previous, StringBuilder added, int start, int end) {
+        int split = previous.length();
+        if (start >= split) {
+            return added.substring(start - split, end - split);
+        }
+        if (end <= split) {
+            return previous.substring(start, end);
+        }
+        return new StringBuilder(end - start)
+                .append(previous, start, split)
+                .append(added, 0, end - split)
+                .toString();
+    }
+
+    // First line of the turn, shortened, tagged with who said it
+    private static String summarize(Message message) {
+        String content = message.content().strip();
+        int newline = content.indexOf('\n');
+        if (newline >= 0) {
+            content = content.substring(0, newline);
+        }
+        if (content.length() > SUMMARY_LINE_CHARS) {
+            content = content.substring(0, SUMMARY_LINE_CHARS) + "...";
+        }
+        return "- " + message.role() + ": " + content;
+    }
+}
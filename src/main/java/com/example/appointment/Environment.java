@@ -0,0 +1,20 @@
+package com.example.appointment;
+
+// Settings read from environment variables; a variable that is unset, blank or not a number falls back
+// to the given default.
+final class Environment {
+    private Environment() {
+    }
+
+    static int intValue(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
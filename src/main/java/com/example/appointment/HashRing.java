@@ -0,0 +1,97 @@
+package com.example.appointment;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Immutable consistent-hash ring of node ids. Each node is placed at virtualNodes points so load
+// spreads evenly; a key belongs to the first point at or after its hash. Adding or removing a node
+// only moves the keys between that node's points and their predecessors, about 1/n of them.
+final class HashRing {
+    private final int virtualNodes;
+    private final long[] points;
+    private final String[] owners;
+
+    private HashRing(int virtualNodes, long[] points, String[] owners) {
+        this.virtualNodes = virtualNodes;
+        this.points = points;
+        this.owners = owners;
+    }
+
+    static HashRing empty(int virtualNodes) {
+        return new HashRing(virtualNodes, new long[0], new String[0]);
+    }
+
+    HashRing with(String node) {
+        Map<Long, String> ring = toMap();
+        long base = fnv(node);
+        for (int i = 0; i < virtualNodes; i++) {
+            ring.put(mix(base + i * 0x9E3779B97F4A7C15L), node);
+        }
+        return fromMap(ring);
+    }
+
+    HashRing without(String node) {
+        Map<Long, String> ring = toMap();
+        ring.values().removeIf(node::equals);
+        return fromMap(ring);
+    }
+
+    boolean isEmpty() {
+        return points.length == 0;
+    }
+
+    Set<String> nodes() {
+        return new TreeSet<>(Arrays.asList(owners));
+    }
+
+    String ownerOf(long key) {
+        if (points.length == 0) {
+            throw new IllegalStateException("No nodes on the ring");
+        }
+        int index = Arrays.binarySearch(points, mix(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    private Map<Long, String> toMap() {
+        Map<Long, String> ring = new TreeMap<>();
+        for (int i = 0; i < points.length; i++) {
+            ring.put(points[i], owners[i]);
+        }
+        return ring;
+    }
+
+    private HashRing fromMap(Map<Long, String> ring) {
+        long[] newPoints = new long[ring.size()];
+        String[] newOwners = new String[ring.size()];
+        int i = 0;
+        for (Map.Entry<Long, String> point : ring.entrySet()) {
+            newPoints[i] = point.getKey();
+            newOwners[i++] = point.getValue();
+        }
+        return new HashRing(virtualNodes, newPoints, newOwners);
+    }
+
+    private static long fnv(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xFF)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    // MurmurHash3's 64-bit finalizer
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        return value ^ value >>> 33;
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.appointment;
+
+import java.time.Clock;
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.function.IntConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Recognises explicit, unambiguous requests in a user message so the agent can answer them without a
+// completion call: "book 2025-11-06 09:00", "cancel my 10:00 on the 5th", "what's free tomorrow".
+// It is deliberately conservative. A message routes only when it asks for exactly one of booking,
+// cancelling or availability, names at most one date and one time, and contains nothing that needs
+// judgement (negations, alternatives, "morning", "earliest", "next week", ...); everything else returns
+// null and goes to the LLM as before. Relative dates are resolved against the clock: "the 5th" is the
+// next 5th from today, "friday" the next Friday after today.
+final class IntentRouter {
+    sealed interface Route permits Book, Cancel, ShowSlots {}
+
+    // Slots are SlotTime epoch minutes
+    record Book(int slot) implements Route {}
+
+    record Cancel(int slot) implements Route {}
+
+    record ShowSlots(long epochDay) implements Route {}
+
+    // Longer messages tend to carry context or conditions a pattern match would miss
+    private static final int MAX_LENGTH = 120;
+
+    private static final String MONTH = "(january|february|march|april|may|june|july|august|september|october|november|december"
+            + "|jan|feb|mar|apr|jun|jul|aug|sep|sept|oct|nov|dec)\\.?";
+    private static final String ORDINAL = "(?:st|nd|rd|th)?";
+
+    // Date forms, most specific first; each match is blanked out before the next form is tried
+    private static final Pattern ISO_DATE = Pattern.compile("\\b(\\d{4})-(\\d{2})-(\\d{2})\\b");
+    // Not "dec 10:00", where the number is the hour
+    private static final Pattern MONTH_DAY = Pattern.compile("\\b" + MONTH + " (\\d{1,2})" + ORDINAL + "\\b(?!:)(?:,? (\\d{4})\\b)?");
+    private static final Pattern DAY_MONTH = Pattern.compile("\\b(\\d{1,2})" + ORDINAL + " (?:of )?" + MONTH + "(?:,? (\\d{4})\\b)?");
+    private static final Pattern DAY_OF_MONTH = Pattern.compile("\\bthe (\\d{1,2})(?:st|nd|rd|th)\\b");
+    private static final Pattern RELATIVE_DAY = Pattern.compile("\\b(today|tomorrow)\\b");
+    // A month left over once the forms above are blanked out has no day
+    private static final Pattern BARE_MONTH = Pattern.compile("\\b" + MONTH + "\\b");
+    private static final Pattern WEEKDAY = Pattern.compile("\\b(monday|tuesday|wednesday|thursday|friday|saturday|sunday)\\b");
+
+    private static final Pattern TIME = Pattern.compile("\\b(\\d{1,2})(?::(\\d{2}))? ?([ap])\\.?m\\b\\.?|\\b(\\d{1,2}):(\\d{2})\\b|\\b(noon)\\b");
+
+    private static final Pattern BOOK = Pattern.compile("\\b(?:book|reserve|schedule)\\b");
+    private static final Pattern CANCEL = Pattern.compile("\\bcancel(?:led|ed|ling|ing)?\\b");
+    private static final Pattern AVAILABILITY = Pattern.compile("\\b(?:free|available|availability|openings?|open)\\b");
+
+    // Anything that makes the request conditional, relative to something else, or a choice
+    private static final Pattern UNCERTAIN = Pattern.compile("\\b(?:not|no|don't|dont|can't|cannot|won't|shouldn't|should|"
+            + "instead|maybe|perhaps|or|and|if|either|unless|change|move|reschedule|rebook|next|last|this|after|before|"
+            + "between|around|about|morning|afternoon|evening|night|earliest|latest|first|soonest|any|anything|week|"
+            + "weekend|month|all|both|every|other|another|else)\\b|n't\\b");
+
+    // What mentionedDay returns for a message that names no single date
+    static final long NO_DAY = Long.MIN_VALUE;
+
+    private final Clock clock;
+
+    IntentRouter(Clock clock) {
+        this.clock = clock;
+    }
+
+    // The route for the message from session, or null when the LLM should handle it
+    Route route(String message, SlotInventoryService inventory, String session) {
+        if (message.length() > MAX_LENGTH) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder(message.toLowerCase(Locale.ROOT).replace('’', '\''));
+        if (UNCERTAIN.matcher(text).find()) {
+            return null;
+        }
+        boolean book = BOOK.matcher(text).find();
+        boolean cancel = CANCEL.matcher(text).find();
+        boolean availability = AVAILABILITY.matcher(text).find();
+        if ((book ? 1 : 0) + (cancel ? 1 : 0) + (availability ? 1 : 0) != 1) {
+            return null;
+        }
+
+        LocalDate today = LocalDate.now(clock);
+        Mention date = dates(text, today);
+        Mention time = times(text);
+        if (date.ambiguous() || time.ambiguous()) {
+            return null;
+        }
+
+        int slot = date.found() && time.found() ? SlotTime.of(date.value(), (int) time.value()) : SlotTime.INVALID;
+        if (book) {
+            return slot != SlotTime.INVALID ? new Book(slot) : null;
+        }
+        if (availability) {
+            return date.found() && !time.found() && slot == SlotTime.INVALID ? new ShowSlots(date.value()) : null;
+        }
+        if (slot != SlotTime.INVALID) {
+            return new Cancel(slot);
+        }
+        if (date.found() && time.found()) {
+            return null;
+        }
+        if (!date.found() && !time.found()) {
+            return null;
+        }
+        // Only a date or only a time: route when exactly one of the session's own bookings fits
+        int[] match = { SlotTime.INVALID, 0 };
+        IntConsumer candidate = booked -> {
+            match[0] = booked;
+            match[1]++;
+        };
+        if (date.found()) {
+            inventory.forEachBookedSlot(date.value(), session, candidate);
+        } else {
+            inventory.forEachBookedSlot(session, booked -> {
+                if (SlotTime.minuteOfDay(booked) == time.value()) {
+                    candidate.accept(booked);
+                }
+            });
+        }
+        return match[1] == 1 ? new Cancel(match[0]) : null;
+    }
+
+    // Epoch day of the one date the message names, in any of the forms route understands
+    long mentionedDay(String message) {
+        StringBuilder text = new StringBuilder(message.toLowerCase(Locale.ROOT).replace('’', '\''));
+        Mention date = dates(text, LocalDate.now(clock));
+        return date.found() ? date.value() : NO_DAY;
+    }
+
+    // At most one value may be mentioned; the same value mentioned twice ("the 5th, November 5") is fine
+    private record Mention(boolean found, boolean ambiguous, long value) {
+        static final Mention NONE = new Mention(false, false, 0);
+        static final Mention AMBIGUOUS = new Mention(false, true, 0);
+
+        Mention and(long other) {
+            if (ambiguous || (found && value != other)) {
+                return AMBIGUOUS;
+            }
+            return new Mention(true, false, other);
+        }
+
+        Mention and(Mention other) {
+            return other.ambiguous ? AMBIGUOUS : and(other.value);
+        }
+    }
+
+    // Epoch day of the single date the message names
+    private static Mention dates(StringBuilder text, LocalDate today) {
+        Mention mention = Mention.NONE;
+        for (Matcher m = ISO_DATE.matcher(text); m.find(); blank(text, m)) {
+            mention = mention.and(date(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)),
+                    Integer.parseInt(m.group(3))));
+        }
+        for (Matcher m = MONTH_DAY.matcher(text); m.find(); blank(text, m)) {
+            mention = mention.and(monthDay(today, month(m.group(1)), Integer.parseInt(m.group(2)), m.group(3)));
+        }
+        for (Matcher m = DAY_MONTH.matcher(text); m.find(); blank(text, m)) {
+            mention = mention.and(monthDay(today, month(m.group(2)), Integer.parseInt(m.group(1)), m.group(3)));
+        }
+        if (BARE_MONTH.matcher(text).find()) {
+            return Mention.AMBIGUOUS;
+        }
+        for (Matcher m = DAY_OF_MONTH.matcher(text); m.find(); blank(text, m)) {
+            mention = mention.and(dayOfMonth(today, Integer.parseInt(m.group(1))));
+        }
+        for (Matcher m = RELATIVE_DAY.matcher(text); m.find(); blank(text, m)) {
+            mention = mention.and(today.plusDays(m.group(1).equals("today") ? 0 : 1).toEpochDay());
+        }
+        for (Matcher m = WEEKDAY.matcher(text); m.find(); blank(text, m)) {
+            int ahead = Math.floorMod(DayOfWeek.valueOf(m.group(1).toUpperCase(Locale.ROOT)).getValue()
+                    - today.getDayOfWeek().getValue(), 7);
+            // "Friday" on a Friday could mean today or a week from now
+            mention = ahead == 0 ? Mention.AMBIGUOUS : mention.and(today.plusDays(ahead).toEpochDay());
+        }
+        return mention;
+    }
+
+    // Minute of the day of the single time the message names
+    private static Mention times(StringBuilder text) {
+        Mention mention = Mention.NONE;
+        for (Matcher m = TIME.matcher(text); m.find(); ) {
+            int minute;
+            if (m.group(6) != null) {
+                minute = 12 * 60;
+            } else if (m.group(3) != null) {
+                int hour = Integer.parseInt(m.group(1));
+                int minutes = m.group(2) == null ? 0 : Integer.parseInt(m.group(2));
+                if (hour < 1 || hour > 12 || minutes > 59) {
+                    return Mention.AMBIGUOUS;
+                }
+                minute = (hour % 12 + (m.group(3).equals("p") ? 12 : 0)) * 60 + minutes;
+            } else {
+                int hour = Integer.parseInt(m.group(4));
+                int minutes = Integer.parseInt(m.group(5));
+                if (hour > 23 || minutes > 59) {
+                    return Mention.AMBIGUOUS;
+                }
+                minute = hour * 60 + minutes;
+            }
+            mention = mention.and(minute);
+        }
+        return mention;
+    }
+
+    // Not a real date ("February 30") is ambiguous, so the message goes to the LLM
+    private static Mention date(int year, int month, int day) {
+        try {
+            return Mention.NONE.and(LocalDate.of(year, month, day).toEpochDay());
+        } catch (DateTimeException e) {
+            return Mention.AMBIGUOUS;
+        }
+    }
+
+    // "November 5" without a year is the next November 5 from today
+    private static Mention monthDay(LocalDate today, int month, int day, String year) {
+        if (year != null) {
+            return date(Integer.parseInt(year), month, day);
+        }
+        for (int y = today.getYear(); y <= today.getYear() + 4; y++) {
+            Mention candidate = date(y, month, day);
+            if (candidate.found() && candidate.value() >= today.toEpochDay()) {
+                return candidate;
+            }
+        }
+        return date(today.getYear(), month, day);
+    }
+
+    // "The 5th" is the next 5th from today, skipping months that are too short
+    private static Mention dayOfMonth(LocalDate today, int day) {
+        LocalDate month = today.withDayOfMonth(1);
+        for (int i = 0; i < 3; i++, month = month.plusMonths(1)) {
+            if (day <= month.lengthOfMonth() && !month.withDayOfMonth(day).isBefore(today)) {
+                return Mention.NONE.and(month.withDayOfMonth(day).toEpochDay());
+            }
+        }
+        return date(today.getYear(), today.getMonthValue(), day);
+    }
+
+    private static int month(String name) {
+        return switch (name.substring(0, 3)) {
+            case "jan" -> 1;
+            case "feb" -> 2;
+            case "mar" -> 3;
+            case "apr" -> 4;
+            case "may" -> 5;
+            case "jun" -> 6;
+            case "jul" -> 7;
+            case "aug" -> 8;
+            case "sep" -> 9;
+            case "oct" -> 10;
+            case "nov" -> 11;
+            default -> 12;
+        };
+    }
+
+    private static void blank(StringBuilder text, Matcher matcher) {
+        for (int i = matcher.start(); i < matcher.end(); i++) {
+            text.setCharAt(i, ' ');
+        }
+    }
+}
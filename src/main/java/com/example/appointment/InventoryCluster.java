@@ -0,0 +1,214 @@
+package com.example.appointment;
+
+import com.cajunsystems.ActorSystem;
+import com.cajunsystems.Pid;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+// The slot inventory split across several nodes, each its own ActorSystem with an InventoryPartition
+// actor. The calendar is cut into ranges of rangeDays consecutive days, and a consistent-hash ring of
+// the nodes decides which node owns each range; sessions send BookAppointment and CancelAppointment to
+// the owner as SlotChange commands, and the owner answers with SlotChanged; batches are split by range
+// into one SlotBatch per range, each answered with SlotsChanged.
+//
+// When a node joins or leaves, only the ranges whose owner changes move: the new owner is told to
+// expect each one (and holds its commands), the ring is switched, and the old owner hands the days over.
+// The returned future completes once every moved range has arrived. A node that has left keeps
+// forwarding stray commands, so shut its ActorSystem down a little after that.
+//
+// Reads - the system prompt, availability, the fast path - go to view(), an inventory of the whole
+// calendar that partitions update after every booking and cancellation they commit. The partitions'
+// own inventories are not journaled; the view is, when it is given one that is (e.g. a JournalStore's),
+// so every committed change reaches the journal once, and snapshots of the view cover the calendar.
+public final class InventoryCluster {
+    private final int rangeDays;
+    private final SlotInventoryService view;
+    // Every range of the calendar, whichever node holds it
+    private final Set<Long> ranges = new TreeSet<>();
+    private final Map<String, Node> nodes = new ConcurrentHashMap<>();
+    private volatile HashRing ring;
+    private CompletableFuture<Void> lastRebalance = CompletableFuture.completedFuture(null);
+
+    private record Node(ActorSystem system, Pid partition, SlotInventoryService inventory) {}
+
+    // Counts down the ranges of one join or leave
+    static final class Rebalance {
+        private final AtomicInteger remaining;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Rebalance(int ranges) {
+            remaining = new AtomicInteger(ranges);
+            if (ranges == 0) {
+                done.complete(null);
+            }
+        }
+
+        void moved() {
+            if (remaining.decrementAndGet() == 0) {
+                done.complete(null);
+            }
+        }
+    }
+
+    public InventoryCluster(SlotInventory calendar, int rangeDays, int virtualNodes) {
+        this(new SlotInventoryService(calendar), rangeDays, virtualNodes);
+    }
+
+    // The partitions start from view's calendar, and commit to it through published
+    public InventoryCluster(SlotInventoryService view, int rangeDays, int virtualNodes) {
+        this.rangeDays = rangeDays;
+        this.view = view;
+        this.ring = HashRing.empty(virtualNodes);
+        view.forEachDay((epochDay, token, owner) -> ranges.add(Math.floorDiv(epochDay, (long) rangeDays)));
+    }
+
+    public static InventoryCluster fromEnvironment(SlotInventory calendar) {
+        return fromEnvironment(new SlotInventoryService(calendar));
+    }
+
+    public static InventoryCluster fromEnvironment(SlotInventoryService view) {
+        return new InventoryCluster(view,
+                Environment.intValue("PARTITION_RANGE_DAYS", 7),
+                Environment.intValue("PARTITION_VIRTUAL_NODES", 64));
+    }
+
+    public SlotInventoryService view() {
+        return view;
+    }
+
+    // Adds a node, spawning its partition in the given system, and moves its share of the ranges to it
+    public synchronized CompletableFuture<Void> join(String nodeId, ActorSystem system) {
+        if (nodes.containsKey(nodeId)) {
+            throw new IllegalArgumentException("Node " + nodeId + " is already in the cluster");
+        }
+        lastRebalance.join();
+        SlotInventoryService inventory = new SlotInventoryService(SlotInventory.empty());
+        Pid partition = system.actorOf(new InventoryPartition(nodeId, this, inventory))
+                .withId("inventory-partition-" + nodeId)
+                .spawn();
+        nodes.put(nodeId, new Node(system, partition, inventory));
+        return rebalance(ring.with(nodeId));
+    }
+
+    // Moves the node's ranges to the remaining nodes; the last node cannot leave
+    public synchronized CompletableFuture<Void> leave(String nodeId) {
+        if (!nodes.containsKey(nodeId)) {
+            throw new IllegalArgumentException("Node " + nodeId + " is not in the cluster");
+        }
+        if (nodes.size() == 1) {
+            throw new IllegalStateException("The last node cannot leave");
+        }
+        lastRebalance.join();
+        CompletableFuture<Void> moved = rebalance(ring.without(nodeId));
+        nodes.remove(nodeId);
+        return moved;
+    }
+
+    private CompletableFuture<Void> rebalance(HashRing updated) {
+        HashRing current = ring;
+        Map<Long, String> moves = new LinkedHashMap<>();
+        for (long range : ranges) {
+            String owner = updated.ownerOf(range);
+            if (current.isEmpty() || !current.ownerOf(range).equals(owner)) {
+                moves.put(range, owner);
+            }
+        }
+        Rebalance rebalance = new Rebalance(moves.size());
+        moves.forEach((range, owner) -> nodes.get(owner).partition().tell(new InventoryPartition.Expect(range)));
+        ring = updated;
+        moves.forEach((range, owner) -> {
+            Pid to = nodes.get(owner).partition();
+            if (current.isEmpty()) {
+                // First node: it starts from the view, which nothing has changed yet
+                to.tell(new InventoryPartition.Adopt(range,
+                        view.copyDays(firstDayOf(range), firstDayOf(range + 1)), rebalance));
+            } else {
+                nodes.get(current.ownerOf(range)).partition().tell(new InventoryPartition.Release(range, to, rebalance));
+            }
+        });
+        lastRebalance = rebalance.done;
+        return rebalance.done;
+    }
+
+    void route(InventoryPartition.SlotChange change) {
+        route(rangeOf(change.slot()), change);
+    }
+
+    // Splits a batch by range and sends each part to its owner; returns how many parts were sent
+    int route(int[] slots, boolean book, Pid session) {
+        Map<Long, IntStream.Builder> positions = new LinkedHashMap<>();
+        for (int i = 0; i < slots.length; i++) {
+            positions.computeIfAbsent(rangeOf(slots[i]), range -> IntStream.builder()).add(i);
+        }
+        positions.forEach((range, builder) -> {
+            int[] part = builder.build().toArray();
+            int[] partSlots = new int[part.length];
+            Arrays.setAll(partSlots, k -> slots[part[k]]);
+            route(range, new InventoryPartition.SlotBatch(partSlots, part, book, session));
+        });
+        return positions.size();
+    }
+
+    void route(long range, InventoryPartition.Command command) {
+        Node owner;
+        // A node that is leaving is dropped from nodes only after the ring has moved on without it, so
+        // missing it means the ring read was stale
+        while ((owner = nodes.get(ownerOf(range))) == null) {
+            Thread.onSpinWait();
+        }
+        owner.partition().tell(command);
+    }
+
+    // A partition committed a change for owner; mirror it in the view
+    void published(int slot, boolean booked, String owner) {
+        if (booked) {
+            view.tryBook(slot, owner);
+        } else {
+            view.cancel(slot);
+        }
+    }
+
+    void published(int[] slots, boolean booked, String owner, boolean[] succeeded) {
+        int count = 0;
+        int[] changed = new int[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            if (succeeded[i]) {
+                changed[count++] = slots[i];
+            }
+        }
+        view.changeAll(Arrays.copyOf(changed, count), booked, owner, new boolean[count]);
+    }
+
+    long rangeOf(int slot) {
+        return Math.floorDiv(SlotTime.epochDay(slot), (long) rangeDays);
+    }
+
+    long firstDayOf(long range) {
+        return range * rangeDays;
+    }
+
+    String ownerOf(long range) {
+        return ring.ownerOf(range);
+    }
+
+    public Set<String> nodeIds() {
+        return Collections.unmodifiableSet(ring.nodes());
+    }
+
+    // Bookings held by each node, as its partition sees them
+    public Map<String, Integer> bookedByNode() {
+        Map<String, Integer> booked = new LinkedHashMap<>();
+        new TreeMap<>(nodes).forEach((nodeId, node) -> booked.put(nodeId, node.inventory().bookedCount()));
+        return booked;
+    }
+}
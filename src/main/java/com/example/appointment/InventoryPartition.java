@@ -0,0 +1,122 @@
+package com.example.appointment;
+
+import com.cajunsystems.ActorContext;
+import com.cajunsystems.Pid;
+import com.cajunsystems.handler.Handler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// The actor that owns one node's share of the calendar in an InventoryCluster. Bookings and
+// cancellations for the ranges it owns are applied here, one at a time, and the outcome is sent back to
+// the session that asked. Commands that reach it for a range it has since handed off are passed on to
+// the current owner; commands for a range it is about to receive are held until the range arrives.
+final class InventoryPartition implements Handler<InventoryPartition.Command> {
+    sealed interface Command permits SlotChange, SlotBatch, Expect, Release, Adopt {}
+
+    // Book (or cancel) a slot on behalf of a session, which owns the booking (or has to own the one it
+    // cancels); receivedNanos is when the user message came in
+    record SlotChange(int slot, boolean book, boolean fastPath, Pid session, Pid replyTo, long receivedNanos)
+            implements Command {}
+
+    // Part of a session's BookAppointments or CancelAppointments: slots all in one range, and their
+    // positions in the session's batch
+    record SlotBatch(int[] slots, int[] positions, boolean book, Pid session) implements Command {}
+
+    // This node is about to own the range; hold its commands until Adopt brings the days
+    record Expect(long range) implements Command {}
+
+    // Hand the range's days to another node
+    record Release(long range, Pid to, InventoryCluster.Rebalance rebalance) implements Command {}
+
+    record Adopt(long range, SlotInventoryService.Slots slots, InventoryCluster.Rebalance rebalance) implements Command {}
+
+    private final String nodeId;
+    private final InventoryCluster cluster;
+    private final SlotInventoryService inventory;
+    // Ranges expected but not yet adopted, with the commands that arrived for them meanwhile
+    private final Map<Long, List<Command>> waiting = new HashMap<>();
+
+    InventoryPartition(String nodeId, InventoryCluster cluster, SlotInventoryService inventory) {
+        this.nodeId = nodeId;
+        this.cluster = cluster;
+        this.inventory = inventory;
+    }
+
+    @Override
+    public void receive(Command command, ActorContext context) {
+        switch (command) {
+            case SlotChange change -> change(change, context);
+            case SlotBatch batch -> batch(batch, context);
+            case Expect expect -> waiting.putIfAbsent(expect.range(), new ArrayList<>());
+            case Release release -> release(release, context);
+            case Adopt adopt -> adopt(adopt, context);
+        }
+    }
+
+    private void change(SlotChange change, ActorContext context) {
+        if (!owns(cluster.rangeOf(change.slot()), change)) {
+            return;
+        }
+        String owner = change.session().actorId();
+        boolean succeeded = change.book()
+                ? inventory.tryBook(change.slot(), owner)
+                : inventory.cancel(change.slot(), owner);
+        if (succeeded) {
+            cluster.published(change.slot(), change.book(), owner);
+        }
+        context.tell(change.session(), new SlotChanged(change.slot(), change.book(), succeeded, change.fastPath(),
+                change.replyTo(), change.receivedNanos()));
+    }
+
+    private void batch(SlotBatch batch, ActorContext context) {
+        if (!owns(cluster.rangeOf(batch.slots()[0]), batch)) {
+            return;
+        }
+        boolean[] succeeded = new boolean[batch.slots().length];
+        String owner = batch.session().actorId();
+        inventory.changeAll(batch.slots(), batch.book(), owner, succeeded);
+        cluster.published(batch.slots(), batch.book(), owner, succeeded);
+        context.tell(batch.session(), new SlotsChanged(batch.positions(), succeeded));
+    }
+
+    // Whether the command's range is here to apply it to; otherwise it is held or passed on
+    private boolean owns(long range, Command command) {
+        List<Command> held = waiting.get(range);
+        if (held != null) {
+            held.add(command);
+            return false;
+        }
+        if (!cluster.ownerOf(range).equals(nodeId)) {
+            // Sent before the range moved away
+            cluster.route(range, command);
+            return false;
+        }
+        return true;
+    }
+
+    private void release(Release release, ActorContext context) {
+        List<Command> held = waiting.get(release.range());
+        if (held != null) {
+            // Still on its way here from the previous owner
+            held.add(release);
+            return;
+        }
+        SlotInventoryService.Slots slots = inventory.takeDays(cluster.firstDayOf(release.range()),
+                cluster.firstDayOf(release.range() + 1));
+        context.tell(release.to(), new Adopt(release.range(), slots, release.rebalance()));
+    }
+
+    private void adopt(Adopt adopt, ActorContext context) {
+        inventory.addSlots(adopt.slots());
+        List<Command> held = waiting.remove(adopt.range());
+        adopt.rebalance().moved();
+        if (held != null) {
+            for (Command command : held) {
+                receive(command, context);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.appointment;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Everything that changes durable state, as written to the journal. Encoded as a type byte followed
+// by fixed-width numbers and length-prefixed UTF-8 strings. A SlotBooked ends with its owner, which
+// records written before bookings had one lack; they read back without an owner.
+sealed interface JournalEvent permits SlotBooked, SlotCancelled, MessageAppended {
+    byte SLOT_BOOKED = 1;
+    byte SLOT_CANCELLED = 2;
+    byte MESSAGE_APPENDED = 3;
+
+    byte[] encode();
+
+    static JournalEvent decode(ByteBuffer payload) {
+        byte type = payload.get(0);
+        ByteBuffer in = payload.slice(1, payload.limit() - 1);
+        return switch (type) {
+            case SLOT_BOOKED -> new SlotBooked(in.getLong(), in.getShort(), in.hasRemaining() ? readString(in) : null);
+            case SLOT_CANCELLED -> new SlotCancelled(in.getLong(), in.getShort());
+            case MESSAGE_APPENDED -> new MessageAppended(readString(in), readString(in), readString(in));
+            default -> throw new IllegalArgumentException("Unknown journal event type " + type);
+        };
+    }
+
+    static byte[] encodeSlot(byte type, long epochDay, int minute) {
+        return ByteBuffer.allocate(1 + Long.BYTES + Short.BYTES)
+                .put(type)
+                .putLong(epochDay)
+                .putShort((short) minute)
+                .array();
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
+
+record SlotBooked(long epochDay, int minute, String owner) implements JournalEvent {
+    @Override
+    public byte[] encode() {
+        if (owner == null) {
+            return JournalEvent.encodeSlot(SLOT_BOOKED, epochDay, minute);
+        }
+        byte[] ownerBytes = owner.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(1 + Long.BYTES + Short.BYTES + Integer.BYTES + ownerBytes.length)
+                .put(SLOT_BOOKED)
+                .putLong(epochDay)
+                .putShort((short) minute)
+                .putInt(ownerBytes.length).put(ownerBytes)
+                .array();
+    }
+}
+
+record SlotCancelled(long epochDay, int minute) implements JournalEvent {
+    @Override
+    public byte[] encode() {
+        return JournalEvent.encodeSlot(SLOT_CANCELLED, epochDay, minute);
+    }
+}
+
+record MessageAppended(String sessionId, String role, String content) implements JournalEvent {
+    @Override
+    public byte[] encode() {
+        byte[] session = sessionId.getBytes(StandardCharsets.UTF_8);
+        byte[] roleBytes = role.getBytes(StandardCharsets.UTF_8);
+        byte[] contentBytes = content.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(1 + 3 * Integer.BYTES + session.length + roleBytes.length + contentBytes.length)
+                .put(MESSAGE_APPENDED)
+                .putInt(session.length).put(session)
+                .putInt(roleBytes.length).put(roleBytes)
+                .putInt(contentBytes.length).put(contentBytes)
+                .array();
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.appointment;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Event-sourced persistence for the calendar and every session's conversation. Bookings, cancellations
+// and history appends go to a MappedJournal; every snapshotEvery events a SnapshotFile is written in the
+// background and the journal segments it covers are deleted. Opening a store loads the newest snapshot
+// and replays only the journal tail behind it, re-applying the context window to history appends so the
+// recovered states match what the actors held.
+// Snapshots need no pause: the position and the session states are captured together under the store
+// lock, and calendar events that slip in between the position and the calendar read are harmless to
+// replay, because re-booking a booked slot or re-cancelling a free one changes nothing.
+// Nothing waits for the disk before a booking is confirmed: an event is safe from a process crash as
+// soon as it is appended, but a power loss or OS crash can lose whatever the flusher had not yet forced,
+// up to syncIntervalMillis of events. sync() waits for the fsync when that matters.
+public final class JournalStore implements AppointmentJournal, AutoCloseable {
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    private final Path directory;
+    private final MappedJournal journal;
+    private final long snapshotEvery;
+    private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().daemon().name("journal-snapshots").factory());
+    // Held while a snapshot is written, so snapshots never overlap
+    private final Object snapshotLock = new Object();
+
+    // Guarded by this: the latest state of every session, shared with (not copied from) the actors
+    private final Map<String, AppointmentState> sessions;
+    private long eventsSinceSnapshot;
+    private boolean snapshotPending;
+
+    private SlotInventoryService inventory;
+
+    private JournalStore(Path directory, MappedJournal journal, long snapshotEvery, Map<String, AppointmentState> sessions) {
+        this.directory = directory;
+        this.journal = journal;
+        this.snapshotEvery = snapshotEvery;
+        this.sessions = sessions;
+    }
+
+    public static JournalStore open(Path directory, SlotInventory initial, ContextWindow contextWindow) {
+        return open(directory, initial, contextWindow, Runtime.getRuntime().availableProcessors() * 4,
+                64 << 20, 5, 100_000);
+    }
+
+    // initial is only used when there is no snapshot yet; afterwards the snapshot holds the calendar
+    public static JournalStore open(
+            Path directory,
+            SlotInventory initial,
+            ContextWindow contextWindow,
+            int stripeCount,
+            int segmentBytes,
+            long syncIntervalMillis,
+            long snapshotEvery
+    ) {
+        SnapshotFile.Contents snapshot;
+        try {
+            Files.createDirectories(directory);
+            Path latest = latestSnapshot(directory);
+            snapshot = latest == null
+                    ? new SnapshotFile.Contents(0, initial, new HashMap<>())
+                    : SnapshotFile.read(latest);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // Replay the tail on top of the snapshot
+        SlotInventory[] calendar = { snapshot.inventory() };
+        Map<String, AppointmentState> sessions = new HashMap<>(snapshot.sessions());
+        long[] replayed = new long[1];
+        MappedJournal journal = MappedJournal.open(directory, segmentBytes, syncIntervalMillis);
+        journal.replay(snapshot.position(), payload -> {
+            replayed[0]++;
+            switch (JournalEvent.decode(payload)) {
+                case SlotBooked booked -> calendar[0] = calendar[0].book(
+                        SlotTime.of(booked.epochDay(), booked.minute()), booked.owner());
+                case SlotCancelled cancelled -> calendar[0] = calendar[0].cancel(
+                        SlotTime.of(cancelled.epochDay(), cancelled.minute()));
+                case MessageAppended appended -> sessions.put(appended.sessionId(), contextWindow.fit(
+                        sessions.getOrDefault(appended.sessionId(), new AppointmentState())
+                                .addMessage(appended.role(), appended.content())));
+            }
+        });
+
+        JournalStore store = new JournalStore(directory, journal, snapshotEvery, sessions);
+        store.eventsSinceSnapshot = replayed[0];
+        store.inventory = new SlotInventoryService(calendar[0], stripeCount, store);
+        return store;
+    }
+
+    // The recovered calendar; every change made through it is journaled
+    public SlotInventoryService inventory() {
+        return inventory;
+    }
+
+    @Override
+    public synchronized AppointmentState recoveredSession(String sessionId) {
+        return sessions.getOrDefault(sessionId, new AppointmentState());
+    }
+
+    @Override
+    public void slotBooked(long epochDay, int minute, String owner) {
+        append(new SlotBooked(epochDay, minute, owner).encode(), null, null);
+    }
+
+    @Override
+    public void slotCancelled(long epochDay, int minute) {
+        append(new SlotCancelled(epochDay, minute).encode(), null, null);
+    }
+
+    @Override
+    public void messageAppended(String sessionId, String role, String content, AppointmentState state) {
+        append(new MessageAppended(sessionId, role, content).encode(), sessionId, state);
+    }
+
+    // Blocks until every event recorded so far is on disk
+    public void sync() throws InterruptedException {
+        journal.awaitDurable(journal.position());
+    }
+
+    // Writes a snapshot now (on the calling thread) and drops the journal segments it covers
+    public void snapshot() {
+        synchronized (snapshotLock) {
+            long position;
+            Map<String, AppointmentState> sessionStates;
+            synchronized (this) {
+                position = journal.position();
+                sessionStates = new HashMap<>(sessions);
+                eventsSinceSnapshot = 0;
+            }
+            try {
+                SnapshotFile.write(directory.resolve(snapshotName(position)), position, inventory, sessionStates);
+                for (Path old : snapshots(directory)) {
+                    if (snapshotPosition(old) < position) {
+                        Files.deleteIfExists(old);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            journal.deleteBefore(position);
+        }
+    }
+
+    @Override
+    public void close() {
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+    }
+
+    private void append(byte[] event, String sessionId, AppointmentState state) {
+        boolean snapshotDue;
+        synchronized (this) {
+            journal.append(event);
+            if (sessionId != null) {
+                sessions.put(sessionId, state);
+            }
+            snapshotDue = ++eventsSinceSnapshot >= snapshotEvery && !snapshotPending;
+            if (snapshotDue) {
+                snapshotPending = true;
+            }
+        }
+        if (snapshotDue) {
+            snapshotter.execute(() -> {
+                try {
+                    snapshot();
+                } finally {
+                    synchronized (this) {
+                        snapshotPending = false;
+                    }
+                }
+            });
+        }
+    }
+
+    private static Path latestSnapshot(Path directory) throws IOException {
+        Path latest = null;
+        for (Path snapshot : snapshots(directory)) {
+            if (latest == null || snapshotPosition(snapshot) > snapshotPosition(latest)) {
+                latest = snapshot;
+            }
+        }
+        return latest;
+    }
+
+    private static List<Path> snapshots(Path directory) throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX);
+            }).forEach(snapshots::add);
+        }
+        return snapshots;
+    }
+
+    private static String snapshotName(long position) {
+        return String.format("%s%020d%s", SNAPSHOT_PREFIX, position, SNAPSHOT_SUFFIX);
+    }
+
+    private static long snapshotPosition(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+    }
+}
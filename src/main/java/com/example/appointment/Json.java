@@ -0,0 +1,25 @@
+package com.example.appointment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+// Process-wide Jackson objects, created on first use. An ObjectMapper is thread-safe once configured but
+// costly to build and warm up (it caches a serializer and deserializer per type), so sessions, the
+// metrics dump and the load test all share these instead of creating their own.
+final class Json {
+    private Json() {
+    }
+
+    private static final class Shared {
+        static final ObjectMapper MAPPER = new ObjectMapper();
+        static final ObjectWriter PRETTY = MAPPER.writerWithDefaultPrettyPrinter();
+    }
+
+    static ObjectMapper mapper() {
+        return Shared.MAPPER;
+    }
+
+    static ObjectWriter prettyWriter() {
+        return Shared.PRETTY;
+    }
+}
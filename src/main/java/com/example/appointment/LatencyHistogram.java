@@ -0,0 +1,88 @@
+package com.example.appointment;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// HDR-style latency histogram in nanoseconds: log-linear buckets, exact below 128ns and within
+// 1/64 (~1.6%) of the value above that, up to Long.MAX_VALUE, in a fixed array of counters.
+// record() is a few atomic increments and never allocates, so it can sit on hot paths without
+// distorting what it measures. Reads are not atomic with respect to concurrent records; a snapshot
+// taken under load may be off by the records in flight.
+public final class LatencyHistogram {
+    // Each power of two above 2^SUB_BITS is split into HALF linear buckets
+    private static final int SUB_BITS = 7;
+    private static final int HALF = 1 << (SUB_BITS - 1);
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * HALF + HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long seen = max.get();
+        while (value > seen && !max.compareAndSet(seen, value)) {
+            seen = max.get();
+        }
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    // Upper bound of the bucket holding the given quantile (0..1) of the recorded values, or 0 if empty
+    public long valueAt(double quantile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValueIn(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public Snapshot snapshot() {
+        long total = count.get();
+        return new Snapshot(total, total == 0 ? 0 : sum.get() / total,
+                valueAt(0.5), valueAt(0.9), valueAt(0.99), valueAt(0.999), max.get());
+    }
+
+    public record Snapshot(
+            long count,
+            long meanNanos,
+            long p50Nanos,
+            long p90Nanos,
+            long p99Nanos,
+            long p999Nanos,
+            long maxNanos
+    ) {}
+
+    // Values below 2 * HALF map to themselves; above, the top SUB_BITS bits select the bucket within
+    // the value's power of two
+    static int indexOf(long value) {
+        if (value < 2 * HALF) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+        return shift * HALF + (int) (value >>> shift);
+    }
+
+    static long highestValueIn(int index) {
+        if (index < 2 * HALF) {
+            return index;
+        }
+        int shift = index / HALF - 1;
+        long top = index - (long) shift * HALF;
+        return ((top + 1) << shift) - 1;
+    }
+}
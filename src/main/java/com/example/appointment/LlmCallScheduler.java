@@ -0,0 +1,158 @@
+package com.example.appointment;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+// Admission control for outbound completion calls, shared by all sessions. Calls wait in a bounded
+// queue (one FIFO per session, served round-robin so a chatty session cannot starve the others) and
+// are started only while fewer than `limit` are in flight. The limit adapts AIMD-style: it grows by
+// about one per window of healthy calls while it is being used, and halves when a call fails, is
+// throttled (429 / 5xx) or takes longer than the latency target, so a struggling provider gets less
+// traffic instead of a growing backlog. Calls that were already running when the limit was cut do not
+// cut it again, otherwise one bad moment would collapse the limit to 1. When the queue is full,
+// submit() refuses the call at once.
+public class LlmCallScheduler {
+    private static final double BACKOFF = 0.5;
+
+    private final int maxQueued;
+    private final int maxQueuedPerSession;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+
+    // Guarded by this
+    private final Map<String, ArrayDeque<Supplier<CompletableFuture<Integer>>>> queues = new HashMap<>();
+    private final ArrayDeque<String> ready = new ArrayDeque<>();
+    private int queued;
+    private int inFlight;
+    private double limit;
+    private long backoffs;
+    private long started;
+    private long completed;
+    private long overloaded;
+    private long rejected;
+
+    public LlmCallScheduler(int maxQueued, int maxQueuedPerSession, int initialLimit, int maxLimit, long latencyTargetMillis) {
+        this.maxQueued = maxQueued;
+        this.maxQueuedPerSession = maxQueuedPerSession;
+        this.minLimit = 1;
+        this.maxLimit = Math.max(1, maxLimit);
+        this.limit = Math.max(minLimit, Math.min(initialLimit, this.maxLimit));
+        this.latencyTargetNanos = latencyTargetMillis * 1_000_000;
+    }
+
+    public static LlmCallScheduler fromEnvironment() {
+        int maxLimit = Environment.intValue("LLM_MAX_CONCURRENCY", 32);
+        return new LlmCallScheduler(
+                Environment.intValue("LLM_QUEUE_CAPACITY", 256),
+                Environment.intValue("LLM_QUEUE_PER_SESSION", 4),
+                Math.min(8, maxLimit),
+                maxLimit,
+                Environment.intValue("LLM_LATENCY_TARGET_MS", 15_000));
+    }
+
+    // Queues the call and starts it as soon as the limit allows. The call returns the HTTP status of
+    // the exchange (or fails). Returns false, without queuing, when the queue or the session's share
+    // of it is full.
+    public boolean submit(String sessionId, Supplier<CompletableFuture<Integer>> call) {
+        synchronized (this) {
+            ArrayDeque<Supplier<CompletableFuture<Integer>>> queue = queues.get(sessionId);
+            if (queued >= maxQueued || (queue != null && queue.size() >= maxQueuedPerSession)) {
+                rejected++;
+                return false;
+            }
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                queues.put(sessionId, queue);
+                ready.addLast(sessionId);
+            }
+            queue.addLast(call);
+            queued++;
+        }
+        dispatch();
+        return true;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(queued, inFlight, (int) limit, started, completed, overloaded, rejected);
+    }
+
+    public record Stats(
+            int queueDepth,
+            int inFlight,
+            int limit,
+            long started,
+            long completed,
+            long overloaded,
+            long rejected
+    ) {}
+
+    // Starts queued calls outside the lock, taking one per session in turn
+    private void dispatch() {
+        List<Supplier<CompletableFuture<Integer>>> toStart = null;
+        synchronized (this) {
+            while (inFlight < (int) limit && !ready.isEmpty()) {
+                String sessionId = ready.pollFirst();
+                ArrayDeque<Supplier<CompletableFuture<Integer>>> queue = queues.get(sessionId);
+                Supplier<CompletableFuture<Integer>> call = queue.pollFirst();
+                if (queue.isEmpty()) {
+                    queues.remove(sessionId);
+                } else {
+                    ready.addLast(sessionId);
+                }
+                queued--;
+                inFlight++;
+                started++;
+                if (toStart == null) {
+                    toStart = new ArrayList<>();
+                }
+                toStart.add(call);
+            }
+        }
+        if (toStart != null) {
+            toStart.forEach(this::start);
+        }
+    }
+
+    private void start(Supplier<CompletableFuture<Integer>> call) {
+        long startNanos = System.nanoTime();
+        long backoffsAtStart;
+        synchronized (this) {
+            backoffsAtStart = backoffs;
+        }
+        CompletableFuture<Integer> exchange;
+        try {
+            exchange = call.get();
+        } catch (RuntimeException e) {
+            exchange = CompletableFuture.failedFuture(e);
+        }
+        exchange.whenComplete((status, ex) -> {
+            boolean healthy = ex == null
+                    && status != null && status != 429 && status < 500
+                    && System.nanoTime() - startNanos <= latencyTargetNanos;
+            onComplete(healthy, backoffsAtStart);
+            dispatch();
+        });
+    }
+
+    private synchronized void onComplete(boolean healthy, long backoffsAtStart) {
+        // Whether the limit was actually the constraint while this call ran
+        boolean saturated = inFlight >= (int) limit;
+        inFlight--;
+        completed++;
+        if (!healthy) {
+            overloaded++;
+            if (backoffsAtStart == backoffs) {
+                limit = Math.max(minLimit, limit * BACKOFF);
+                backoffs++;
+            }
+        } else if (saturated) {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+}
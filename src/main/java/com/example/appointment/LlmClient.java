@@ -0,0 +1,139 @@
+package com.example.appointment;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Process-wide HTTP client for completion calls, so sessions share one connection pool instead of each
+// actor building its own client (with its own selector thread and connections). HTTP/2 carries
+// concurrent calls to the same endpoint as streams on one connection; at most maxStreams exchanges are
+// in flight at once, hedged duplicates included, and further ones wait their turn in order, so the
+// connection never opens more streams than a server typically allows. The client's executor is a
+// virtual thread per task: responses are read, and the completion callbacks that parse replies and tell
+// actors run, on virtual threads rather than a shared platform pool.
+public final class LlmClient {
+    private final HttpClient http;
+    private final ExecutorService executor;
+    private final int maxStreams;
+
+    // Guarded by this
+    private final ArrayDeque<Pending<?>> waiting = new ArrayDeque<>();
+    private int inFlight;
+
+    private final AtomicLong exchanges = new AtomicLong();
+    private final AtomicLong queued = new AtomicLong();
+
+    private static final class Shared {
+        static final LlmClient INSTANCE = fromEnvironment();
+    }
+
+    public LlmClient(int maxStreams, Duration connectTimeout) {
+        this.maxStreams = maxStreams;
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("llm-client-", 0).factory());
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .executor(executor)
+                .build();
+    }
+
+    public static LlmClient fromEnvironment() {
+        return new LlmClient(
+                Environment.intValue("LLM_MAX_STREAMS", 100),
+                Duration.ofMillis(Environment.intValue("LLM_CONNECT_TIMEOUT_MS", 10_000)));
+    }
+
+    // Built from the environment on first use
+    public static LlmClient shared() {
+        return Shared.INSTANCE;
+    }
+
+    // Like HttpClient.sendAsync, but waits for a free stream first. Cancelling the returned future aborts
+    // the exchange, or drops it from the queue if it has not started.
+    <T> CompletableFuture<HttpResponse<T>> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        Pending<T> pending = new Pending<>(request, bodyHandler);
+        synchronized (this) {
+            if (inFlight >= maxStreams) {
+                waiting.add(pending);
+                queued.incrementAndGet();
+                return pending.result;
+            }
+            inFlight++;
+        }
+        pending.start();
+        return pending.result;
+    }
+
+    // Hands the stream to the next waiting exchange that has not been cancelled meanwhile
+    private void release() {
+        while (true) {
+            Pending<?> next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    inFlight--;
+                    return;
+                }
+            }
+            if (next.start()) {
+                return;
+            }
+        }
+    }
+
+    public Stats stats() {
+        synchronized (this) {
+            return new Stats(exchanges.get(), queued.get(), inFlight, waiting.size(), maxStreams);
+        }
+    }
+
+    public record Stats(long exchanges, long queued, int inFlight, int waiting, int maxStreams) {}
+
+    private final class Pending<T> {
+        private final HttpRequest request;
+        private final HttpResponse.BodyHandler<T> bodyHandler;
+        final CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+
+        Pending(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+            this.request = request;
+            this.bodyHandler = bodyHandler;
+        }
+
+        // Returns false, without taking the stream, if the caller has already given up on it
+        boolean start() {
+            if (result.isDone()) {
+                return false;
+            }
+            exchanges.incrementAndGet();
+            CompletableFuture<HttpResponse<T>> exchange;
+            try {
+                exchange = http.sendAsync(request, bodyHandler);
+            } catch (RuntimeException e) {
+                // Rejected before it started (a shut-down client, say): the stream goes straight back
+                release();
+                result.completeExceptionally(e);
+                return true;
+            }
+            result.whenComplete((response, failure) -> {
+                if (result.isCancelled()) {
+                    exchange.cancel(true);
+                }
+            });
+            exchange.whenComplete((response, failure) -> {
+                release();
+                if (failure != null) {
+                    result.completeExceptionally(failure);
+                } else {
+                    result.complete(response);
+                }
+            });
+            return true;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.example.appointment;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Deadlines, retries and hedging for completion calls, shared by all sessions. One logical call may
+// become several HTTP attempts:
+//  - each attempt must get its response headers within the attempt timeout, and the whole call,
+//    retries and streaming included, must finish within the deadline;
+//  - an attempt that fails before it answers (connection error, timeout, 408/429/5xx) is retried after
+//    a jittered exponential backoff, up to maxAttempts and only while the retry budget has tokens.
+//    Every call adds budgetPercent/100 of a token and every retry or hedge takes one, so a struggling
+//    provider sees at most that share of extra traffic once the initial burst is spent;
+//  - with hedging on, a second attempt is sent once the first has waited longer than the p95 time to
+//    headers seen so far, and whichever answers first is used.
+// Exactly one attempt per call is ever read: the first whose headers arrive with a non-retryable status
+// claims the call, gets the real body handler and cancels the rest; every other attempt's body is
+// discarded unread, and a call whose attempts all failed fails with the last error or status. The
+// reply is therefore interpreted once, so a hedged or retried duplicate can never dispatch a second
+// BookAppointment. An attempt that has started streaming is never retried for the same reason.
+public class LlmRetryPolicy {
+    // Tokens the budget starts with and can hold, so a quiet process can still retry a short burst
+    private static final long BUDGET_CAPACITY = 10_000;
+    // Time-to-headers samples needed before the p95 is trusted for hedging
+    private static final long HEDGE_MIN_SAMPLES = 20;
+    private static final double HEDGE_QUANTILE = 0.95;
+    // Deadlines, backoffs and hedge delays; timers are removed as soon as their call no longer needs them
+    private static final ScheduledThreadPoolExecutor TIMERS = timers();
+
+    private final Duration attemptTimeout;
+    private final long deadlineNanos;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+    private final long budgetPerCall;
+    private final boolean hedging;
+
+    // Retry tokens in thousandths
+    private final AtomicLong budget = new AtomicLong(BUDGET_CAPACITY);
+    // Time to response headers of attempts that answered, the basis for the hedge delay
+    private final LatencyHistogram headerLatency = new LatencyHistogram();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong budgetExhausted = new AtomicLong();
+    private final AtomicLong deadlinesExceeded = new AtomicLong();
+
+    public LlmRetryPolicy(long attemptTimeoutMillis, long deadlineMillis, int maxAttempts, long backoffMillis,
+                          int budgetPercent, boolean hedging) {
+        this.attemptTimeout = Duration.ofMillis(Math.max(1, attemptTimeoutMillis));
+        this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, deadlineMillis));
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = Math.max(1, backoffMillis);
+        this.maxBackoffMillis = this.backoffMillis * 16;
+        this.budgetPerCall = Math.max(0, budgetPercent) * 10L;
+        this.hedging = hedging;
+    }
+
+    public static LlmRetryPolicy fromEnvironment() {
+        return new LlmRetryPolicy(
+                Environment.intValue("LLM_ATTEMPT_TIMEOUT_MS", 30_000),
+                Environment.intValue("LLM_DEADLINE_MS", 60_000),
+                Environment.intValue("LLM_MAX_ATTEMPTS", 3),
+                Environment.intValue("LLM_RETRY_BACKOFF_MS", 250),
+                Environment.intValue("LLM_RETRY_BUDGET_PERCENT", 20),
+                Boolean.parseBoolean(System.getenv("LLM_HEDGE")));
+    }
+
+    // Sends the request as one logical call. The future completes with the response of the attempt that
+    // claimed the call, read with bodyHandler, or fails once no attempt can answer in time.
+    public <T> CompletableFuture<HttpResponse<T>> send(LlmClient client, HttpRequest request,
+                                                       HttpResponse.BodyHandler<T> bodyHandler) {
+        calls.incrementAndGet();
+        deposit();
+        Call<T> call = new Call<>(client, request, bodyHandler);
+        ScheduledFuture<?> deadline = TIMERS.schedule(call::expire, deadlineNanos, TimeUnit.NANOSECONDS);
+        call.result.whenComplete((response, failure) -> deadline.cancel(false));
+        call.launch(false);
+        return call.result;
+    }
+
+    public Stats stats() {
+        return new Stats(calls.get(), retries.get(), hedges.get(), hedgeWins.get(), budgetExhausted.get(),
+                deadlinesExceeded.get(), TimeUnit.NANOSECONDS.toMillis(hedgeDelayNanos()));
+    }
+
+    public record Stats(
+            long calls,
+            long retries,
+            long hedges,
+            long hedgeWins,
+            long budgetExhausted,
+            long deadlinesExceeded,
+            // Current hedge delay, 0 until enough latency has been seen (or with hedging off)
+            long hedgeDelayMillis
+    ) {}
+
+    private long hedgeDelayNanos() {
+        return hedging && headerLatency.count() >= HEDGE_MIN_SAMPLES ? headerLatency.valueAt(HEDGE_QUANTILE) : 0;
+    }
+
+    private static ScheduledThreadPoolExecutor timers() {
+        ScheduledThreadPoolExecutor timers = new ScheduledThreadPoolExecutor(1,
+                Thread.ofPlatform().daemon().name("llm-retry-timer").factory());
+        timers.setRemoveOnCancelPolicy(true);
+        return timers;
+    }
+
+    private void deposit() {
+        long current = budget.get();
+        while (current < BUDGET_CAPACITY
+                && !budget.compareAndSet(current, Math.min(BUDGET_CAPACITY, current + budgetPerCall))) {
+            current = budget.get();
+        }
+    }
+
+    private boolean withdraw() {
+        long current = budget.get();
+        while (current >= 1000) {
+            if (budget.compareAndSet(current, current - 1000)) {
+                return true;
+            }
+            current = budget.get();
+        }
+        budgetExhausted.incrementAndGet();
+        return false;
+    }
+
+    private static boolean retryable(int status) {
+        return status == 408 || status == 429 || status == 500 || status == 502 || status == 503 || status == 504;
+    }
+
+    private static boolean retryable(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause()
+                : failure;
+        return cause instanceof IOException;
+    }
+
+    // One logical call and its attempts
+    private final class Call<T> {
+        private final LlmClient client;
+        private final HttpRequest request;
+        private final HttpResponse.BodyHandler<T> bodyHandler;
+        private final long deadline = System.nanoTime() + deadlineNanos;
+        final CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+
+        // Guarded by this
+        private final List<Attempt> running = new ArrayList<>(2);
+        private int attempts;
+        private boolean claimed;
+
+        Call(LlmClient client, HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+            this.client = client;
+            this.request = request;
+            this.bodyHandler = bodyHandler;
+        }
+
+        void launch(boolean hedge) {
+            long remaining = deadline - System.nanoTime();
+            Attempt attempt = new Attempt(hedge);
+            synchronized (this) {
+                if (result.isDone() || claimed || remaining <= 0) {
+                    return;
+                }
+                attempts++;
+                running.add(attempt);
+            }
+            Duration timeout = attemptTimeout.compareTo(Duration.ofNanos(remaining)) < 0
+                    ? attemptTimeout
+                    : Duration.ofNanos(remaining);
+            HttpRequest timed = HttpRequest.newBuilder(request, (name, value) -> true).timeout(timeout).build();
+            attempt.exchange = client.send(timed, attempt::onHeaders);
+            attempt.exchange.whenComplete(attempt::onDone);
+            boolean lost;
+            synchronized (this) {
+                // Another attempt may have claimed the call before this one's future was assigned
+                lost = (claimed && !attempt.winner) || result.isDone();
+            }
+            if (lost) {
+                attempt.cancel();
+            }
+
+            long hedgeDelay = hedgeDelayNanos();
+            if (!hedge && attempts == 1 && hedgeDelay > 0 && hedgeDelay < remaining) {
+                ScheduledFuture<?> timer = TIMERS.schedule(this::hedge, hedgeDelay, TimeUnit.NANOSECONDS);
+                result.whenComplete((response, failure) -> timer.cancel(false));
+            }
+        }
+
+        private void hedge() {
+            synchronized (this) {
+                // Only while the first attempt is still the only one and has not answered, not even with a
+                // retryable status: that one is retried after a backoff instead
+                if (result.isDone() || claimed || running.size() != 1 || attempts != 1 || running.get(0).answered
+                        || !withdraw()) {
+                    return;
+                }
+            }
+            hedges.incrementAndGet();
+            launch(true);
+        }
+
+        // Whether another attempt may follow: attempts and deadline left, and a budget token taken. Only
+        // asked once a retry would really be scheduled, so no token is taken for one that never happens.
+        private boolean mayRetry() {
+            return attempts < maxAttempts && deadline - System.nanoTime() > 0 && withdraw();
+        }
+
+        private void retryLater() {
+            retries.incrementAndGet();
+            long ceiling = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempts - 1, 16));
+            long delay = ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+            TIMERS.schedule(() -> launch(false), delay, TimeUnit.MILLISECONDS);
+        }
+
+        void expire() {
+            List<Attempt> toCancel;
+            synchronized (this) {
+                if (result.isDone()) {
+                    return;
+                }
+                toCancel = new ArrayList<>(running);
+            }
+            if (result.completeExceptionally(new HttpTimeoutException(
+                    "no reply within " + TimeUnit.NANOSECONDS.toMillis(deadlineNanos) + " ms"))) {
+                deadlinesExceeded.incrementAndGet();
+            }
+            toCancel.forEach(Attempt::cancel);
+        }
+
+        private final class Attempt {
+            private final boolean hedge;
+            private final long startNanos = System.nanoTime();
+            volatile CompletableFuture<HttpResponse<T>> exchange;
+            // Guarded by Call.this
+            private boolean winner;
+            // Answered with a retryable status; its dropped body may still be draining
+            private boolean answered;
+
+            Attempt(boolean hedge) {
+                this.hedge = hedge;
+            }
+
+            // Aborts the exchange; a no-op once it has completed or before it has been started
+            void cancel() {
+                CompletableFuture<HttpResponse<T>> started = exchange;
+                if (started != null) {
+                    started.cancel(true);
+                }
+            }
+
+            HttpResponse.BodySubscriber<T> onHeaders(HttpResponse.ResponseInfo info) {
+                List<Attempt> losers = null;
+                synchronized (Call.this) {
+                    if (claimed || result.isDone()) {
+                        return HttpResponse.BodySubscribers.replacing(null);
+                    }
+                    if (retryable(info.statusCode())) {
+                        // Never read: either another attempt is still racing, this one is retried, or
+                        // the call fails with the status once nothing is left to try. Stays in running
+                        // until onDone, which is where that is decided.
+                        answered = true;
+                        return HttpResponse.BodySubscribers.replacing(null);
+                    }
+                    claimed = true;
+                    winner = true;
+                    if (running.size() > 1) {
+                        losers = new ArrayList<>(running);
+                        losers.remove(this);
+                    }
+                }
+                headerLatency.record(System.nanoTime() - startNanos);
+                if (hedge) {
+                    hedgeWins.incrementAndGet();
+                }
+                if (losers != null) {
+                    losers.forEach(Attempt::cancel);
+                }
+                return bodyHandler.apply(info);
+            }
+
+            void onDone(HttpResponse<T> response, Throwable failure) {
+                Throwable gaveUp = null;
+                synchronized (Call.this) {
+                    running.remove(this);
+                    if (!winner && !claimed && !result.isDone() && running.isEmpty()) {
+                        // The last attempt still racing has failed. No failure means it answered with a
+                        // retryable status and its body was dropped.
+                        if ((failure == null || retryable(failure)) && mayRetry()) {
+                            retryLater();
+                        } else {
+                            gaveUp = failure != null ? failure
+                                    : new IOException("completion endpoint answered " + response.statusCode());
+                        }
+                    }
+                }
+                // Completed outside the lock: the caller's continuations deliver the reply
+                if (winner) {
+                    if (failure == null) {
+                        result.complete(response);
+                    } else {
+                        result.completeExceptionally(failure);
+                    }
+                } else if (gaveUp != null) {
+                    result.completeExceptionally(gaveUp);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.appointment;
+
+import java.net.URI;
+
+// Where and how conversation actors call the completion endpoint. OPENAI_BASE_URL lets the agent
+// talk to any chat-completions compatible server, e.g. a local stub for benchmarks and load tests.
+// With fastPath on, explicit requests IntentRouter can resolve on its own never reach the endpoint.
+public record LlmSettings(URI completionsUri, String apiKey, String model, boolean streaming, boolean fastPath) {
+    private static final String DEFAULT_BASE_URL = "https://api.openai.com/v1";
+
+    public static LlmSettings fromEnvironment() {
+        String baseUrl = System.getenv("OPENAI_BASE_URL");
+        if (baseUrl == null || baseUrl.isBlank()) {
+            baseUrl = DEFAULT_BASE_URL;
+        }
+        String model = System.getenv("OPENAI_MODEL");
+        return new LlmSettings(
+                completionsUri(baseUrl),
+                System.getenv("OPENAI_API_KEY"),
+                model == null || model.isBlank() ? "gpt-4" : model,
+                Boolean.parseBoolean(System.getenv("OPENAI_STREAM")),
+                !"false".equalsIgnoreCase(System.getenv("FAST_PATH")));
+    }
+
+    public static URI completionsUri(String baseUrl) {
+        return URI.create(baseUrl.replaceAll("/+$", "") + "/chat/completions");
+    }
+
+    public LlmSettings withBaseUrl(String baseUrl) {
+        return new LlmSettings(completionsUri(baseUrl), apiKey, model, streaming, fastPath);
+    }
+
+    public LlmSettings withStreaming(boolean streaming) {
+        return new LlmSettings(completionsUri, apiKey, model, streaming, fastPath);
+    }
+
+    public LlmSettings withFastPath(boolean fastPath) {
+        return new LlmSettings(completionsUri, apiKey, model, streaming, fastPath);
+    }
+}
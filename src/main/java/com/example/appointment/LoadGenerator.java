@@ -0,0 +1,475 @@
+package com.example.appointment;
+
+import com.cajunsystems.ActorContext;
+import com.cajunsystems.ActorSystem;
+import com.cajunsystems.Pid;
+import com.cajunsystems.handler.Handler;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Headless load test: thousands of scripted sessions talk to the agent at once, against a local
+// MockCompletionServer that plays the model, so capacity can be measured with no network or API key.
+// Each session loops browse -> book one of the offered slots -> thank -> cancel, waiting for each
+// reply before the next turn. The mock offers slots that are free when it answers, so a booking only
+// fails when another session took the slot in the meantime (a conflict). At the end it reports
+// throughput, per-turn latency percentiles, conflicts, load shedding, and the agent's own metrics,
+// and checks that the calendar holds exactly the bookings the sessions believe they still have.
+//
+// A session whose turn is shed ("too many requests") waits about LOAD_RETRY_MS before starting over,
+// like a user trying again, rather than hammering the agent.
+//
+// Configured through the environment: LOAD_SESSIONS, LOAD_DURATION_SECONDS, LOAD_LLM_LATENCY_MS,
+// LOAD_LLM_JITTER_MS, LOAD_LLM_FAILURE_PERCENT, LOAD_THINK_MS, LOAD_RETRY_MS, LOAD_DAYS,
+// LOAD_CANCEL_PERCENT, plus the agent's usual settings (OPENAI_STREAM, FAST_PATH, LLM_*, CONTEXT_*,
+// SLOT_HOLD_*). With holds on, the slots a browse turn is offered are held for that session, so
+// SLOT_HOLD_SECONDS=0 against the default shows how many conflicts they prevent.
+// LOAD_PARTITIONS > 0 splits the inventory across that many ActorSystems in an InventoryCluster
+// (PARTITION_*), and LOAD_REBALANCE_SECONDS > 0 then adds a node and retires the oldest one that often,
+// so bookings keep landing while ranges move; the check at the end also counts the partitions' bookings.
+// With the fast path on, the book and cancel turns name an exact slot and are answered without the
+// mock; browsing and thanks still go to it.
+public class LoadGenerator {
+    private static final Pattern OFFERED_SLOT = Pattern.compile("(\\d{4}-\\d{2}-\\d{2}) at (\\d{2}:\\d{2})");
+    private static final LocalDate FIRST_DAY = LocalDate.of(2025, 11, 5);
+    private static final long TURN_TIMEOUT_SECONDS = 60;
+
+    enum Turn { BROWSE, BOOK, CONFIRM, CANCEL }
+
+    private final AgentSessions agents;
+    private final ActorSystem system;
+    private final long thinkMillis;
+    private final long retryMillis;
+    private final int cancelPercent;
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Turn.values().length];
+    private final AtomicLong turns = new AtomicLong();
+    private final AtomicLong cycles = new AtomicLong();
+    private final AtomicLong booked = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong fullyBooked = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong overloaded = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    // Bookings sessions still hold when they stop
+    private final AtomicLong held = new AtomicLong();
+
+    LoadGenerator(AgentSessions agents, ActorSystem system, long thinkMillis, long retryMillis, int cancelPercent) {
+        this.agents = agents;
+        this.system = system;
+        this.thinkMillis = thinkMillis;
+        this.retryMillis = retryMillis;
+        this.cancelPercent = cancelPercent;
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int sessionCount = Environment.intValue("LOAD_SESSIONS", 2000);
+        int durationSeconds = Environment.intValue("LOAD_DURATION_SECONDS", 60);
+        int latencyMillis = Environment.intValue("LOAD_LLM_LATENCY_MS", 300);
+        int jitterMillis = Environment.intValue("LOAD_LLM_JITTER_MS", 200);
+        int thinkMillis = Environment.intValue("LOAD_THINK_MS", 0);
+        int retryMillis = Environment.intValue("LOAD_RETRY_MS", 1000);
+        int days = Environment.intValue("LOAD_DAYS", 30);
+        int cancelPercent = Environment.intValue("LOAD_CANCEL_PERCENT", 100);
+        int failurePercent = Environment.intValue("LOAD_LLM_FAILURE_PERCENT", 0);
+        int partitions = Environment.intValue("LOAD_PARTITIONS", 0);
+        int rebalanceSeconds = Environment.intValue("LOAD_REBALANCE_SECONDS", 0);
+
+        SlotInventory calendar = SlotInventory.empty();
+        for (int d = 0; d < days; d++) {
+            for (int hour = 9; hour < 17; hour++) {
+                calendar = calendar.withSlots(FIRST_DAY.plusDays(d), LocalTime.of(hour, 0), LocalTime.of(hour, 30));
+            }
+        }
+        InventoryCluster cluster = partitions > 0 ? InventoryCluster.fromEnvironment(calendar) : null;
+        SlotInventoryService inventory = cluster != null ? cluster.view() : new SlotInventoryService(calendar);
+        SlotHolds holds = cluster != null ? null : SlotHolds.fromEnvironment(inventory);
+        LlmSettings settings = LlmSettings.fromEnvironment();
+
+        try (MockCompletionServer llm = new MockCompletionServer(
+                body -> reply(body, inventory, days), latencyMillis, jitterMillis, failurePercent)) {
+            ActorSystem system = new ActorSystem();
+            AgentMetrics metrics = new AgentMetrics();
+            LlmCallScheduler scheduler = LlmCallScheduler.fromEnvironment();
+            LlmRetryPolicy retryPolicy = LlmRetryPolicy.fromEnvironment();
+            ResponseCache cache = ResponseCache.fromEnvironment();
+            AgentSessions agents;
+            List<ActorSystem> nodeSystems = new ArrayList<>();
+            Thread rebalancer = null;
+            if (cluster != null) {
+                Deque<String> nodes = new ArrayDeque<>();
+                for (int i = 0; i < partitions; i++) {
+                    nodeSystems.add(new ActorSystem());
+                    nodes.add("node-" + i);
+                    cluster.join("node-" + i, nodeSystems.get(i)).join();
+                }
+                agents = new AgentSessions(system, cluster, ContextWindow.fromEnvironment(),
+                        settings.withBaseUrl(llm.baseUrl()), scheduler, retryPolicy, cache,
+                        AppointmentJournal.NONE, metrics);
+                if (rebalanceSeconds > 0) {
+                    rebalancer = Thread.ofVirtual().name("rebalancer")
+                            .start(() -> rebalance(cluster, nodes, nodeSystems, rebalanceSeconds));
+                }
+            } else {
+                agents = new AgentSessions(system, inventory, holds, ContextWindow.fromEnvironment(),
+                        settings.withBaseUrl(llm.baseUrl()), scheduler, retryPolicy, cache,
+                        AppointmentJournal.NONE, metrics);
+            }
+
+            System.out.printf("Load test: %d sessions for %ds, LLM latency %d+%dms, %s, %d slots%n",
+                    sessionCount, durationSeconds, latencyMillis, jitterMillis,
+                    settings.streaming() ? "streaming" : "not streaming", days * 16);
+            LoadGenerator load = new LoadGenerator(agents, system, thinkMillis, retryMillis, cancelPercent);
+            long elapsedNanos = load.run(sessionCount, durationSeconds);
+            if (rebalancer != null) {
+                rebalancer.interrupt();
+                rebalancer.join();
+            }
+
+            System.out.println();
+            System.out.print(load.report(elapsedNanos));
+            System.out.printf("LLM requests: %d%n", llm.requestCount());
+            System.out.printf("scheduler: %s%n", scheduler.stats());
+            System.out.printf("retries: %s, mock LLM failed %d requests%n", retryPolicy.stats(), llm.failureCount());
+            System.out.printf("http client: %s%n", LlmClient.shared().stats());
+            System.out.printf("cache: %s (hit ratio %.1f%%)%n", cache.stats(), cache.stats().hitRatio() * 100);
+            if (holds != null && holds.enabled()) {
+                SlotHolds.Stats stats = holds.stats();
+                System.out.printf("holds: %s (%.1f%% converted)%n", stats, stats.conversionRate() * 100);
+            }
+            System.out.printf("calendar: %d booked, sessions hold %d%s%n", inventory.bookedCount(), load.held.get(),
+                    inventory.bookedCount() == load.held.get() ? "" : "  <-- MISMATCH");
+            if (cluster != null) {
+                Map<String, Integer> byNode = cluster.bookedByNode();
+                int total = byNode.values().stream().mapToInt(Integer::intValue).sum();
+                System.out.printf("partitions: %s, %d booked in all%s%n", byNode, total,
+                        total == load.held.get() ? "" : "  <-- MISMATCH");
+            }
+            System.out.println();
+            System.out.print(metrics.toText());
+            if (settings.fastPath()) {
+                System.out.println(fastPathComparison(metrics));
+            }
+            system.shutdown();
+            nodeSystems.forEach(ActorSystem::shutdown);
+        }
+    }
+
+    // Every few seconds adds a node and then retires the oldest, until interrupted
+    private static void rebalance(InventoryCluster cluster, Deque<String> nodes, List<ActorSystem> nodeSystems,
+            int everySeconds) {
+        try {
+            for (int next = nodes.size(); ; next++) {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(everySeconds));
+                ActorSystem system = new ActorSystem();
+                nodeSystems.add(system);
+                long start = System.nanoTime();
+                cluster.join("node-" + next, system).join();
+                nodes.add("node-" + next);
+                String retired = nodes.poll();
+                cluster.leave(retired).join();
+                System.out.printf("rebalanced: node-%d joined, %s left, in %s%n", next, retired,
+                        millis(System.nanoTime() - start));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // How much sooner a fast-path reply arrives than one that went through the (mock) LLM
+    private static String fastPathComparison(AgentMetrics metrics) {
+        AgentMetrics.Snapshot snapshot = metrics.snapshot();
+        LatencyHistogram.Snapshot local = metrics.histogram(AgentMetrics.Timer.FAST_PATH_REPLY).snapshot();
+        LatencyHistogram.Snapshot llm = metrics.histogram(AgentMetrics.Timer.LLM_REPLY).snapshot();
+        return String.format("fast path: %.1f%% of user messages answered locally; reply p50 %s vs %s via the LLM, p99 %s vs %s",
+                snapshot.fastPathHitRate() * 100, millis(local.p50Nanos()), millis(llm.p50Nanos()),
+                millis(local.p99Nanos()), millis(llm.p99Nanos()));
+    }
+
+    // Runs every session until the deadline, printing progress every few seconds; returns the elapsed time
+    long run(int sessionCount, int durationSeconds) throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        List<Thread> clients = new ArrayList<>(sessionCount);
+        for (int i = 0; i < sessionCount; i++) {
+            String sessionId = "load-" + i;
+            clients.add(Thread.ofVirtual().name(sessionId).start(() -> session(sessionId, deadline)));
+        }
+        while (System.nanoTime() < deadline) {
+            Thread.sleep(Math.min(5_000, Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()))));
+            long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+            System.out.printf("%4ds  %,d turns (%,d/s), %,d booked, %,d conflicts, %,d overloaded%n",
+                    seconds, turns.get(), turns.get() / seconds, booked.get(), conflicts.get(), overloaded.get());
+        }
+        // Sessions finish the cycle they are in
+        for (Thread client : clients) {
+            client.join();
+        }
+        return System.nanoTime() - start;
+    }
+
+    String report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%,d turns in %.1fs: %,.0f turns/s, %,d cycles (%,.0f/s)%n",
+                turns.get(), seconds, turns.get() / seconds, cycles.get(), cycles.get() / seconds));
+        text.append(String.format("%-10s %9s %9s %9s %9s %9s %9s%n", "turn", "count", "p50", "p90", "p99", "p99.9", "max"));
+        for (Turn turn : Turn.values()) {
+            LatencyHistogram.Snapshot latency = latencies[turn.ordinal()].snapshot();
+            text.append(String.format("%-10s %9d %9s %9s %9s %9s %9s%n", turn.name().toLowerCase(), latency.count(),
+                    millis(latency.p50Nanos()), millis(latency.p90Nanos()), millis(latency.p99Nanos()),
+                    millis(latency.p999Nanos()), millis(latency.maxNanos())));
+        }
+        long attempts = booked.get() + conflicts.get();
+        text.append(String.format("bookings: %,d confirmed, %,d conflicts (%.2f%% of attempts), %,d fully booked%n",
+                booked.get(), conflicts.get(), attempts == 0 ? 0 : 100.0 * conflicts.get() / attempts, fullyBooked.get()));
+        text.append(String.format("cancellations: %,d%n", cancelled.get()));
+        text.append(String.format("shed (overloaded): %,d, errors: %,d, timeouts: %,d%n",
+                overloaded.get(), errors.get(), timeouts.get()));
+        return text.toString();
+    }
+
+    private void session(String sessionId, long deadline) {
+        BlockingQueue<AgentResponse> inbox = new LinkedBlockingQueue<>();
+        Pid replyTo = system.actorOf(new Inbox(inbox)).withId(sessionId + "-client").spawn();
+        Session session = new Session(sessionId, replyTo, inbox);
+        try {
+            while (System.nanoTime() < deadline) {
+                if (session.cycle()) {
+                    cycles.incrementAndGet();
+                }
+            }
+            session.settle();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            held.addAndGet(session.holdings.size());
+            system.stopActor(replyTo);
+        }
+    }
+
+    // One scripted conversation; turns wait for the agent's reply (the complete one when streaming)
+    private final class Session {
+        private final String id;
+        private final Pid replyTo;
+        private final BlockingQueue<AgentResponse> inbox;
+        // Slots this session believes it has booked and not cancelled
+        private final List<String[]> holdings = new ArrayList<>();
+        // Set when the agent reported a failed booking since the last BOOK turn
+        private boolean conflict;
+        private boolean lastTurnShed;
+
+        Session(String id, Pid replyTo, BlockingQueue<AgentResponse> inbox) {
+            this.id = id;
+            this.replyTo = replyTo;
+            this.inbox = inbox;
+        }
+
+        // Returns whether the script ran to the end (with or without getting the booking)
+        boolean cycle() throws InterruptedException {
+            String offer = turn(Turn.BROWSE, "What times do you have available?");
+            List<String[]> offered = new ArrayList<>();
+            for (Matcher slot = OFFERED_SLOT.matcher(offer == null ? "" : offer); slot.find(); ) {
+                offered.add(new String[] { slot.group(1), slot.group(2) });
+            }
+            if (offered.isEmpty()) {
+                if (offer != null) {
+                    fullyBooked.incrementAndGet();
+                }
+                return false;
+            }
+            String[] slot = offered.get(ThreadLocalRandom.current().nextInt(offered.size()));
+
+            conflict = false;
+            String bookReply = turn(Turn.BOOK, "Please book " + slot[0] + " at " + slot[1] + ".");
+            if (bookReply == null) {
+                return false;
+            }
+            // A fast-path booking that lost the race says so in the reply itself
+            if (bookReply.startsWith(AppointmentAgentHandler.SLOT_UNAVAILABLE)) {
+                conflicts.incrementAndGet();
+                conflict = true;
+            }
+            // The booking is settled before the agent takes the next message, so once the reply to the
+            // next one is in, any conflict for it has been reported. A shed reply counts too (it is sent
+            // in order), but errors and timeouts are not, so then wait for the agent explicitly.
+            boolean confirmed = turn(Turn.CONFIRM, "Thanks!") != null;
+            if (!confirmed && !lastTurnShed) {
+                settle();
+            }
+            if (!conflict) {
+                booked.incrementAndGet();
+                holdings.add(slot);
+            }
+            if (!confirmed || conflict) {
+                return confirmed;
+            }
+
+            if (ThreadLocalRandom.current().nextInt(100) < cancelPercent) {
+                String cancelReply = turn(Turn.CANCEL, "Please cancel my appointment on " + slot[0] + " at " + slot[1] + ".");
+                if (cancelReply != null) {
+                    if (cancelReply.startsWith(AppointmentAgentHandler.CANCELLED_PREFIX)) {
+                        cancelled.incrementAndGet();
+                    }
+                    holdings.remove(slot);
+                }
+            }
+            return true;
+        }
+
+        // Sends one user message and returns the agent's reply, or null if it was shed, failed or timed out
+        private String turn(Turn turn, String text) throws InterruptedException {
+            if (thinkMillis > 0) {
+                Thread.sleep(thinkMillis);
+            }
+            long start = System.nanoTime();
+            lastTurnShed = false;
+            agents.tell(id, new UserMessage(text, replyTo));
+            turns.incrementAndGet();
+            while (true) {
+                AgentResponse response = inbox.poll(TURN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                if (response == null) {
+                    timeouts.incrementAndGet();
+                    return null;
+                }
+                if (response.part() == AgentResponse.Part.FRAGMENT) {
+                    continue;
+                }
+                String message = response.message();
+                if (commandOutcome(message)) {
+                    continue;
+                }
+                latencies[turn.ordinal()].record(System.nanoTime() - start);
+                if (message.equals(AppointmentAgentHandler.OVERLOADED)) {
+                    overloaded.incrementAndGet();
+                    lastTurnShed = true;
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(retryMillis / 2, retryMillis * 3 / 2 + 1));
+                    return null;
+                }
+                if (message.startsWith(AppointmentAgentHandler.ERROR_PREFIX)) {
+                    errors.incrementAndGet();
+                    return null;
+                }
+                return message;
+            }
+        }
+
+        // Waits until the agent has worked through everything this session sent, so that the last
+        // cancellation has been applied before the calendar is checked
+        void settle() throws InterruptedException {
+            agents.tell(id, new GetAvailableSlots(replyTo));
+            while (true) {
+                AgentResponse response = inbox.poll(TURN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                if (response == null) {
+                    timeouts.incrementAndGet();
+                    return;
+                }
+                if (!commandOutcome(response.message())) {
+                    return;
+                }
+            }
+        }
+
+        // Outcomes of BOOK/CANCEL commands arrive between replies; counts them and returns true for them
+        private boolean commandOutcome(String message) {
+            if (message.equals(AppointmentAgentHandler.SLOT_UNAVAILABLE)) {
+                conflicts.incrementAndGet();
+                conflict = true;
+                return true;
+            }
+            if (message.startsWith("Your appointment on")) {
+                cancelled.incrementAndGet();
+                return true;
+            }
+            return message.equals(AppointmentAgentHandler.NO_SUCH_APPOINTMENT);
+        }
+    }
+
+    // The mock model: answers each scripted turn the way the real prompt asks the model to, offering
+    // slots that are free right now
+    static String reply(String requestBody, SlotInventoryService inventory, int days) {
+        String lastUserMessage = lastUserMessage(requestBody);
+        Matcher slot = OFFERED_SLOT.matcher(lastUserMessage);
+        if (lastUserMessage.startsWith("Please book") && slot.find()) {
+            return "BOOK:" + slot.group(1) + ":" + slot.group(2) + "\nGreat, you're all set for "
+                    + slot.group(1) + " at " + slot.group(2) + ".";
+        }
+        if (lastUserMessage.startsWith("Please cancel") && slot.find()) {
+            return "CANCEL:" + slot.group(1) + ":" + slot.group(2) + "\nDone, that appointment is cancelled.";
+        }
+        if (lastUserMessage.startsWith("Thanks")) {
+            return "You're welcome! Anything else I can help with?";
+        }
+        // Browse: up to three free slots from a random point in the calendar
+        StringBuilder offer = new StringBuilder();
+        LocalDateTime after = FIRST_DAY.atStartOfDay()
+                .plusMinutes(ThreadLocalRandom.current().nextLong(days * 24L * 60));
+        for (int i = 0; i < 3; i++) {
+            Optional<LocalDateTime> free = inventory.nextFreeSlot(after);
+            if (free.isEmpty() && i == 0) {
+                free = inventory.nextFreeSlot(FIRST_DAY.atStartOfDay().minusMinutes(1));
+            }
+            if (free.isEmpty()) {
+                break;
+            }
+            offer.append(offer.isEmpty() ? "We have openings on " : ", ")
+                    .append(free.get().toLocalDate()).append(" at ").append(free.get().toLocalTime());
+            after = free.get();
+        }
+        return offer.isEmpty()
+                ? "Sorry, we're fully booked at the moment."
+                : offer.append(". Which one works best for you?").toString();
+    }
+
+    private static String lastUserMessage(String requestBody) {
+        try {
+            JsonNode messages = Json.mapper().readTree(requestBody).path("messages");
+            for (int i = messages.size() - 1; i >= 0; i--) {
+                if (messages.get(i).path("role").asText().equals("user")) {
+                    return messages.get(i).path("content").asText();
+                }
+            }
+            return "";
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1fms", nanos / 1e6);
+    }
+
+    private static final class Inbox implements Handler<AgentResponse> {
+        private final BlockingQueue<AgentResponse> replies;
+
+        Inbox(BlockingQueue<AgentResponse> replies) {
+            this.replies = replies;
+        }
+
+        @Override
+        public void receive(AgentResponse message, ActorContext context) {
+            replies.add(message);
+        }
+    }
+}
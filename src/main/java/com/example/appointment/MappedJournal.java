@@ -0,0 +1,315 @@
+package com.example.appointment;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Append-only log of opaque records in memory-mapped segment files. A record is
+// [int length][int crc32c][payload] and is followed by a zero length word that the next append
+// overwrites, so readers stop at the last complete record; a torn record fails its checksum.
+// Positions are global byte offsets: each segment is named after the position of its first record.
+// Appends are a copy into the mapping, so they survive a process crash as soon as they return. A
+// flusher thread forces the active segment, and any segments closed off since, every syncInterval
+// (group commit: one fsync covers every append since the last one), and awaitDurable() blocks until a
+// given position is on disk; until then a power loss or OS crash can take the last appends with it.
+// Each segment is mapped in its own arena and unmapped as soon as it is no longer written or read,
+// so deleteBefore never meets a mapped file, which Windows refuses to delete.
+public final class MappedJournal implements AutoCloseable {
+    private static final int HEADER_BYTES = 8;
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final long syncIntervalMillis;
+    private final Thread flusher;
+    private final CRC32C crc = new CRC32C();
+
+    // A mapped segment file; closing it unmaps the file at once instead of whenever the buffer is collected
+    private record Mapping(long base, Arena arena, MemorySegment memory, ByteBuffer buffer) implements AutoCloseable {
+        @Override
+        public void close() {
+            arena.close();
+        }
+    }
+
+    // Guarded by this
+    private Mapping segment;
+    private long position;
+    private boolean closed;
+    // Closed off by a roll-over and not yet forced and unmapped by the flusher
+    private final List<Mapping> sealed = new ArrayList<>();
+
+    // Guarded by syncLock
+    private final Object syncLock = new Object();
+    private long durablePosition;
+
+    private MappedJournal(Path directory, int segmentBytes, long syncIntervalMillis) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.flusher = Thread.ofPlatform().daemon().name("journal-flusher").unstarted(this::flushLoop);
+    }
+
+    public static MappedJournal open(Path directory, int segmentBytes, long syncIntervalMillis) {
+        MappedJournal journal = new MappedJournal(directory, segmentBytes, syncIntervalMillis);
+        try {
+            Files.createDirectories(directory);
+            List<Long> bases = journal.segmentBases();
+            if (bases.isEmpty()) {
+                journal.startSegment(0, segmentBytes);
+            } else {
+                // Continue after the last complete record of the newest segment
+                long base = bases.get(bases.size() - 1);
+                int end;
+                try (Mapping mapped = map(journal.segmentPath(base), base, FileChannel.MapMode.READ_ONLY, 0)) {
+                    end = scan(mapped.buffer(), 0, null);
+                }
+                journal.segment = map(journal.segmentPath(base), base, FileChannel.MapMode.READ_WRITE, 0);
+                journal.position = base + end;
+                if (end + Integer.BYTES <= journal.segment.buffer().capacity()) {
+                    journal.segment.buffer().putInt(end, 0);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        journal.durablePosition = journal.position;
+        journal.flusher.start();
+        return journal;
+    }
+
+    // Appends one record and returns the position just after it
+    public synchronized long append(byte[] payload) {
+        if (closed) {
+            throw new IllegalStateException("journal is closed");
+        }
+        int required = HEADER_BYTES + payload.length + Integer.BYTES;
+        int offset = (int) (position - segment.base());
+        if (offset + required > segment.buffer().capacity()) {
+            rollOver(required);
+            offset = 0;
+        }
+        ByteBuffer buffer = segment.buffer();
+        crc.reset();
+        crc.update(payload);
+        buffer.putInt(offset + Integer.BYTES, (int) crc.getValue());
+        buffer.put(offset + HEADER_BYTES, payload);
+        buffer.putInt(offset + HEADER_BYTES + payload.length, 0);
+        // Length last: until it is written, the record does not exist for readers
+        buffer.putInt(offset, payload.length);
+        position += HEADER_BYTES + payload.length;
+        return position;
+    }
+
+    public synchronized long position() {
+        return position;
+    }
+
+    public long durablePosition() {
+        synchronized (syncLock) {
+            return durablePosition;
+        }
+    }
+
+    // Blocks until everything up to the given position has been forced to disk
+    public void awaitDurable(long target) throws InterruptedException {
+        synchronized (syncLock) {
+            while (durablePosition < target) {
+                syncLock.wait();
+            }
+        }
+    }
+
+    // Hands every record payload from the given position on to the consumer, in order
+    public void replay(long from, Consumer<ByteBuffer> records) {
+        try {
+            List<Long> bases = segmentBases();
+            for (int i = 0; i < bases.size(); i++) {
+                long base = bases.get(i);
+                long next = i + 1 < bases.size() ? bases.get(i + 1) : Long.MAX_VALUE;
+                if (next <= from) {
+                    continue;
+                }
+                try (Mapping mapped = map(segmentPath(base), base, FileChannel.MapMode.READ_ONLY, 0)) {
+                    scan(mapped.buffer(), (int) Math.max(0, from - base), records);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Deletes segments that only hold records before the given position (e.g. covered by a snapshot).
+    // One the flusher has not unmapped yet is left for the next call.
+    public void deleteBefore(long position) {
+        try {
+            List<Long> bases = segmentBases();
+            for (int i = 0; i + 1 < bases.size() && bases.get(i + 1) <= position; i++) {
+                // Segments are only ever unmapped, never mapped again, so one seen unmapped stays so
+                boolean mapped;
+                synchronized (this) {
+                    mapped = isMapped(bases.get(i));
+                }
+                if (!mapped) {
+                    Files.deleteIfExists(segmentPath(bases.get(i)));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        flusher.interrupt();
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sync();
+        synchronized (this) {
+            segment.close();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            try {
+                Thread.sleep(syncIntervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            sync();
+        }
+    }
+
+    // Forces the segments closed off since the last sync and unmaps them, then the active one. Runs on
+    // the flusher (and once more on close), so appends never wait for the disk.
+    private void sync() {
+        Mapping active;
+        List<Mapping> closedOff;
+        long target;
+        synchronized (this) {
+            active = segment;
+            closedOff = List.copyOf(sealed);
+            target = position;
+        }
+        if (target == durablePosition() && closedOff.isEmpty()) {
+            return;
+        }
+        for (Mapping mapping : closedOff) {
+            mapping.memory().force();
+            mapping.close();
+        }
+        active.memory().force();
+        synchronized (this) {
+            // Roll-overs only add behind them
+            sealed.subList(0, closedOff.size()).clear();
+        }
+        synchronized (syncLock) {
+            durablePosition = Math.max(durablePosition, target);
+            syncLock.notifyAll();
+        }
+    }
+
+    // Closes off the active segment, leaving the flusher to force it, and starts the next at the
+    // current position
+    private void rollOver(int required) {
+        sealed.add(segment);
+        try {
+            startSegment(position, Math.max(segmentBytes, required));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void startSegment(long base, int size) throws IOException {
+        segment = map(segmentPath(base), base, FileChannel.MapMode.READ_WRITE, size);
+        position = base;
+    }
+
+    // Caller holds this
+    private boolean isMapped(long base) {
+        if (segment.base() == base) {
+            return true;
+        }
+        for (Mapping mapping : sealed) {
+            if (mapping.base() == base) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Returns the offset just after the last complete record, passing each payload on if asked
+    private static int scan(ByteBuffer mapped, int offset, Consumer<ByteBuffer> records) {
+        CRC32C check = new CRC32C();
+        while (offset + HEADER_BYTES <= mapped.capacity()) {
+            int length = mapped.getInt(offset);
+            if (length <= 0 || offset + HEADER_BYTES + length > mapped.capacity()) {
+                break;
+            }
+            ByteBuffer payload = mapped.slice(offset + HEADER_BYTES, length);
+            check.reset();
+            check.update(payload.duplicate());
+            if ((int) check.getValue() != mapped.getInt(offset + Integer.BYTES)) {
+                break;
+            }
+            if (records != null) {
+                records.accept(payload);
+            }
+            offset += HEADER_BYTES + length;
+        }
+        return offset;
+    }
+
+    private static Mapping map(Path path, long base, FileChannel.MapMode mode, int size) throws IOException {
+        StandardOpenOption[] options = mode == FileChannel.MapMode.READ_ONLY
+                ? new StandardOpenOption[] { StandardOpenOption.READ }
+                : new StandardOpenOption[] { StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE };
+        // The active segment is written by appenders and forced by the flusher; a segment being read
+        // stays on one thread, and CRC32C can only checksum buffers of a confined mapping in place
+        Arena arena = mode == FileChannel.MapMode.READ_ONLY ? Arena.ofConfined() : Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            long length = Math.max(channel.size(), size);
+            MemorySegment memory = channel.map(mode, 0, length, arena);
+            return new Mapping(base, arena, memory, memory.asByteBuffer());
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    private List<Long> segmentBases() throws IOException {
+        List<Long> bases = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SUFFIX))
+                    .forEach(name -> bases.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length()))));
+        }
+        bases.sort(null);
+        return bases;
+    }
+
+    private Path segmentPath(long base) {
+        return directory.resolve(String.format("%020d%s", base, SUFFIX));
+    }
+}
@@ -0,0 +1,385 @@
+package com.example.appointment;
+
+import com.cajunsystems.ActorSystem;
+import com.cajunsystems.Pid;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Binary form of the actor messages, replies and conversation state, for persisting or shipping them
+// instead of Java serialization. Every frame starts with the schema version and a type byte; a reader
+// rejects versions it does not know rather than guessing. Numbers are varints (slots zigzag-encoded, so
+// a 2025 slot takes 4 bytes; slot lists store each one as the difference from the last), strings are
+// a varint byte length and UTF-8, batch outcomes are packed bits, the usual roles are a single byte, and
+// a Pid is its actor id. Decoding reads straight out of the buffer, advancing its position,
+// so frames can be read back to back from one buffer.
+final class MessageCodec {
+    static final byte VERSION = 1;
+
+    static final byte USER_MESSAGE = 1;
+    static final byte LLM_RESPONSE = 2;
+    static final byte GET_AVAILABLE_SLOTS = 3;
+    static final byte GET_BOOKED_APPOINTMENTS = 4;
+    static final byte BOOK_APPOINTMENT = 5;
+    static final byte CANCEL_APPOINTMENT = 6;
+    static final byte SLOT_CHANGED = 7;
+    static final byte QUERY_SLOTS = 8;
+    static final byte BOOK_APPOINTMENTS = 9;
+    static final byte CANCEL_APPOINTMENTS = 10;
+    static final byte SLOTS_CHANGED = 11;
+    static final byte AGENT_RESPONSE = 16;
+    static final byte SLOT_PAGE = 17;
+    static final byte BATCH_RESULT = 18;
+    static final byte STATE = 32;
+
+    // Role codes; 0 means the role follows as a string
+    private static final String[] ROLES = { null, "user", "assistant", "system" };
+    private static final AgentResponse.Part[] PARTS = AgentResponse.Part.values();
+
+    private MessageCodec() {
+    }
+
+    static byte[] encode(AppointmentMessage message) {
+        return switch (message) {
+            case UserMessage um -> new Output(2 + sizeOf(um.text()) + sizeOf(um.replyTo()))
+                    .header(USER_MESSAGE).string(um.text()).pid(um.replyTo()).toByteArray();
+            case LLMResponse lr -> new Output(3 + sizeOf(lr.content()))
+                    .header(LLM_RESPONSE).string(lr.content()).put(lr.commanded() ? 1 : 0).toByteArray();
+            case GetAvailableSlots gas -> new Output(2 + sizeOf(gas.replyTo()))
+                    .header(GET_AVAILABLE_SLOTS).pid(gas.replyTo()).toByteArray();
+            case GetBookedAppointments gba -> new Output(2 + sizeOf(gba.replyTo()))
+                    .header(GET_BOOKED_APPOINTMENTS).pid(gba.replyTo()).toByteArray();
+            case BookAppointment ba -> new Output(2 + varintSize(zigzag(ba.slot())) + sizeOf(ba.replyTo()))
+                    .header(BOOK_APPOINTMENT).varint(zigzag(ba.slot())).pid(ba.replyTo()).toByteArray();
+            case CancelAppointment ca -> new Output(2 + varintSize(zigzag(ca.slot())) + sizeOf(ca.replyTo()))
+                    .header(CANCEL_APPOINTMENT).varint(zigzag(ca.slot())).pid(ca.replyTo()).toByteArray();
+            case SlotChanged sc -> new Output(3 + varintSize(zigzag(sc.slot())) + sizeOf(sc.replyTo()) + 10)
+                    .header(SLOT_CHANGED).varint(zigzag(sc.slot()))
+                    .put((sc.book() ? 1 : 0) | (sc.succeeded() ? 2 : 0) | (sc.fastPath() ? 4 : 0))
+                    .pid(sc.replyTo()).varint(sc.receivedNanos()).toByteArray();
+            case QuerySlots qs -> new Output(3 + 4 * 5 + 2 * 10 + sizeOf(qs.replyTo()))
+                    .header(QUERY_SLOTS).varint(zigzag64(qs.fromDay())).varint(zigzag64(qs.toDay()))
+                    .varint(zigzag(qs.fromMinute())).varint(zigzag(qs.toMinute())).put(qs.booked() ? 1 : 0)
+                    .varint(zigzag(qs.cursor())).varint(zigzag(qs.limit())).pid(qs.replyTo()).toByteArray();
+            case BookAppointments bas -> new Output(2 + sizeOf(bas.slots()) + sizeOf(bas.replyTo()))
+                    .header(BOOK_APPOINTMENTS).slots(bas.slots()).pid(bas.replyTo()).toByteArray();
+            case CancelAppointments cas -> new Output(2 + sizeOf(cas.slots()) + sizeOf(cas.replyTo()))
+                    .header(CANCEL_APPOINTMENTS).slots(cas.slots()).pid(cas.replyTo()).toByteArray();
+            case SlotsChanged scs -> new Output(2 + sizeOf(scs.positions()) + bitsSize(scs.succeeded().length))
+                    .header(SLOTS_CHANGED).slots(scs.positions()).bits(scs.succeeded()).toByteArray();
+        };
+    }
+
+    // Pids are rebuilt against the receiving actor system
+    static AppointmentMessage decodeMessage(ByteBuffer in, ActorSystem system) {
+        byte type = readHeader(in);
+        return switch (type) {
+            case USER_MESSAGE -> new UserMessage(readString(in), readPid(in, system));
+            case LLM_RESPONSE -> new LLMResponse(readString(in), in.get() != 0);
+            case GET_AVAILABLE_SLOTS -> new GetAvailableSlots(readPid(in, system));
+            case GET_BOOKED_APPOINTMENTS -> new GetBookedAppointments(readPid(in, system));
+            case BOOK_APPOINTMENT -> new BookAppointment(unzigzag(readVarint(in)), readPid(in, system));
+            case CANCEL_APPOINTMENT -> new CancelAppointment(unzigzag(readVarint(in)), readPid(in, system));
+            case SLOT_CHANGED -> readSlotChanged(in, system);
+            case QUERY_SLOTS -> new QuerySlots(unzigzag64(readVarint(in)), unzigzag64(readVarint(in)),
+                    unzigzag(readVarint(in)), unzigzag(readVarint(in)), in.get() != 0,
+                    unzigzag(readVarint(in)), unzigzag(readVarint(in)), readPid(in, system));
+            case BOOK_APPOINTMENTS -> new BookAppointments(readSlots(in), readPid(in, system));
+            case CANCEL_APPOINTMENTS -> new CancelAppointments(readSlots(in), readPid(in, system));
+            case SLOTS_CHANGED -> {
+                int[] positions = readSlots(in);
+                yield new SlotsChanged(positions, readBits(in, positions.length));
+            }
+            default -> throw new IllegalArgumentException("Not a message frame: type " + type);
+        };
+    }
+
+    private static SlotChanged readSlotChanged(ByteBuffer in, ActorSystem system) {
+        int slot = unzigzag(readVarint(in));
+        int flags = in.get();
+        return new SlotChanged(slot, (flags & 1) != 0, (flags & 2) != 0, (flags & 4) != 0,
+                readPid(in, system), readVarint(in));
+    }
+
+    static byte[] encode(AgentResponse response) {
+        return new Output(3 + sizeOf(response.message()))
+                .header(AGENT_RESPONSE).put(response.part().ordinal()).string(response.message()).toByteArray();
+    }
+
+    static AgentResponse decodeResponse(ByteBuffer in) {
+        expect(in, AGENT_RESPONSE);
+        int part = in.get();
+        if (part < 0 || part >= PARTS.length) {
+            throw new IllegalArgumentException("Unknown reply part " + part);
+        }
+        return new AgentResponse(readString(in), PARTS[part]);
+    }
+
+    static byte[] encode(SlotPage page) {
+        return new Output(2 + sizeOf(page.slots()) + 5)
+                .header(SLOT_PAGE).slots(page.slots()).varint(zigzag(page.nextCursor())).toByteArray();
+    }
+
+    static SlotPage decodeSlotPage(ByteBuffer in) {
+        expect(in, SLOT_PAGE);
+        return new SlotPage(readSlots(in), unzigzag(readVarint(in)));
+    }
+
+    static byte[] encode(BatchResult result) {
+        return new Output(3 + sizeOf(result.slots()) + bitsSize(result.succeeded().length))
+                .header(BATCH_RESULT).put(result.book() ? 1 : 0).slots(result.slots()).bits(result.succeeded())
+                .toByteArray();
+    }
+
+    static BatchResult decodeBatchResult(ByteBuffer in) {
+        expect(in, BATCH_RESULT);
+        boolean book = in.get() != 0;
+        int[] slots = readSlots(in);
+        return new BatchResult(book, slots, readBits(in, slots.length));
+    }
+
+    static byte[] encode(AppointmentState state) {
+        PersistentVector<Message> history = state.conversationHistory();
+        int size = 2 + sizeOf(state.summary()) + varintSize(state.evictedTokens()) + varintSize(history.size());
+        for (Message message : history) {
+            size += 1 + sizeOf(message.content());
+        }
+        Output out = new Output(size).header(STATE)
+                .string(state.summary())
+                .varint(state.evictedTokens())
+                .varint(history.size());
+        for (Message message : history) {
+            int role = roleCode(message.role());
+            out.put(role);
+            if (role == 0) {
+                out.string(message.role());
+            }
+            out.string(message.content());
+        }
+        return out.toByteArray();
+    }
+
+    static AppointmentState decodeState(ByteBuffer in) {
+        expect(in, STATE);
+        String summary = readString(in);
+        long evictedTokens = readVarint(in);
+        PersistentVector<Message> history = PersistentVector.empty();
+        for (long count = readVarint(in); count > 0; count--) {
+            int role = in.get();
+            if (role < 0 || role >= ROLES.length) {
+                throw new IllegalArgumentException("Unknown role code " + role);
+            }
+            history = history.append(new Message(role == 0 ? readString(in) : ROLES[role], readString(in)));
+        }
+        return new AppointmentState(history, summary, evictedTokens);
+    }
+
+    private static byte readHeader(ByteBuffer in) {
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported codec version " + version);
+        }
+        return in.get();
+    }
+
+    private static void expect(ByteBuffer in, byte type) {
+        byte actual = readHeader(in);
+        if (actual != type) {
+            throw new IllegalArgumentException("Expected frame type " + type + " but found " + actual);
+        }
+    }
+
+    private static int roleCode(String role) {
+        for (int i = 1; i < ROLES.length; i++) {
+            if (ROLES[i].equals(role)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    // Exact for ASCII text, which nearly all of it is; anything else grows the output as it is written
+    private static int sizeOf(String value) {
+        return varintSize(value.length()) + value.length();
+    }
+
+    private static int sizeOf(Pid pid) {
+        return pid == null ? 1 : varintSize(pid.actorId().length() + 1L) + pid.actorId().length();
+    }
+
+    // Worst case; sorted slots, the usual case, take two or three bytes each
+    private static int sizeOf(int[] slots) {
+        return 5 + 5 * slots.length;
+    }
+
+    private static int bitsSize(int count) {
+        return (count + 7) / 8;
+    }
+
+    private static int varintSize(long value) {
+        return value == 0 ? 1 : (63 - Long.numberOfLeadingZeros(value)) / 7 + 1;
+    }
+
+    // A Pid is its actor id, with length + 1 so that 0 can stand for no Pid
+    private static Pid readPid(ByteBuffer in, ActorSystem system) {
+        int length = (int) readVarint(in);
+        return length == 0 ? null : new Pid(readUtf8(in, length - 1), system);
+    }
+
+    private static String readString(ByteBuffer in) {
+        return readUtf8(in, (int) readVarint(in));
+    }
+
+    // Heap buffers are decoded straight from their backing array; only direct buffers are copied out
+    private static String readUtf8(ByteBuffer in, int length) {
+        int position = in.position();
+        if (length < 0 || length > in.remaining()) {
+            throw new IllegalArgumentException("String of " + length + " bytes overruns the frame");
+        }
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + position, length, StandardCharsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(position, bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        in.position(position + length);
+        return value;
+    }
+
+    // A count, then each value as the zigzag difference from the one before
+    private static int[] readSlots(ByteBuffer in) {
+        long count = readVarint(in);
+        if (count > in.remaining()) {
+            throw new IllegalArgumentException(count + " slots overrun the frame");
+        }
+        int[] slots = new int[(int) count];
+        int previous = 0;
+        for (int i = 0; i < slots.length; i++) {
+            previous += unzigzag(readVarint(in));
+            slots[i] = previous;
+        }
+        return slots;
+    }
+
+    private static boolean[] readBits(ByteBuffer in, int count) {
+        boolean[] bits = new boolean[count];
+        for (int i = 0; i < count; i += 8) {
+            byte packed = in.get();
+            for (int j = i; j < Math.min(i + 8, count); j++) {
+                bits[j] = (packed >> (j - i) & 1) != 0;
+            }
+        }
+        return bits;
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static long zigzag(int value) {
+        return (value << 1 ^ value >> 31) & 0xFFFFFFFFL;
+    }
+
+    private static int unzigzag(long value) {
+        int bits = (int) value;
+        return bits >>> 1 ^ -(bits & 1);
+    }
+
+    private static long zigzag64(long value) {
+        return value << 1 ^ value >> 63;
+    }
+
+    private static long unzigzag64(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    // Growable byte array, sized up front from the content so that most frames are written without a
+    // resize and handed out without a trimming copy
+    private static final class Output {
+        private byte[] bytes;
+        private int position;
+
+        Output(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        Output header(byte type) {
+            return put(VERSION).put(type);
+        }
+
+        Output put(int value) {
+            ensure(1);
+            bytes[position++] = (byte) value;
+            return this;
+        }
+
+        Output varint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[position++] = (byte) (value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            bytes[position++] = (byte) value;
+            return this;
+        }
+
+        // String.getBytes has an intrinsic for compact strings and beats encoding char by char
+        Output string(String value) {
+            return utf8(value.getBytes(StandardCharsets.UTF_8), 0);
+        }
+
+        Output slots(int[] slots) {
+            varint(slots.length);
+            int previous = 0;
+            for (int slot : slots) {
+                varint(zigzag(slot - previous));
+                previous = slot;
+            }
+            return this;
+        }
+
+        Output bits(boolean[] bits) {
+            for (int i = 0; i < bits.length; i += 8) {
+                int packed = 0;
+                for (int j = i; j < Math.min(i + 8, bits.length); j++) {
+                    packed |= (bits[j] ? 1 : 0) << (j - i);
+                }
+                put(packed);
+            }
+            return this;
+        }
+
+        Output pid(Pid pid) {
+            return pid == null ? put(0) : utf8(pid.actorId().getBytes(StandardCharsets.UTF_8), 1);
+        }
+
+        private Output utf8(byte[] utf8, int lengthBias) {
+            varint(utf8.length + (long) lengthBias);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, position, utf8.length);
+            position += utf8.length;
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return position == bytes.length ? bytes : Arrays.copyOf(bytes, position);
+        }
+
+        private void ensure(int count) {
+            if (position + count > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, position + count));
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.appointment;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// Local stand-in for the chat-completions endpoint, so the agent can be exercised end to end without
+// network access or an API key. Each request is answered with the reply the responder returns for its
+// body, either as one JSON document or, when the request asked for "stream":true, as a short run of
+// server-sent events. An optional latency (plus random jitter) stands in for model time: a plain reply
+// is sent once it has passed; a streamed one sends its first event halfway and spreads the rest over
+// the remaining half. A share of requests can be failed with 503 at once, to exercise retries. Handlers
+// run on virtual threads, so thousands of delayed replies cost little.
+public class MockCompletionServer implements AutoCloseable {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Function<String, String> responder;
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final int failurePercent;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public MockCompletionServer(Function<String, String> responder) throws IOException {
+        this(responder, 0, 0);
+    }
+
+    public MockCompletionServer(Function<String, String> responder, long latencyMillis, long jitterMillis)
+            throws IOException {
+        this(responder, latencyMillis, jitterMillis, 0);
+    }
+
+    public MockCompletionServer(Function<String, String> responder, long latencyMillis, long jitterMillis,
+                                int failurePercent) throws IOException {
+        this.responder = responder;
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.failurePercent = failurePercent;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/v1/chat/completions", this::handle);
+        server.start();
+    }
+
+    // Always answers with the same reply
+    public static MockCompletionServer replying(String content) throws IOException {
+        return new MockCompletionServer(body -> content);
+    }
+
+    // Value for OPENAI_BASE_URL / LlmSettings.withBaseUrl
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+    }
+
+    public long requestCount() {
+        return requests.get();
+    }
+
+    // Requests answered with 503
+    public long failureCount() {
+        return failures.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        String body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        if (failurePercent > 0 && ThreadLocalRandom.current().nextInt(100) < failurePercent) {
+            failures.incrementAndGet();
+            byte[] error = "{\"error\":{\"message\":\"overloaded\"}}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(503, error.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(error);
+            }
+            return;
+        }
+        String content = responder.apply(body);
+        boolean stream = body.contains("\"stream\":true");
+        long delayMillis = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+
+        try {
+            if (stream) {
+                List<byte[]> events = events(content);
+                exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+                Thread.sleep(delayMillis / 2);
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    for (int i = 0; i < events.size(); i++) {
+                        if (i > 0) {
+                            Thread.sleep(delayMillis / 2 / (events.size() - 1));
+                        }
+                        out.write(events.get(i));
+                        out.flush();
+                    }
+                }
+            } else {
+                byte[] reply = completion(content);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                Thread.sleep(delayMillis);
+                exchange.sendResponseHeaders(200, reply.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(reply);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Server is closing
+            exchange.close();
+        }
+    }
+
+    private static byte[] completion(String content) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length() + 128);
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("choices");
+            json.writeStartObject();
+            json.writeObjectFieldStart("message");
+            json.writeStringField("role", "assistant");
+            json.writeStringField("content", content);
+            json.writeEndObject();
+            json.writeEndObject();
+            json.writeEndArray();
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    // One event per line of the reply, the way real streams split text into small deltas
+    private static List<byte[]> events(String content) {
+        List<byte[]> events = new ArrayList<>();
+        int start = 0;
+        while (start < content.length()) {
+            int end = content.indexOf('\n', start);
+            end = end < 0 ? content.length() : end + 1;
+            events.add(("data: " + delta(content.substring(start, end)) + "\n\n").getBytes(StandardCharsets.UTF_8));
+            start = end;
+        }
+        events.add("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        return events;
+    }
+
+    private static String delta(String text) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(text.length() + 64);
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("choices");
+            json.writeStartObject();
+            json.writeObjectFieldStart("delta");
+            json.writeStringField("content", text);
+            json.writeEndObject();
+            json.writeEndObject();
+            json.writeEndArray();
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.appointment;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+// Immutable list backed by a 32-way trie with a detached tail (the classic bit-partitioned vector).
+// append and update copy only the path to the touched leaf, so each new version shares all other
+// nodes with its predecessor. dropFirst just moves a start offset into the trie; the dropped prefix is
+// compacted away once it is larger than what is left, so it costs O(1) amortized and never holds on to
+// more than about twice the live elements. Mutators inherited from AbstractList throw
+// UnsupportedOperationException.
+public final class PersistentVector<E> extends AbstractList<E> implements RandomAccess, Serializable {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final Object[] EMPTY_NODE = new Object[WIDTH];
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, 0, BITS, EMPTY_NODE, new Object[0]);
+
+    // Elements live at trie positions [offset, offset + size)
+    private final int offset;
+    private final int size;
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+
+    private PersistentVector(int offset, int size, int shift, Object[] root, Object[] tail) {
+        this.offset = offset;
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> copyOf(Collection<? extends E> elements) {
+        if (elements instanceof PersistentVector<?> vector) {
+            return (PersistentVector<E>) vector;
+        }
+        PersistentVector<E> result = empty();
+        for (E element : elements) {
+            result = result.append(element);
+        }
+        return result;
+    }
+
+    @SafeVarargs
+    public static <E> PersistentVector<E> of(E... elements) {
+        return copyOf(Arrays.asList(elements));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        int position = offset + index;
+        return (E) leafFor(position)[position & MASK];
+    }
+
+    public PersistentVector<E> append(E element) {
+        int end = offset + size;
+        // Room left in the tail: copy just the tail
+        if (end - tailOffset() < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = element;
+            return new PersistentVector<>(offset, size + 1, shift, root, newTail);
+        }
+
+        // Tail is full: push it into the trie, growing a new root level if the trie is full too
+        Object[] newRoot;
+        int newShift = shift;
+        if ((end >>> BITS) > (1 << shift)) {
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root, tail);
+        }
+        return new PersistentVector<>(offset, size + 1, newShift, newRoot, new Object[] { element });
+    }
+
+    public PersistentVector<E> update(int index, E element) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        int position = offset + index;
+        if (position >= tailOffset()) {
+            Object[] newTail = tail.clone();
+            newTail[position & MASK] = element;
+            return new PersistentVector<>(offset, size, shift, root, newTail);
+        }
+        return new PersistentVector<>(offset, size, shift, updatePath(shift, root, position, element), tail);
+    }
+
+    // Removal from the middle cannot share the suffix, so this is O(n); only use it on small or rarely edited vectors
+    public PersistentVector<E> without(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        PersistentVector<E> result = empty();
+        for (int i = 0; i < size; i++) {
+            if (i != index) {
+                result = result.append(get(i));
+            }
+        }
+        return result;
+    }
+
+    // Keeps the last size - count elements
+    public PersistentVector<E> dropFirst(int count) {
+        if (count <= 0) {
+            return this;
+        }
+        if (count >= size) {
+            return empty();
+        }
+        int newOffset = offset + count;
+        int remaining = size - count;
+        if (newOffset <= remaining + WIDTH) {
+            return new PersistentVector<>(newOffset, remaining, shift, root, tail);
+        }
+        // The dead prefix outweighs the live elements: rebuild from the survivors
+        PersistentVector<E> result = empty();
+        for (int i = count; i < size; i++) {
+            result = result.append(get(i));
+        }
+        return result;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<>() {
+            private int position = offset;
+            private final int end = offset + size;
+            private Object[] leaf = size == 0 ? null : leafFor(offset);
+
+            @Override
+            public boolean hasNext() {
+                return position < end;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (position >= end) {
+                    throw new NoSuchElementException();
+                }
+                // Walk the trie once per leaf rather than once per element
+                if (position > offset && (position & MASK) == 0) {
+                    leaf = leafFor(position);
+                }
+                return (E) leaf[position++ & MASK];
+            }
+        };
+    }
+
+    // Trie position of the first element in the tail
+    private int tailOffset() {
+        int end = offset + size;
+        return end < WIDTH ? 0 : ((end - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] leafFor(int position) {
+        if (position >= tailOffset()) {
+            return tail;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(position >>> level) & MASK];
+        }
+        return node;
+    }
+
+    private Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+        int subIndex = ((offset + size - 1) >>> level) & MASK;
+        Object[] result = parent.clone();
+        Object[] toInsert;
+        if (level == BITS) {
+            toInsert = tailNode;
+        } else {
+            Object[] child = (Object[]) parent[subIndex];
+            toInsert = child != null
+                    ? pushTail(level - BITS, child, tailNode)
+                    : newPath(level - BITS, tailNode);
+        }
+        result[subIndex] = toInsert;
+        return result;
+    }
+
+    private static Object[] newPath(int level, Object[] node) {
+        if (level == 0) {
+            return node;
+        }
+        Object[] result = new Object[WIDTH];
+        result[0] = newPath(level - BITS, node);
+        return result;
+    }
+
+    private static Object[] updatePath(int level, Object[] node, int index, Object element) {
+        Object[] result = node.clone();
+        if (level == 0) {
+            result[index & MASK] = element;
+        } else {
+            int subIndex = (index >>> level) & MASK;
+            result[subIndex] = updatePath(level - BITS, (Object[]) node[subIndex], index, element);
+        }
+        return result;
+    }
+}
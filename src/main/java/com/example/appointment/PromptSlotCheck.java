@@ -0,0 +1,109 @@
+package com.example.appointment;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+// Reports what the compact slot section of the system prompt saves. It builds a calendar like a
+// clinic's - PROMPT_CHECK_PROVIDERS providers over PROMPT_CHECK_WEEKS weeks of weekdays, each with their
+// own hours, appointment length and lunch break, and PROMPT_CHECK_BOOKED_PERCENT of the slots booked -
+// and renders the prompt as the plain list, as ranges, and as ranges over a PROMPT_WINDOW_DAYS window.
+// That the ranges parse back to exactly the free slots is checked by SystemPromptRendererTest and
+// SlotRangeFormatTest.
+public class PromptSlotCheck {
+    private static final LocalDate FIRST_DAY = LocalDate.of(2025, 11, 3);
+    private static final int[] APPOINTMENT_MINUTES = { 15, 20, 30, 45, 60 };
+
+    public static void main(String[] args) {
+        int providers = Environment.intValue("PROMPT_CHECK_PROVIDERS", 24);
+        int weeks = Environment.intValue("PROMPT_CHECK_WEEKS", 6);
+        int bookedPercent = Environment.intValue("PROMPT_CHECK_BOOKED_PERCENT", 30);
+        int windowDays = Environment.intValue("PROMPT_WINDOW_DAYS", 14);
+        Random random = new Random(Environment.intValue("PROMPT_CHECK_SEED", 1));
+
+        System.out.printf("%d providers, %d weeks, %d%% booked%n", providers, weeks, bookedPercent);
+        report("clinic", clinic(providers, weeks, bookedPercent, random), windowDays);
+        report("every 15m", regular(weeks, bookedPercent, random), windowDays);
+    }
+
+    // Each provider works from 7:00-10:00 until 15:00-19:00 in appointments of one length, skipping
+    // the hour from 12:00 or 13:00; the calendar holds every time at which someone is free
+    static SlotInventory clinic(int providers, int weeks, int bookedPercent, Random random) {
+        SlotInventory calendar = SlotInventory.empty();
+        for (int p = 0; p < providers; p++) {
+            int length = APPOINTMENT_MINUTES[random.nextInt(APPOINTMENT_MINUTES.length)];
+            int start = (7 + random.nextInt(4)) * 60 + (length < 60 ? 0 : 30 * random.nextInt(2));
+            int end = (15 + random.nextInt(5)) * 60;
+            int lunch = (12 + random.nextInt(2)) * 60;
+            for (LocalDate day : weekdays(weeks)) {
+                for (int minute = start; minute + length <= end; minute += length) {
+                    if (minute + length <= lunch || minute >= lunch + 60) {
+                        calendar = calendar.withSlot(day, SlotInventory.timeOf(minute));
+                    }
+                }
+            }
+        }
+        return book(calendar, bookedPercent, random);
+    }
+
+    // The load test's kind of calendar: one grid for every day
+    static SlotInventory regular(int weeks, int bookedPercent, Random random) {
+        SlotInventory calendar = SlotInventory.empty();
+        for (LocalDate day : weekdays(weeks)) {
+            for (int minute = 8 * 60; minute < 18 * 60; minute += 15) {
+                calendar = calendar.withSlot(day, SlotInventory.timeOf(minute));
+            }
+        }
+        return book(calendar, bookedPercent, random);
+    }
+
+    private static LocalDate[] weekdays(int weeks) {
+        return IntStream.range(0, weeks * 7)
+                .mapToObj(FIRST_DAY::plusDays)
+                .filter(d -> d.getDayOfWeek() != DayOfWeek.SATURDAY && d.getDayOfWeek() != DayOfWeek.SUNDAY)
+                .toArray(LocalDate[]::new);
+    }
+
+    private static SlotInventory book(SlotInventory calendar, int bookedPercent, Random random) {
+        SlotInventory[] booked = { calendar };
+        calendar.forEachFreeSlot(calendar.firstEpochDay(), calendar.endEpochDay(), slot -> {
+            if (random.nextInt(100) < bookedPercent) {
+                booked[0] = booked[0].book(slot);
+            }
+        });
+        return booked[0];
+    }
+
+    private static void report(String name, SlotInventory calendar, int windowDays) {
+        SlotInventoryService inventory = new SlotInventoryService(calendar);
+        Clock clock = Clock.fixed(FIRST_DAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        SystemPromptRenderer list = new SystemPromptRenderer(inventory, false, 0, clock);
+        SystemPromptRenderer ranges = new SystemPromptRenderer(inventory, true, 0, clock);
+        SystemPromptRenderer window = new SystemPromptRenderer(inventory, true, windowDays, clock);
+
+        System.out.printf("%n%s: %,d free slots%n", name, freeCount(inventory));
+        System.out.printf("  %-22s %9s %9s %8s%n", "", "chars", "~tokens", "vs list");
+        String listPrompt = list.systemPrompt();
+        row("list, whole calendar", listPrompt, listPrompt);
+        row("ranges, whole calendar", ranges.systemPrompt(), listPrompt);
+        row("ranges, " + windowDays + " days", window.systemPrompt(), listPrompt);
+    }
+
+    private static void row(String name, String prompt, String listPrompt) {
+        int tokens = ContextWindow.estimateTokens(prompt);
+        int listTokens = ContextWindow.estimateTokens(listPrompt);
+        System.out.printf("  %-22s %,9d %,9d %7.1f%%%n", name, prompt.length(), tokens,
+                100.0 * (tokens - listTokens) / listTokens);
+    }
+
+    private static int freeCount(SlotInventoryService inventory) {
+        int[] count = new int[1];
+        for (long d = inventory.startEpochDay(); d < inventory.endEpochDay(); d++) {
+            inventory.forEachFreeSlot(d, slot -> count[0]++);
+        }
+        return count[0];
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.appointment;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Shared cache of LLM replies. The key is the slot-inventory version, the first day of the prompt's
+// window of days, and the last few turns of the conversation, normalized (case, whitespace, trailing
+// punctuation), so the same question against the same calendar and prompt is answered without a round
+// trip, and any booking or cancellation - which bumps the version - makes every earlier answer
+// unreachable. Only replies that carry no BOOK/CANCEL intent and name no slot are stored (the handler
+// decides that).
+// Eviction is W-TinyLFU: new entries land in a small LRU window; when it overflows, its oldest entry
+// competes with the oldest entry of the main LRU and the one a count-min sketch has seen requested
+// more often stays. Entries also expire after a TTL.
+public class ResponseCache {
+    private final int turns;
+    private final long ttlNanos;
+    private final int windowCapacity;
+    private final int mainCapacity;
+
+    // Guarded by this; both in access order, eldest first
+    private final LinkedHashMap<String, Entry> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Entry> main = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong latencySavedNanos = new AtomicLong();
+    // Moving average of what a miss costs, credited to every hit
+    private volatile long averageCallNanos;
+
+    private record Entry(String reply, long expiresAt) {}
+
+    public ResponseCache(int capacity, long ttlSeconds, int turns) {
+        this.turns = Math.max(1, turns);
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+        this.windowCapacity = capacity <= 0 ? 0 : Math.max(1, capacity / 100);
+        this.mainCapacity = Math.max(0, capacity - windowCapacity);
+        this.sketch = new FrequencySketch(Math.max(capacity, 16));
+    }
+
+    public static ResponseCache fromEnvironment() {
+        return new ResponseCache(
+                Environment.intValue("LLM_CACHE_SIZE", 1000),
+                Environment.intValue("LLM_CACHE_TTL_SECONDS", 300),
+                Environment.intValue("LLM_CACHE_TURNS", 4));
+    }
+
+    public boolean enabled() {
+        return windowCapacity > 0;
+    }
+
+    // Version and prompt window first, then "role:normalized content" for each of the last turns
+    public String keyFor(long inventoryVersion, long promptWindow, AppointmentState state) {
+        List<Message> history = state.conversationHistory();
+        StringBuilder key = new StringBuilder(128).append(inventoryVersion).append('/').append(promptWindow);
+        for (int i = Math.max(0, history.size() - turns); i < history.size(); i++) {
+            Message message = history.get(i);
+            key.append('\u0000').append(message.role()).append(':');
+            normalize(message.content(), key);
+        }
+        return key.toString();
+    }
+
+    public String get(String key) {
+        String reply = lookup(key);
+        if (reply == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+            latencySavedNanos.addAndGet(averageCallNanos);
+        }
+        return reply;
+    }
+
+    // Stores a reply fetched after a miss; callNanos is what the round trip cost
+    public void put(String key, String reply, long callNanos) {
+        long average = averageCallNanos;
+        averageCallNanos = average == 0 ? callNanos : average + (callNanos - average) / 8;
+        if (!enabled()) {
+            return;
+        }
+        Entry entry = new Entry(reply, System.nanoTime() + ttlNanos);
+        synchronized (this) {
+            if (main.containsKey(key)) {
+                main.put(key, entry);
+                return;
+            }
+            window.put(key, entry);
+            if (window.size() > windowCapacity) {
+                Iterator<Map.Entry<String, Entry>> eldest = window.entrySet().iterator();
+                Map.Entry<String, Entry> candidate = eldest.next();
+                eldest.remove();
+                admit(candidate.getKey(), candidate.getValue());
+            }
+        }
+    }
+
+    public Stats stats() {
+        int size;
+        synchronized (this) {
+            size = window.size() + main.size();
+        }
+        return new Stats(hits.get(), misses.get(), evictions.get(), size, latencySavedNanos.get() / 1_000_000);
+    }
+
+    public record Stats(long hits, long misses, long evictions, int size, long latencySavedMillis) {
+        public double hitRatio() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+
+    private synchronized String lookup(String key) {
+        if (!enabled()) {
+            return null;
+        }
+        sketch.increment(key.hashCode());
+        Map<String, Entry> region = window;
+        Entry entry = window.get(key);
+        if (entry == null) {
+            region = main;
+            entry = main.get(key);
+        }
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() - System.nanoTime() < 0) {
+            region.remove(key);
+            return null;
+        }
+        return entry.reply();
+    }
+
+    // A window victim enters the main region if there is room or if it is requested more often than
+    // the main region's own eviction candidate
+    private void admit(String key, Entry entry) {
+        if (main.size() < mainCapacity) {
+            main.put(key, entry);
+            return;
+        }
+        Iterator<Map.Entry<String, Entry>> eldest = main.entrySet().iterator();
+        if (eldest.hasNext()) {
+            Map.Entry<String, Entry> victim = eldest.next();
+            if (victim.getValue().expiresAt() - System.nanoTime() < 0
+                    || sketch.frequency(key.hashCode()) > sketch.frequency(victim.getKey().hashCode())) {
+                eldest.remove();
+                main.put(key, entry);
+            }
+        }
+        evictions.incrementAndGet();
+    }
+
+    // Lower-cased, runs of whitespace collapsed to one space, trailing punctuation and spaces dropped
+    static void normalize(String text, StringBuilder into) {
+        int start = into.length();
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = into.length() > start;
+                continue;
+            }
+            if (space) {
+                into.append(' ');
+                space = false;
+            }
+            into.append(Character.toLowerCase(c));
+        }
+        int end = into.length();
+        while (end > start && isTrailingPunctuation(into.charAt(end - 1))) {
+            end--;
+        }
+        into.setLength(end);
+    }
+
+    private static boolean isTrailingPunctuation(char c) {
+        return c == '?' || c == '!' || c == '.' || c == ' ';
+    }
+
+    // Count-min sketch of request frequencies: four rows of saturating counters (max 15). All counters
+    // are halved every 10 x capacity increments so that old popularity fades.
+    private static final class FrequencySketch {
+        private static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F };
+
+        private final byte[][] rows = new byte[SEEDS.length][];
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int width = Integer.highestOneBit(capacity * 2 - 1) << 1;
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = new byte[width];
+            }
+            this.mask = width - 1;
+            this.sampleSize = 10 * capacity;
+        }
+
+        void increment(int hash) {
+            for (int i = 0; i < rows.length; i++) {
+                int index = index(hash, i);
+                if (rows[i][index] < 15) {
+                    rows[i][index]++;
+                }
+            }
+            if (++additions >= sampleSize) {
+                for (byte[] row : rows) {
+                    for (int j = 0; j < row.length; j++) {
+                        row[j] >>= 1;
+                    }
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(int hash) {
+            int min = 15;
+            for (int i = 0; i < rows.length; i++) {
+                min = Math.min(min, rows[i][index(hash, i)]);
+            }
+            return min;
+        }
+
+        private int index(int hash, int row) {
+            int h = hash * SEEDS[row];
+            return (h ^ (h >>> 16)) & mask;
+        }
+    }
+}
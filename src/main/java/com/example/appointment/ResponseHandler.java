@@ -4,9 +4,18 @@ package com.example.appointment;
 import com.cajunsystems.ActorContext;
 import com.cajunsystems.handler.Handler;
 
+import java.util.concurrent.BlockingQueue;
+
+// Hands agent replies to the console's render queue the moment they arrive
 public class ResponseHandler implements Handler<AgentResponse> {
+    private final BlockingQueue<ConsoleEvent> events;
+
+    public ResponseHandler(BlockingQueue<ConsoleEvent> events) {
+        this.events = events;
+    }
+
     @Override
     public void receive(AgentResponse message, ActorContext context) {
-        AppointmentSchedulerDemo.addAgentMessage(message.message());
+        events.add(new ConsoleEvent.Reply(message));
     }
 }
@@ -0,0 +1,241 @@
+package com.example.appointment;
+
+import com.cajunsystems.Pid;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Turns an LLM reply into booking intents and the text shown to the user, in a single scan.
+// The reply is walked once, character by character; only at a character that can start a command,
+// a keyword or a date/time phrase is a region match attempted, using shared precompiled patterns.
+// The reply is never lowercased, re-scanned or split, and every command is returned rather than
+// only the first of each kind.
+// Natural-language phrases are only used as a fallback, exactly as before: a booking phrase counts
+// when the reply says "booked"/"scheduled" without a BOOK: command, a cancellation phrase (ISO dates
+// only) when it says "cancelled" without a CANCEL: command, and in both cases the first phrase wins.
+final class ResponseInterpreter {
+    enum Kind { BOOK, CANCEL }
+
+    // slot is a SlotTime epoch minute, or SlotTime.INVALID for a well-formed but impossible date such as
+    // 2025-02-30, which the inventory then reports as unavailable just like any other unknown slot
+    record Intent(Kind kind, int slot, boolean explicit) {
+        AppointmentMessage toMessage(Pid replyTo) {
+            return kind == Kind.BOOK
+                    ? new BookAppointment(slot, replyTo)
+                    : new CancelAppointment(slot, replyTo);
+        }
+    }
+
+    record Interpretation(List<Intent> intents, String text) {}
+
+    private static final String NATURAL_DATE = "\\w+ \\d{1,2}(?:st|nd|rd|th)?,? \\d{4}";
+
+    // Phrase slot not found yet (or not parsable); distinct from SlotTime.INVALID, which a phrase can carry
+    private static final int NO_PHRASE = Integer.MAX_VALUE;
+
+    private static final Pattern COMMAND = Pattern.compile("(BOOK|CANCEL):(\\d{4}-\\d{2}-\\d{2}):(\\d{2}:\\d{2})");
+
+    private static final Pattern PHRASE = Pattern.compile(
+            "on (?<onDate>\\d{4}-\\d{2}-\\d{2}) at (?<onTime>\\d{2}:\\d{2})"
+                    + "|for (?<forTime>\\d{2}:\\d{2}) on (?:(?<forDate>\\d{4}-\\d{2}-\\d{2})|(?<forText>" + NATURAL_DATE + "))"
+                    + "|(?:for|at) (?<time12>\\d{1,2}:\\d{2}) ?(?<ampm>[APap][Mm]) on (?<text12>" + NATURAL_DATE + ")");
+
+    private static final Pattern DATE_OR_TIME = Pattern.compile("(\\d{4}-\\d{2}-\\d{2})|(?<![\\d:])(\\d{2}:\\d{2})(?![\\d:])");
+
+    private static final Pattern ORDINAL_SUFFIX = Pattern.compile("(\\d)(?:st|nd|rd|th)");
+    private static final Pattern BLANK_LINES = Pattern.compile("\\n\\s*\\n");
+
+    private static final DateTimeFormatter NATURAL_DATE_FORMAT = new DateTimeFormatterBuilder()
+            .parseCaseInsensitive()
+            .appendPattern("MMMM d[,] yyyy")
+            .toFormatter(Locale.ENGLISH);
+    private static final DateTimeFormatter TIME_12_FORMAT = new DateTimeFormatterBuilder()
+            .parseCaseInsensitive()
+            .appendPattern("h:mm a")
+            .toFormatter(Locale.ENGLISH);
+
+    private ResponseInterpreter() {
+    }
+
+    static Interpretation interpret(String response) {
+        List<Intent> intents = new ArrayList<>(2);
+        StringBuilder text = null;
+        int copiedUpTo = 0;
+        boolean hasBookCommand = false;
+        boolean hasCancelCommand = false;
+        boolean saysBooked = false;
+        boolean saysCancelled = false;
+        int bookPhrase = NO_PHRASE;
+        int cancelPhrase = NO_PHRASE;
+        Matcher command = null;
+        Matcher phrase = null;
+
+        int length = response.length();
+        for (int i = 0; i < length; i++) {
+            char c = response.charAt(i);
+            if ((c == 'B' && response.startsWith("BOOK:", i)) || (c == 'C' && response.startsWith("CANCEL:", i))) {
+                if (command == null) {
+                    command = COMMAND.matcher(response);
+                }
+                if (command.region(i, length).lookingAt()) {
+                    boolean book = c == 'B';
+                    hasBookCommand |= book;
+                    hasCancelCommand |= !book;
+                    intents.add(new Intent(book ? Kind.BOOK : Kind.CANCEL, commandSlot(response, command), true));
+                    // Commands are stripped from what the user sees
+                    if (text == null) {
+                        text = new StringBuilder(length);
+                    }
+                    text.append(response, copiedUpTo, i);
+                    copiedUpTo = command.end();
+                    i = copiedUpTo - 1;
+                    continue;
+                }
+            }
+            switch (c) {
+                case 'b', 'B' -> saysBooked |= response.regionMatches(true, i, "booked", 0, 6);
+                case 's', 'S' -> saysBooked |= response.regionMatches(true, i, "scheduled", 0, 9);
+                case 'c', 'C' -> saysCancelled |= response.regionMatches(true, i, "cancelled", 0, 9)
+                        || response.regionMatches(true, i, "canceled", 0, 8);
+                case 'o', 'f', 'a' -> {
+                    if (bookPhrase != NO_PHRASE && cancelPhrase != NO_PHRASE) {
+                        break;
+                    }
+                    if (!response.startsWith("on ", i) && !response.startsWith("for ", i) && !response.startsWith("at ", i)) {
+                        break;
+                    }
+                    if (phrase == null) {
+                        phrase = PHRASE.matcher(response);
+                    }
+                    if (phrase.region(i, length).lookingAt()) {
+                        int isoPhrase = isoPhrase(response, phrase);
+                        if (cancelPhrase == NO_PHRASE && isoPhrase != NO_PHRASE) {
+                            cancelPhrase = isoPhrase;
+                        }
+                        if (bookPhrase == NO_PHRASE) {
+                            bookPhrase = isoPhrase != NO_PHRASE ? isoPhrase : naturalPhrase(phrase);
+                        }
+                        i = phrase.end() - 1;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        if (!hasBookCommand && saysBooked && bookPhrase != NO_PHRASE) {
+            intents.add(new Intent(Kind.BOOK, bookPhrase, false));
+        }
+        if (!hasCancelCommand && saysCancelled && cancelPhrase != NO_PHRASE) {
+            intents.add(new Intent(Kind.CANCEL, cancelPhrase, false));
+        }
+
+        if (text == null) {
+            return new Interpretation(intents, response);
+        }
+        text.append(response, copiedUpTo, length);
+        return new Interpretation(intents, BLANK_LINES.matcher(text).replaceAll("\n").trim());
+    }
+
+    // Explicit commands on one line, for the streaming path; returns the line without them
+    static String extractCommands(String line, List<Intent> into) {
+        Matcher matcher = COMMAND.matcher(line);
+        if (!matcher.find()) {
+            return line;
+        }
+        StringBuilder remainder = new StringBuilder(line.length());
+        int copiedUpTo = 0;
+        do {
+            into.add(new Intent(line.charAt(matcher.start()) == 'B' ? Kind.BOOK : Kind.CANCEL,
+                    commandSlot(line, matcher), true));
+            remainder.append(line, copiedUpTo, matcher.start());
+            copiedUpTo = matcher.end();
+        } while (matcher.find());
+        return remainder.append(line, copiedUpTo, line.length()).toString();
+    }
+
+    // Whether text has an explicit command at from, or the start of one that more text could complete
+    static boolean mayBeCommand(CharSequence text, int from) {
+        Matcher matcher = COMMAND.matcher(text).region(from, text.length());
+        return matcher.lookingAt() || matcher.hitEnd();
+    }
+
+    // Slots the reply proposes, as in "2025-11-06 at 09:00 or 14:00": every HH:MM time paired with the
+    // last yyyy-MM-dd date before it. Distinct slots in the order they first appear.
+    static int[] offeredSlots(String text) {
+        Matcher matcher = DATE_OR_TIME.matcher(text);
+        int date = -1;
+        int[] slots = new int[4];
+        int count = 0;
+        while (matcher.find()) {
+            if (matcher.start(1) >= 0) {
+                date = matcher.start(1);
+                continue;
+            }
+            if (date < 0) {
+                continue;
+            }
+            int slot = SlotTime.parse(text, date, text, matcher.start(2));
+            if (slot == SlotTime.INVALID || Arrays.stream(slots, 0, count).anyMatch(s -> s == slot)) {
+                continue;
+            }
+            if (count == slots.length) {
+                slots = Arrays.copyOf(slots, count * 2);
+            }
+            slots[count++] = slot;
+        }
+        return Arrays.copyOf(slots, count);
+    }
+
+    // Dates and times are read straight out of the reply at the matched offsets
+    private static int commandSlot(String text, Matcher command) {
+        return SlotTime.parse(text, command.start(2), text, command.start(3));
+    }
+
+    private static int isoPhrase(String text, Matcher matcher) {
+        if (matcher.start("onDate") >= 0) {
+            return SlotTime.parse(text, matcher.start("onDate"), text, matcher.start("onTime"));
+        }
+        if (matcher.start("forDate") >= 0) {
+            return SlotTime.parse(text, matcher.start("forDate"), text, matcher.start("forTime"));
+        }
+        return NO_PHRASE;
+    }
+
+    private static int naturalPhrase(Matcher matcher) {
+        if (matcher.group("forText") != null) {
+            LocalDate date = parseNaturalDate(matcher.group("forText"));
+            return date == null ? NO_PHRASE : SlotTime.parse(date.toString(), matcher.group("forTime"));
+        }
+        LocalDate date = parseNaturalDate(matcher.group("text12"));
+        LocalTime time = parseTime12(matcher.group("time12"), matcher.group("ampm"));
+        return date == null || time == null ? NO_PHRASE : SlotTime.of(date, time);
+    }
+
+    // 'November 5th, 2025' -> 2025-11-05
+    private static LocalDate parseNaturalDate(String text) {
+        try {
+            return LocalDate.parse(ORDINAL_SUFFIX.matcher(text).replaceAll("$1"), NATURAL_DATE_FORMAT);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    // '2:30' 'pm' -> 14:30
+    private static LocalTime parseTime12(String time, String ampm) {
+        try {
+            return LocalTime.parse(time + " " + ampm, TIME_12_FORMAT);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
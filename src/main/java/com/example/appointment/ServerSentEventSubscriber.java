@@ -0,0 +1,76 @@
+package com.example.appointment;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+// Line subscriber for a chat-completions response sent with "stream": true. Each "data:" event carries
+// a JSON chunk whose choices[0].delta.content is handed to the delta consumer as soon as it arrives.
+// Anything that is not an event (e.g. a plain JSON error body) is kept so the caller can report it.
+class ServerSentEventSubscriber implements Flow.Subscriber<String> {
+    private final ObjectMapper objectMapper;
+    private final Consumer<String> onDelta;
+    private final StringBuilder content = new StringBuilder();
+    private final StringBuilder nonEventBody = new StringBuilder();
+    private boolean sawEvent;
+
+    ServerSentEventSubscriber(ObjectMapper objectMapper, Consumer<String> onDelta) {
+        this.objectMapper = objectMapper;
+        this.onDelta = onDelta;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(String line) {
+        if (line.startsWith("data:")) {
+            sawEvent = true;
+            String data = line.substring(5).trim();
+            if (data.equals("[DONE]")) {
+                return;
+            }
+            String delta = parseDelta(data);
+            if (!delta.isEmpty()) {
+                content.append(delta);
+                onDelta.accept(delta);
+            }
+        } else if (!line.isBlank() && !line.startsWith(":") && !line.startsWith("event:") && !line.startsWith("id:")) {
+            nonEventBody.append(line).append('\n');
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        // Surfaced through the HttpClient future
+    }
+
+    @Override
+    public void onComplete() {
+    }
+
+    boolean sawEvent() {
+        return sawEvent;
+    }
+
+    String content() {
+        return content.toString();
+    }
+
+    String nonEventBody() {
+        return nonEventBody.toString();
+    }
+
+    private String parseDelta(String data) {
+        try {
+            JsonNode root = objectMapper.readTree(data);
+            return root.path("choices").path(0).path("delta").path("content").asText("");
+        } catch (Exception e) {
+            return "";
+        }
+    }
+}
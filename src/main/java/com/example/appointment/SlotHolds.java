@@ -0,0 +1,131 @@
+package com.example.appointment;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Tentative reservations of slots a session has been offered. A held slot is out of every availability
+// view - the system prompt, the fast path, other sessions' bookings - until its holder books it, gives
+// it up, or the hold expires after ttl. Holds are soft state: they are not journaled, snapshots write
+// held slots as free, and a partitioned inventory does not place them.
+//
+// Expiry runs on one shared TimerWheel with 100ms ticks, so a hold costs a map entry and the Hold itself,
+// which is also its wheel entry, and never a scheduled task. Booking or releasing a hold just removes it
+// from the map; when its timeout comes round it finds itself gone and does nothing.
+public final class SlotHolds {
+    private static final TimerWheel WHEEL = new TimerWheel("slot-hold-timer", 100, 512);
+
+    private final SlotInventoryService inventory;
+    private final long ttlNanos;
+    private final int maxOffered;
+    // Every slot that is held in the inventory, and by whom
+    private final Map<Integer, Hold> holds = new ConcurrentHashMap<>();
+
+    private final AtomicLong placed = new AtomicLong();
+    private final AtomicLong converted = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    private final class Hold extends TimerWheel.Timeout {
+        final int slot;
+        final String holder;
+
+        Hold(int slot, String holder) {
+            this.slot = slot;
+            this.holder = holder;
+        }
+
+        @Override
+        protected void expire() {
+            if (holds.remove(slot, this)) {
+                inventory.release(slot);
+                expired.incrementAndGet();
+            }
+        }
+    }
+
+    // A ttl of zero turns holds off. A reply offering more than maxOffered slots is a listing rather
+    // than a proposal and places no holds.
+    public SlotHolds(SlotInventoryService inventory, long ttlMillis, int maxOffered) {
+        this.inventory = inventory;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxOffered = maxOffered;
+    }
+
+    public static SlotHolds fromEnvironment(SlotInventoryService inventory) {
+        return new SlotHolds(inventory,
+                Environment.intValue("SLOT_HOLD_SECONDS", 120) * 1000L,
+                Environment.intValue("SLOT_HOLD_MAX_OFFERED", 3));
+    }
+
+    public boolean enabled() {
+        return ttlNanos > 0;
+    }
+
+    int maxOffered() {
+        return maxOffered;
+    }
+
+    // Holds a free slot for the holder, or renews the holder's own hold on it; false if the slot is
+    // neither free nor already theirs
+    public boolean hold(int slot, String holder) {
+        if (!enabled()) {
+            return false;
+        }
+        Hold hold = new Hold(slot, holder);
+        Hold current = holds.get(slot);
+        if (current != null) {
+            // The replaced hold expires into nothing
+            if (!current.holder.equals(holder) || !holds.replace(slot, current, hold)) {
+                return false;
+            }
+        } else {
+            // The slot is held in the inventory before it is in the map and leaves the map before it is
+            // released, so whoever removes a hold from the map owns the slot's way out of the held state
+            if (!inventory.hold(slot)) {
+                return false;
+            }
+            holds.put(slot, hold);
+            placed.incrementAndGet();
+        }
+        WHEEL.schedule(hold, ttlNanos);
+        return true;
+    }
+
+    // Books the slot for the holder, who owns the booking: their own hold turns into it, anything else
+    // has to be free
+    public boolean book(int slot, String holder) {
+        Hold hold = holds.get(slot);
+        if (hold != null && hold.holder.equals(holder) && holds.remove(slot, hold)) {
+            converted.incrementAndGet();
+            return inventory.bookHeld(slot, holder);
+        }
+        return inventory.tryBook(slot, holder);
+    }
+
+    // Gives up the holder's hold on the slot, if they still have one
+    public void release(int slot, String holder) {
+        Hold hold = holds.get(slot);
+        if (hold != null && hold.holder.equals(holder) && holds.remove(slot, hold)) {
+            inventory.release(slot);
+            released.incrementAndGet();
+        }
+    }
+
+    public boolean isHeldBy(int slot, String holder) {
+        Hold hold = holds.get(slot);
+        return hold != null && hold.holder.equals(holder);
+    }
+
+    public Stats stats() {
+        return new Stats(placed.get(), converted.get(), released.get(), expired.get(), holds.size());
+    }
+
+    // converted, released and expired are the three ways a placed hold ends
+    public record Stats(long placed, long converted, long released, long expired, int active) {
+        public double conversionRate() {
+            return placed == 0 ? 0 : (double) converted / placed;
+        }
+    }
+}
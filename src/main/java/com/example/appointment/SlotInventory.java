@@ -0,0 +1,511 @@
+package com.example.appointment;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.ObjIntConsumer;
+
+// Immutable calendar of bookable slots. Each day is a set of minute-granular bitsets (free, held,
+// booked) plus the session that made each booking, and days are held in a PersistentVector indexed by
+// their distance from the first day, so lookups are a shallow trie walk plus a bit test, updates copy
+// one day and one trie path, and range queries walk the days in order skipping empty words with
+// numberOfTrailingZeros.
+public final class SlotInventory implements Serializable {
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int WORDS_PER_DAY = (MINUTES_PER_DAY + 63) / 64;
+
+    private static final SlotInventory EMPTY = new SlotInventory(0, PersistentVector.empty(), 0);
+
+    private final long firstDay;
+    private final PersistentVector<DaySlots> days;
+    private final int bookedCount;
+
+    private SlotInventory(long firstDay, PersistentVector<DaySlots> days, int bookedCount) {
+        this.firstDay = firstDay;
+        this.days = days;
+        this.bookedCount = bookedCount;
+    }
+
+    public static SlotInventory empty() {
+        return EMPTY;
+    }
+
+    public SlotInventory withSlots(LocalDate date, LocalTime... times) {
+        SlotInventory result = this;
+        for (LocalTime time : times) {
+            result = result.withSlot(date, time);
+        }
+        return result;
+    }
+
+    // Adds a free slot; a slot that is already free or booked is left as it is
+    public SlotInventory withSlot(LocalDate date, LocalTime time) {
+        return withSlot(SlotTime.of(date, time));
+    }
+
+    public SlotInventory withSlot(int slot) {
+        long epochDay = SlotTime.epochDay(slot);
+        SlotInventory target = ensureDay(epochDay);
+        int index = (int) (epochDay - target.firstDay);
+        DaySlots day = target.days.get(index);
+        int minute = SlotTime.minuteOfDay(slot);
+        if (day != null && (day.isFree(minute) || day.isHeld(minute) || day.isBooked(minute))) {
+            return target;
+        }
+        DaySlots updated = (day == null ? DaySlots.EMPTY : day).withFree(minute);
+        return new SlotInventory(target.firstDay, target.days.update(index, updated), target.bookedCount);
+    }
+
+    // Drops every slot, free or booked, on days in [fromDay, toDay)
+    SlotInventory withoutDays(long fromDay, long toDay) {
+        long start = Math.max(fromDay, firstDay);
+        long end = Math.min(toDay, firstDay + days.size());
+        PersistentVector<DaySlots> remaining = days;
+        int booked = bookedCount;
+        for (long d = start; d < end; d++) {
+            DaySlots day = remaining.get((int) (d - firstDay));
+            if (day != null) {
+                booked -= day.bookedCount;
+                remaining = remaining.update((int) (d - firstDay), null);
+            }
+        }
+        return remaining == days ? this : new SlotInventory(firstDay, remaining, booked);
+    }
+
+    public boolean isAvailable(LocalDate date, LocalTime time) {
+        return isAvailable(SlotTime.of(date, time));
+    }
+
+    public boolean isBooked(LocalDate date, LocalTime time) {
+        return isBooked(SlotTime.of(date, time));
+    }
+
+    public SlotInventory book(LocalDate date, LocalTime time) {
+        return book(SlotTime.of(date, time));
+    }
+
+    public SlotInventory cancel(LocalDate date, LocalTime time) {
+        return cancel(SlotTime.of(date, time));
+    }
+
+    // Slots as SlotTime epoch minutes, the form the message protocol uses
+    public boolean isAvailable(int slot) {
+        DaySlots day = dayAt(SlotTime.epochDay(slot));
+        return day != null && day.isFree(SlotTime.minuteOfDay(slot));
+    }
+
+    public boolean isBooked(int slot) {
+        DaySlots day = dayAt(SlotTime.epochDay(slot));
+        return day != null && day.isBooked(SlotTime.minuteOfDay(slot));
+    }
+
+    // The session that booked the slot, or null when it is not booked or was booked without one
+    public String owner(int slot) {
+        DaySlots day = dayAt(SlotTime.epochDay(slot));
+        return day == null ? null : day.ownerOf(SlotTime.minuteOfDay(slot));
+    }
+
+    // A booking without an owner
+    public SlotInventory book(int slot) {
+        return book(slot, null);
+    }
+
+    // Returns this inventory unchanged when the slot is not free
+    public SlotInventory book(int slot, String owner) {
+        long epochDay = SlotTime.epochDay(slot);
+        DaySlots day = dayAt(epochDay);
+        int minute = SlotTime.minuteOfDay(slot);
+        if (day == null || !day.isFree(minute)) {
+            return this;
+        }
+        int index = (int) (epochDay - firstDay);
+        return new SlotInventory(firstDay, days.update(index, day.withBooked(minute, owner)), bookedCount + 1);
+    }
+
+    // Cancels whoever's booking it is
+    public SlotInventory cancel(int slot) {
+        return cancel(slot, null);
+    }
+
+    // Returns this inventory unchanged when the slot is not booked, or is booked by a session other than
+    // requester. A null requester may cancel any booking, and anyone may cancel one without an owner.
+    public SlotInventory cancel(int slot, String requester) {
+        long epochDay = SlotTime.epochDay(slot);
+        DaySlots day = dayAt(epochDay);
+        int minute = SlotTime.minuteOfDay(slot);
+        if (day == null || !day.isBooked(minute)) {
+            return this;
+        }
+        String owner = day.ownerOf(minute);
+        if (requester != null && owner != null && !owner.equals(requester)) {
+            return this;
+        }
+        int index = (int) (epochDay - firstDay);
+        return new SlotInventory(firstDay, days.update(index, day.withFree(minute)), bookedCount - 1);
+    }
+
+    // A held slot is neither free nor booked: it is out of every availability view until the holder books
+    // it or the hold is released. Holds are soft state, see SlotHolds; each of these returns this
+    // inventory unchanged when the slot is not in the state it expects.
+    boolean isHeld(int slot) {
+        DaySlots day = dayAt(SlotTime.epochDay(slot));
+        return day != null && day.isHeld(SlotTime.minuteOfDay(slot));
+    }
+
+    SlotInventory hold(int slot) {
+        long epochDay = SlotTime.epochDay(slot);
+        DaySlots day = dayAt(epochDay);
+        int minute = SlotTime.minuteOfDay(slot);
+        if (day == null || !day.isFree(minute)) {
+            return this;
+        }
+        int index = (int) (epochDay - firstDay);
+        return new SlotInventory(firstDay, days.update(index, day.withHeld(minute)), bookedCount);
+    }
+
+    SlotInventory bookHeld(int slot, String owner) {
+        long epochDay = SlotTime.epochDay(slot);
+        DaySlots day = dayAt(epochDay);
+        int minute = SlotTime.minuteOfDay(slot);
+        if (day == null || !day.isHeld(minute)) {
+            return this;
+        }
+        int index = (int) (epochDay - firstDay);
+        return new SlotInventory(firstDay, days.update(index, day.withHeldBooked(minute, owner)), bookedCount + 1);
+    }
+
+    SlotInventory release(int slot) {
+        long epochDay = SlotTime.epochDay(slot);
+        DaySlots day = dayAt(epochDay);
+        int minute = SlotTime.minuteOfDay(slot);
+        if (day == null || !day.isHeld(minute)) {
+            return this;
+        }
+        int index = (int) (epochDay - firstDay);
+        return new SlotInventory(firstDay, days.update(index, day.withReleased(minute)), bookedCount);
+    }
+
+    // The day with its held slots free again: what snapshots and range moves carry, since holds do not
+    // outlive the process or the partition that placed them
+    SlotInventory withoutHolds(long epochDay) {
+        DaySlots day = dayAt(epochDay);
+        if (day == null || day.heldCount == 0) {
+            return this;
+        }
+        int index = (int) (epochDay - firstDay);
+        return new SlotInventory(firstDay, days.update(index, day.withoutHolds()), bookedCount);
+    }
+
+    public int bookedCount() {
+        return bookedCount;
+    }
+
+    // Epoch-day range [firstEpochDay, endEpochDay) covered by this inventory
+    long firstEpochDay() {
+        return firstDay;
+    }
+
+    long endEpochDay() {
+        return firstDay + days.size();
+    }
+
+    // First free slot strictly after the given instant
+    public Optional<LocalDateTime> nextFreeSlot(LocalDateTime after) {
+        long epochDay = Math.max(after.toLocalDate().toEpochDay(), firstDay);
+        int fromMinute = epochDay == after.toLocalDate().toEpochDay() ? minuteOf(after.toLocalTime()) + 1 : 0;
+        for (long d = epochDay; d < firstDay + days.size(); d++, fromMinute = 0) {
+            int minute = nextFreeMinute(d, fromMinute);
+            if (minute >= 0) {
+                return Optional.of(LocalDate.ofEpochDay(d).atTime(timeOf(minute)));
+            }
+        }
+        return Optional.empty();
+    }
+
+    // Identity of the day's immutable slot data: the same object until that day is next changed
+    Object dayToken(long epochDay) {
+        return dayAt(epochDay);
+    }
+
+    // First free minute of the day at or after fromMinute, or -1
+    int nextFreeMinute(long epochDay, int fromMinute) {
+        DaySlots day = dayAt(epochDay);
+        if (day == null || day.freeCount == 0) {
+            return -1;
+        }
+        return DaySlots.nextSetBit(day.free, fromMinute);
+    }
+
+    // All free slots on days in [from, to), in chronological order
+    public List<LocalDateTime> freeSlots(LocalDate from, LocalDate to) {
+        List<LocalDateTime> result = new ArrayList<>();
+        forEachFreeDay(from, to, (date, times) -> times.forEach(t -> result.add(date.atTime(t))));
+        return result;
+    }
+
+    public void forEachFreeDay(BiConsumer<LocalDate, List<LocalTime>> action) {
+        forEachDay(firstDay, firstDay + days.size(), true, action);
+    }
+
+    public void forEachFreeDay(LocalDate from, LocalDate to, BiConsumer<LocalDate, List<LocalTime>> action) {
+        forEachDay(from.toEpochDay(), to.toEpochDay(), true, action);
+    }
+
+    public void forEachBookedDay(BiConsumer<LocalDate, List<LocalTime>> action) {
+        forEachDay(firstDay, firstDay + days.size(), false, action);
+    }
+
+    public void forEachBookedDay(LocalDate from, LocalDate to, BiConsumer<LocalDate, List<LocalTime>> action) {
+        forEachDay(from.toEpochDay(), to.toEpochDay(), false, action);
+    }
+
+    // Free or booked slots on days in [fromDay, toDay) as SlotTime epoch minutes, in chronological order,
+    // without building a date or time object per slot
+    void forEachFreeSlot(long fromDay, long toDay, IntConsumer action) {
+        forEachSlot(fromDay, toDay, true, action);
+    }
+
+    void forEachBookedSlot(long fromDay, long toDay, IntConsumer action) {
+        forEachSlot(fromDay, toDay, false, action);
+    }
+
+    // Booked slots on days in [fromDay, toDay) with the session that booked each (null if none), in order
+    void forEachBooking(long fromDay, long toDay, ObjIntConsumer<String> action) {
+        long start = Math.max(fromDay, firstDay);
+        long end = Math.min(toDay, firstDay + days.size());
+        for (long d = start; d < end; d++) {
+            DaySlots day = days.get((int) (d - firstDay));
+            if (day == null || day.bookedCount == 0) {
+                continue;
+            }
+            int dayStart = SlotTime.of(d, 0);
+            int k = 0;
+            for (int m = DaySlots.nextSetBit(day.booked, 0); m >= 0; m = DaySlots.nextSetBit(day.booked, m + 1)) {
+                action.accept(day.owners[k++], dayStart + m);
+            }
+        }
+    }
+
+    private void forEachSlot(long fromDay, long toDay, boolean free, IntConsumer action) {
+        long start = Math.max(fromDay, firstDay);
+        long end = Math.min(toDay, firstDay + days.size());
+        for (long d = start; d < end; d++) {
+            DaySlots day = days.get((int) (d - firstDay));
+            if (day == null || (free ? day.freeCount : day.bookedCount) == 0) {
+                continue;
+            }
+            long[] bits = free ? day.free : day.booked;
+            int dayStart = SlotTime.of(d, 0);
+            for (int m = DaySlots.nextSetBit(bits, 0); m >= 0; m = DaySlots.nextSetBit(bits, m + 1)) {
+                action.accept(dayStart + m);
+            }
+        }
+    }
+
+    // Free or booked slots of the day whose minute is in [fromMinute, toMinute), written to out from
+    // position on until it is full; returns the position after the last one written
+    int collectSlots(long epochDay, int fromMinute, int toMinute, boolean free, int[] out, int position) {
+        DaySlots day = dayAt(epochDay);
+        if (day == null || (free ? day.freeCount : day.bookedCount) == 0) {
+            return position;
+        }
+        long[] bits = free ? day.free : day.booked;
+        int dayStart = SlotTime.of(epochDay, 0);
+        for (int m = DaySlots.nextSetBit(bits, Math.max(fromMinute, 0));
+                m >= 0 && m < toMinute && position < out.length; m = DaySlots.nextSetBit(bits, m + 1)) {
+            out[position++] = dayStart + m;
+        }
+        return position;
+    }
+
+    private void forEachDay(long fromDay, long toDay, boolean free, BiConsumer<LocalDate, List<LocalTime>> action) {
+        long start = Math.max(fromDay, firstDay);
+        long end = Math.min(toDay, firstDay + days.size());
+        for (long d = start; d < end; d++) {
+            DaySlots day = days.get((int) (d - firstDay));
+            if (day == null || (free ? day.freeCount : day.bookedCount) == 0) {
+                continue;
+            }
+            long[] bits = free ? day.free : day.booked;
+            List<LocalTime> times = new ArrayList<>(free ? day.freeCount : day.bookedCount);
+            for (int m = DaySlots.nextSetBit(bits, 0); m >= 0; m = DaySlots.nextSetBit(bits, m + 1)) {
+                times.add(timeOf(m));
+            }
+            action.accept(LocalDate.ofEpochDay(d), times);
+        }
+    }
+
+    private DaySlots dayAt(long epochDay) {
+        long index = epochDay - firstDay;
+        return index < 0 || index >= days.size() ? null : days.get((int) index);
+    }
+
+    // Grows the day vector so that it covers epochDay. Growing forwards appends; growing backwards
+    // has to re-base the vector, which is linear but only happens while the calendar is being loaded.
+    private SlotInventory ensureDay(long epochDay) {
+        if (days.isEmpty()) {
+            return new SlotInventory(epochDay, PersistentVector.<DaySlots>empty().append(null), bookedCount);
+        }
+        if (epochDay < firstDay) {
+            PersistentVector<DaySlots> rebased = PersistentVector.empty();
+            for (long d = epochDay; d < firstDay; d++) {
+                rebased = rebased.append(null);
+            }
+            for (DaySlots day : days) {
+                rebased = rebased.append(day);
+            }
+            return new SlotInventory(epochDay, rebased, bookedCount);
+        }
+        PersistentVector<DaySlots> grown = days;
+        while (firstDay + grown.size() <= epochDay) {
+            grown = grown.append(null);
+        }
+        return grown == days ? this : new SlotInventory(firstDay, grown, bookedCount);
+    }
+
+    static int minuteOf(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    static LocalTime timeOf(int minute) {
+        return LocalTime.of(minute / 60, minute % 60);
+    }
+
+    // One day's slots. Instances are never mutated; every change clones the affected bitset words.
+    private static final class DaySlots implements Serializable {
+        static final DaySlots EMPTY = new DaySlots(
+                new long[WORDS_PER_DAY], new long[WORDS_PER_DAY], new long[WORDS_PER_DAY], new String[0], 0, 0, 0);
+
+        final long[] free;
+        final long[] held;
+        final long[] booked;
+        // Who booked each booked minute, in minute order (null for a booking without an owner)
+        final String[] owners;
+        final int freeCount;
+        final int heldCount;
+        final int bookedCount;
+
+        DaySlots(long[] free, long[] held, long[] booked, String[] owners, int freeCount, int heldCount,
+                int bookedCount) {
+            this.free = free;
+            this.held = held;
+            this.booked = booked;
+            this.owners = owners;
+            this.freeCount = freeCount;
+            this.heldCount = heldCount;
+            this.bookedCount = bookedCount;
+        }
+
+        boolean isFree(int minute) {
+            return (free[minute >>> 6] & (1L << minute)) != 0;
+        }
+
+        boolean isHeld(int minute) {
+            return (held[minute >>> 6] & (1L << minute)) != 0;
+        }
+
+        boolean isBooked(int minute) {
+            return (booked[minute >>> 6] & (1L << minute)) != 0;
+        }
+
+        String ownerOf(int minute) {
+            return isBooked(minute) ? owners[bookedBefore(minute)] : null;
+        }
+
+        DaySlots withFree(int minute) {
+            if (!isBooked(minute)) {
+                return new DaySlots(set(free, minute), held, booked, owners, freeCount + 1, heldCount, bookedCount);
+            }
+            return new DaySlots(set(free, minute), held, clear(booked, minute), without(owners, bookedBefore(minute)),
+                    freeCount + 1, heldCount, bookedCount - 1);
+        }
+
+        DaySlots withBooked(int minute, String owner) {
+            return new DaySlots(clear(free, minute), held, set(booked, minute), with(owners, bookedBefore(minute), owner),
+                    freeCount - 1, heldCount, bookedCount + 1);
+        }
+
+        DaySlots withHeld(int minute) {
+            return new DaySlots(clear(free, minute), set(held, minute), booked, owners,
+                    freeCount - 1, heldCount + 1, bookedCount);
+        }
+
+        DaySlots withHeldBooked(int minute, String owner) {
+            return new DaySlots(free, clear(held, minute), set(booked, minute), with(owners, bookedBefore(minute), owner),
+                    freeCount, heldCount - 1, bookedCount + 1);
+        }
+
+        DaySlots withReleased(int minute) {
+            return new DaySlots(set(free, minute), clear(held, minute), booked, owners,
+                    freeCount + 1, heldCount - 1, bookedCount);
+        }
+
+        DaySlots withoutHolds() {
+            long[] freed = free.clone();
+            for (int i = 0; i < freed.length; i++) {
+                freed[i] |= held[i];
+            }
+            return new DaySlots(freed, EMPTY.held, booked, owners, freeCount + heldCount, 0, bookedCount);
+        }
+
+        // Booked minutes before this one: the minute's index into owners
+        private int bookedBefore(int minute) {
+            int word = minute >>> 6;
+            int count = Long.bitCount(booked[word] & ((1L << minute) - 1));
+            for (int i = 0; i < word; i++) {
+                count += Long.bitCount(booked[i]);
+            }
+            return count;
+        }
+
+        private static String[] with(String[] owners, int index, String owner) {
+            String[] copy = new String[owners.length + 1];
+            System.arraycopy(owners, 0, copy, 0, index);
+            copy[index] = owner;
+            System.arraycopy(owners, index, copy, index + 1, owners.length - index);
+            return copy;
+        }
+
+        private static String[] without(String[] owners, int index) {
+            String[] copy = new String[owners.length - 1];
+            System.arraycopy(owners, 0, copy, 0, index);
+            System.arraycopy(owners, index + 1, copy, index, copy.length - index);
+            return copy;
+        }
+
+        private static long[] set(long[] bits, int minute) {
+            long[] copy = bits.clone();
+            copy[minute >>> 6] |= 1L << minute;
+            return copy;
+        }
+
+        private static long[] clear(long[] bits, int minute) {
+            long[] copy = bits.clone();
+            copy[minute >>> 6] &= ~(1L << minute);
+            return copy;
+        }
+
+        static int nextSetBit(long[] bits, int from) {
+            int word = from >>> 6;
+            if (word >= bits.length) {
+                return -1;
+            }
+            long current = bits[word] & (-1L << from);
+            while (true) {
+                if (current != 0) {
+                    return word * 64 + Long.numberOfTrailingZeros(current);
+                }
+                if (++word == bits.length) {
+                    return -1;
+                }
+                current = bits[word];
+            }
+        }
+    }
+}
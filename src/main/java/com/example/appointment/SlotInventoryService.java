@@ -0,0 +1,478 @@
+package com.example.appointment;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+// Process-wide slot inventory shared by all conversation actors. Days are striped across independent
+// SlotInventory snapshots; book and cancel are compare-and-set loops on the owning stripe, so sessions
+// touching different days never contend and no slot can be booked twice. Each booking remembers the
+// session that made it, and only that session can cancel it.
+public final class SlotInventoryService {
+    private final AtomicReferenceArray<SlotInventory> stripes;
+    // Bumped after every successful book or cancel, so caches can tell whether the calendar changed
+    private final AtomicLong version = new AtomicLong();
+    // Bumped by holds and releases, which change what is offered but not the calendar
+    private final AtomicLong holdChanges = new AtomicLong();
+    private final AppointmentJournal journal;
+    private final Object[] stripeLocks;
+
+    // A block of days lifted out of one inventory to be added to another; owners[i] booked booked[i]
+    record Slots(int[] free, int[] booked, String[] owners) {}
+
+    private interface Transition {
+        SlotInventory apply(SlotInventory inventory, int slot);
+    }
+
+    interface DayVisitor {
+        void visit(long epochDay, Object token, SlotInventory owner);
+    }
+
+    public SlotInventoryService(SlotInventory initial) {
+        this(initial, Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    public SlotInventoryService(SlotInventory initial, int stripeCount) {
+        this(initial, stripeCount, AppointmentJournal.NONE);
+    }
+
+    // Every successful book and cancel is reported to the journal
+    public SlotInventoryService(SlotInventory initial, int stripeCount, AppointmentJournal journal) {
+        SlotInventory[] split = new SlotInventory[stripeCount];
+        Arrays.fill(split, SlotInventory.empty());
+        initial.forEachFreeDay((date, times) -> {
+            int stripe = stripeFor(date.toEpochDay(), stripeCount);
+            split[stripe] = split[stripe].withSlots(date, times.toArray(LocalTime[]::new));
+        });
+        initial.forEachBooking(initial.firstEpochDay(), initial.endEpochDay(), (owner, slot) -> {
+            int stripe = stripeFor(SlotTime.epochDay(slot), stripeCount);
+            split[stripe] = split[stripe].withSlot(slot).book(slot, owner);
+        });
+        this.stripes = new AtomicReferenceArray<>(split);
+        this.journal = journal;
+        this.stripeLocks = new Object[stripeCount];
+        Arrays.setAll(stripeLocks, i -> new Object());
+    }
+
+    public boolean isAvailable(int slot) {
+        return stripe(SlotTime.epochDay(slot)).isAvailable(slot);
+    }
+
+    public boolean isBooked(int slot) {
+        return stripe(SlotTime.epochDay(slot)).isBooked(slot);
+    }
+
+    // A booking without an owner
+    public boolean tryBook(int slot) {
+        return tryBook(slot, null);
+    }
+
+    // Atomically reserves the slot for owner if it is still free; false means another session got there first
+    public boolean tryBook(int slot, String owner) {
+        return change(slot, (inventory, s) -> inventory.book(s, owner), true, owner);
+    }
+
+    // Cancels whoever's booking it is
+    public boolean cancel(int slot) {
+        return cancel(slot, null);
+    }
+
+    // Atomically releases a booked slot; false means there was no such booking, or it is not requester's
+    // (see SlotInventory.cancel)
+    public boolean cancel(int slot, String requester) {
+        return change(slot, (inventory, s) -> inventory.cancel(s, requester), false, null);
+    }
+
+    // The session that booked the slot, or null
+    public String owner(int slot) {
+        return stripe(SlotTime.epochDay(slot)).owner(slot);
+    }
+
+    // Holds for SlotHolds: hold takes a free slot out of availability, bookHeld books a held slot for its
+    // holder and is journaled like tryBook, release frees a held slot. Holds themselves are not journaled.
+    boolean hold(int slot) {
+        return compareAndSet(stripeFor(SlotTime.epochDay(slot), stripes.length()), slot, SlotInventory::hold,
+                holdChanges);
+    }
+
+    boolean bookHeld(int slot, String owner) {
+        return change(slot, (inventory, s) -> inventory.bookHeld(s, owner), true, owner);
+    }
+
+    boolean release(int slot) {
+        return compareAndSet(stripeFor(SlotTime.epochDay(slot), stripes.length()), slot, SlotInventory::release,
+                holdChanges);
+    }
+
+    public boolean isHeld(int slot) {
+        return stripe(SlotTime.epochDay(slot)).isHeld(slot);
+    }
+
+    // Books (or cancels) every slot with one compare-and-set per stripe instead of one per slot: each
+    // stripe's share is applied in order to one snapshot and published at once. succeeded[i] says whether
+    // slots[i] changed, so a slot listed twice is booked only the first time. owner books the slots, or
+    // is the requester of the cancellations, as in tryBook and cancel.
+    public void changeAll(int[] slots, boolean book, String owner, boolean[] succeeded) {
+        int stripeCount = stripes.length();
+        // Counting sort of the positions by stripe, keeping their order within each stripe
+        int[] bounds = new int[stripeCount + 1];
+        for (int slot : slots) {
+            bounds[stripeFor(SlotTime.epochDay(slot), stripeCount) + 1]++;
+        }
+        for (int i = 0; i < stripeCount; i++) {
+            bounds[i + 1] += bounds[i];
+        }
+        int[] next = Arrays.copyOf(bounds, stripeCount);
+        int[] order = new int[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            order[next[stripeFor(SlotTime.epochDay(slots[i]), stripeCount)]++] = i;
+        }
+        for (int index = 0; index < stripeCount; index++) {
+            if (bounds[index] == bounds[index + 1]) {
+                continue;
+            }
+            if (journal == AppointmentJournal.NONE) {
+                changeStripe(index, slots, order, bounds[index], bounds[index + 1], book, owner, succeeded);
+                continue;
+            }
+            // Journaled the same way as a single change, in the order applied
+            synchronized (stripeLocks[index]) {
+                changeStripe(index, slots, order, bounds[index], bounds[index + 1], book, owner, succeeded);
+                for (int k = bounds[index]; k < bounds[index + 1]; k++) {
+                    int slot = slots[order[k]];
+                    if (!succeeded[order[k]]) {
+                        continue;
+                    }
+                    if (book) {
+                        journal.slotBooked(SlotTime.epochDay(slot), SlotTime.minuteOfDay(slot), owner);
+                    } else {
+                        journal.slotCancelled(SlotTime.epochDay(slot), SlotTime.minuteOfDay(slot));
+                    }
+                }
+            }
+        }
+    }
+
+    private void changeStripe(int index, int[] slots, int[] order, int from, int to, boolean book, String owner,
+            boolean[] succeeded) {
+        while (true) {
+            SlotInventory current = stripes.get(index);
+            SlotInventory updated = current;
+            for (int k = from; k < to; k++) {
+                int slot = slots[order[k]];
+                SlotInventory changed = book ? updated.book(slot, owner) : updated.cancel(slot, owner);
+                succeeded[order[k]] = changed != updated;
+                updated = changed;
+            }
+            if (updated == current || stripes.compareAndSet(index, current, updated)) {
+                if (updated != current) {
+                    version.incrementAndGet();
+                }
+                return;
+            }
+        }
+    }
+
+    // Fills out with free (or booked) slots on days [fromDay, toDay) whose minute of day is in
+    // [fromMinute, toMinute), in order and strictly after the cursor slot; returns how many it found.
+    // Reads one snapshot of the stripes, so each day on a page is consistent in itself.
+    public int slots(long fromDay, long toDay, int fromMinute, int toMinute, boolean booked, int cursor, int[] out) {
+        SlotInventory[] snapshot = snapshot();
+        long start = Math.max(fromDay, startEpochDay(snapshot));
+        long end = Math.min(toDay, endEpochDay(snapshot));
+        int cursorMinute = -1;
+        if (cursor != SlotTime.INVALID && SlotTime.epochDay(cursor) >= start) {
+            start = SlotTime.epochDay(cursor);
+            cursorMinute = SlotTime.minuteOfDay(cursor);
+        }
+        int found = 0;
+        for (long d = start; d < end && found < out.length; d++, cursorMinute = -1) {
+            found = snapshot[stripeFor(d, snapshot.length)]
+                    .collectSlots(d, Math.max(fromMinute, cursorMinute + 1), toMinute, !booked, out, found);
+        }
+        return found;
+    }
+
+    // Removes every slot on days in [fromDay, toDay) and returns them; InventoryCluster uses this and
+    // addSlots to move a range of days from one partition to another. Not journaled.
+    Slots takeDays(long fromDay, long toDay) {
+        IntStream.Builder free = IntStream.builder();
+        IntStream.Builder booked = IntStream.builder();
+        List<String> owners = new ArrayList<>();
+        for (long d = fromDay; d < toDay; d++) {
+            int index = stripeFor(d, stripes.length());
+            synchronized (stripeLocks[index]) {
+                while (true) {
+                    SlotInventory current = stripes.get(index);
+                    SlotInventory updated = current.withoutDays(d, d + 1);
+                    if (updated == current) {
+                        break;
+                    }
+                    if (stripes.compareAndSet(index, current, updated)) {
+                        // Held slots move as free ones
+                        SlotInventory moved = current.withoutHolds(d);
+                        moved.forEachFreeSlot(d, d + 1, free::add);
+                        moved.forEachBooking(d, d + 1, (owner, slot) -> {
+                            booked.add(slot);
+                            owners.add(owner);
+                        });
+                        version.incrementAndGet();
+                        break;
+                    }
+                }
+            }
+        }
+        return new Slots(free.build().toArray(), booked.build().toArray(), owners.toArray(String[]::new));
+    }
+
+    // The slots on days in [fromDay, toDay), left in place
+    Slots copyDays(long fromDay, long toDay) {
+        IntStream.Builder free = IntStream.builder();
+        IntStream.Builder booked = IntStream.builder();
+        List<String> owners = new ArrayList<>();
+        for (long d = fromDay; d < toDay; d++) {
+            SlotInventory stripe = stripe(d).withoutHolds(d);
+            stripe.forEachFreeSlot(d, d + 1, free::add);
+            stripe.forEachBooking(d, d + 1, (owner, slot) -> {
+                booked.add(slot);
+                owners.add(owner);
+            });
+        }
+        return new Slots(free.build().toArray(), booked.build().toArray(), owners.toArray(String[]::new));
+    }
+
+    void addSlots(Slots slots) {
+        for (int slot : slots.free()) {
+            add(slot, false, null);
+        }
+        for (int i = 0; i < slots.booked().length; i++) {
+            add(slots.booked()[i], true, slots.owners()[i]);
+        }
+    }
+
+    private void add(int slot, boolean booked, String owner) {
+        int index = stripeFor(SlotTime.epochDay(slot), stripes.length());
+        synchronized (stripeLocks[index]) {
+            while (true) {
+                SlotInventory current = stripes.get(index);
+                SlotInventory updated = current.withSlot(slot);
+                if (booked) {
+                    updated = updated.book(slot, owner);
+                }
+                if (updated == current) {
+                    return;
+                }
+                if (stripes.compareAndSet(index, current, updated)) {
+                    version.incrementAndGet();
+                    return;
+                }
+            }
+        }
+    }
+
+    public long version() {
+        return version.get();
+    }
+
+    // Moves with version and with every hold or release, so it changes whenever availability does. The
+    // system prompt renders against this; the response cache keys on version, so holds coming and going
+    // do not throw away its answers.
+    public long availabilityVersion() {
+        return version.get() + holdChanges.get();
+    }
+
+    public int bookedCount() {
+        int count = 0;
+        for (int i = 0; i < stripes.length(); i++) {
+            count += stripes.get(i).bookedCount();
+        }
+        return count;
+    }
+
+    public Optional<LocalDateTime> nextFreeSlot(LocalDateTime after) {
+        SlotInventory[] snapshot = snapshot();
+        long end = endEpochDay(snapshot);
+        long afterDay = after.toLocalDate().toEpochDay();
+        int fromMinute = SlotInventory.minuteOf(after.toLocalTime()) + 1;
+        long start = startEpochDay(snapshot);
+        if (start > afterDay) {
+            afterDay = start;
+            fromMinute = 0;
+        }
+        for (long d = afterDay; d < end; d++, fromMinute = 0) {
+            int minute = snapshot[stripeFor(d, snapshot.length)].nextFreeMinute(d, fromMinute);
+            if (minute >= 0) {
+                return Optional.of(LocalDate.ofEpochDay(d).atTime(SlotInventory.timeOf(minute)));
+            }
+        }
+        return Optional.empty();
+    }
+
+    // Days are visited in chronological order; each stripe is read once, but stripes are not read atomically together
+    public void forEachFreeDay(BiConsumer<LocalDate, List<LocalTime>> action) {
+        forEachDay(true, action);
+    }
+
+    public void forEachBookedDay(BiConsumer<LocalDate, List<LocalTime>> action) {
+        forEachDay(false, action);
+    }
+
+    // Booked slots as SlotTime epoch minutes, in chronological order
+    public void forEachBookedSlot(IntConsumer action) {
+        SlotInventory[] snapshot = snapshot();
+        long end = endEpochDay(snapshot);
+        for (long d = startEpochDay(snapshot); d < end; d++) {
+            snapshot[stripeFor(d, snapshot.length)].forEachBookedSlot(d, d + 1, action);
+        }
+    }
+
+    // The slots owner has booked, in chronological order
+    public void forEachBookedSlot(String owner, IntConsumer action) {
+        SlotInventory[] snapshot = snapshot();
+        long end = endEpochDay(snapshot);
+        for (long d = startEpochDay(snapshot); d < end; d++) {
+            forEachBookedSlot(snapshot[stripeFor(d, snapshot.length)], d, owner, action);
+        }
+    }
+
+    // Free or booked slots on one day, read from that day's stripe alone
+    void forEachFreeSlot(long epochDay, IntConsumer action) {
+        stripe(epochDay).forEachFreeSlot(epochDay, epochDay + 1, action);
+    }
+
+    void forEachBookedSlot(long epochDay, IntConsumer action) {
+        stripe(epochDay).forEachBookedSlot(epochDay, epochDay + 1, action);
+    }
+
+    // The slots owner has booked on one day
+    void forEachBookedSlot(long epochDay, String owner, IntConsumer action) {
+        forEachBookedSlot(stripe(epochDay), epochDay, owner, action);
+    }
+
+    private static void forEachBookedSlot(SlotInventory stripe, long epochDay, String owner, IntConsumer action) {
+        stripe.forEachBooking(epochDay, epochDay + 1, (bookedBy, slot) -> {
+            if (owner.equals(bookedBy)) {
+                action.accept(slot);
+            }
+        });
+    }
+
+    private void forEachDay(boolean free, BiConsumer<LocalDate, List<LocalTime>> action) {
+        SlotInventory[] snapshot = snapshot();
+        long start = startEpochDay(snapshot);
+        long end = endEpochDay(snapshot);
+        for (long d = start; d < end; d++) {
+            SlotInventory stripe = snapshot[stripeFor(d, snapshot.length)];
+            LocalDate date = LocalDate.ofEpochDay(d);
+            if (free) {
+                stripe.forEachFreeDay(date, date.plusDays(1), action);
+            } else {
+                stripe.forEachBookedDay(date, date.plusDays(1), action);
+            }
+        }
+    }
+
+    // Visits every calendar day in order with a token that stays identical until that day changes
+    void forEachDay(DayVisitor visitor) {
+        forEachDay(Long.MIN_VALUE, Long.MAX_VALUE, visitor);
+    }
+
+    // The same for days in [fromDay, toDay)
+    void forEachDay(long fromDay, long toDay, DayVisitor visitor) {
+        SlotInventory[] snapshot = snapshot();
+        long end = Math.min(toDay, endEpochDay(snapshot));
+        for (long d = Math.max(fromDay, startEpochDay(snapshot)); d < end; d++) {
+            SlotInventory owner = snapshot[stripeFor(d, snapshot.length)];
+            visitor.visit(d, owner.dayToken(d), owner);
+        }
+    }
+
+    // owner is what a booking is journaled with
+    private boolean change(int slot, Transition transition, boolean book, String owner) {
+        long epochDay = SlotTime.epochDay(slot);
+        int index = stripeFor(epochDay, stripes.length());
+        if (journal == AppointmentJournal.NONE) {
+            return compareAndSet(index, slot, transition, version);
+        }
+        // Journaled: each change must reach the journal in the order it was applied, or replay could
+        // cancel before it books, so writers to one stripe take turns. Other stripes are unaffected.
+        synchronized (stripeLocks[index]) {
+            if (!compareAndSet(index, slot, transition, version)) {
+                return false;
+            }
+            int minute = SlotTime.minuteOfDay(slot);
+            if (book) {
+                journal.slotBooked(epochDay, minute, owner);
+            } else {
+                journal.slotCancelled(epochDay, minute);
+            }
+            return true;
+        }
+    }
+
+    private boolean compareAndSet(int index, int slot, Transition transition, AtomicLong counter) {
+        while (true) {
+            SlotInventory current = stripes.get(index);
+            SlotInventory updated = transition.apply(current, slot);
+            if (updated == current) {
+                return false;
+            }
+            if (stripes.compareAndSet(index, current, updated)) {
+                counter.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    // Epoch-day range [startEpochDay, endEpochDay) the calendar covers; empty when start is not before end
+    long startEpochDay() {
+        return startEpochDay(snapshot());
+    }
+
+    long endEpochDay() {
+        return endEpochDay(snapshot());
+    }
+
+    private SlotInventory[] snapshot() {
+        SlotInventory[] snapshot = new SlotInventory[stripes.length()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = stripes.get(i);
+        }
+        return snapshot;
+    }
+
+    private static long startEpochDay(SlotInventory[] snapshot) {
+        long start = Long.MAX_VALUE;
+        for (SlotInventory stripe : snapshot) {
+            if (stripe.endEpochDay() > stripe.firstEpochDay()) {
+                start = Math.min(start, stripe.firstEpochDay());
+            }
+        }
+        return start;
+    }
+
+    private static long endEpochDay(SlotInventory[] snapshot) {
+        long end = Long.MIN_VALUE;
+        for (SlotInventory stripe : snapshot) {
+            end = Math.max(end, stripe.endEpochDay());
+        }
+        return end;
+    }
+
+    private SlotInventory stripe(long epochDay) {
+        return stripes.get(stripeFor(epochDay, stripes.length()));
+    }
+
+    private static int stripeFor(long epochDay, int stripeCount) {
+        return (int) Math.floorMod(epochDay, (long) stripeCount);
+    }
+}
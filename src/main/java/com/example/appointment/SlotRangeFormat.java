@@ -0,0 +1,305 @@
+package com.example.appointment;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Compact text form of a day's free slots for the system prompt. Regular runs collapse into ranges with
+// a step, naming the few times missing from them, and whatever is left is listed as it is:
+//
+//   2025-11-05: 09:00–16:30 every 30m except 12:00, 12:30; 09:20–16:40 every 20m; 17:15, 17:40
+//
+// A time is free when any part lists it, so ranges may overlap - a day that is the union of several
+// providers' grids becomes one range per grid. Ranges include both ends, parts are separated by "; "
+// and ordered by their first time, and a part is either a range or a list of times.
+//
+// The encoder is greedy: it keeps adding the range that saves the most characters over listing the
+// times it newly covers, trying every uncovered time as a start with the common appointment steps and
+// the gaps to the next few times, and lists what no range is worth covering. The result is never longer
+// than the plain list by more than the separators, and parseDay reads it back exactly.
+final class SlotRangeFormat {
+    private static final String DASH = "–";
+    private static final String EVERY = " every ";
+    private static final String EXCEPT = " except ";
+    private static final String PART = "; ";
+    private static final String TIME = ", ";
+    // "hh:mm, " - what each listed time costs
+    private static final int LISTED = 5 + TIME.length();
+    private static final int[] COMMON_STEPS = { 5, 10, 15, 20, 30, 45, 60, 90, 120 };
+    // A range may skip at most this many steps in a row
+    private static final int MAX_MISSING = 2;
+    // How many of the following times suggest a step besides the common ones
+    private static final int CANDIDATE_GAPS = 3;
+
+    private SlotRangeFormat() {
+    }
+
+    private record Range(int first, int last, int step) {}
+
+    // Appends minutes[0, count), which must be ascending and distinct
+    static StringBuilder appendDay(StringBuilder out, int[] minutes, int count) {
+        boolean[] free = new boolean[SlotTime.MINUTES_PER_DAY];
+        boolean[] covered = new boolean[SlotTime.MINUTES_PER_DAY];
+        for (int i = 0; i < count; i++) {
+            free[minutes[i]] = true;
+        }
+        // parts[minute] is the range starting there, if any
+        Range[] parts = new Range[SlotTime.MINUTES_PER_DAY];
+        while (true) {
+            Range best = null;
+            int bestSaving = 0;
+            for (int i = 0; i < count; i++) {
+                if (covered[minutes[i]]) {
+                    continue;
+                }
+                for (int step : candidateSteps(minutes, i, count)) {
+                    Range range = longestSaving(free, covered, minutes[i], step);
+                    int saving = range == null ? 0 : saving(free, covered, range);
+                    if (saving > bestSaving) {
+                        best = range;
+                        bestSaving = saving;
+                    }
+                }
+            }
+            if (best == null) {
+                break;
+            }
+            parts[best.first()] = best;
+            for (int m = best.first(); m <= best.last(); m += best.step()) {
+                covered[m] = free[m];
+            }
+        }
+
+        boolean listing = false;
+        boolean first = true;
+        for (int m = 0; m < SlotTime.MINUTES_PER_DAY; m++) {
+            if (parts[m] != null) {
+                appendRange(out.append(first ? "" : PART), free, parts[m]);
+                listing = false;
+                first = false;
+            } else if (free[m] && !covered[m]) {
+                appendTime(out.append(first ? "" : listing ? TIME : PART), m);
+                listing = true;
+                first = false;
+            }
+        }
+        return out;
+    }
+
+    private static int[] candidateSteps(int[] minutes, int from, int count) {
+        int[] steps = Arrays.copyOf(COMMON_STEPS, COMMON_STEPS.length + CANDIDATE_GAPS);
+        int found = COMMON_STEPS.length;
+        for (int k = from + 1; k < count && k <= from + CANDIDATE_GAPS; k++) {
+            int gap = minutes[k] - minutes[from];
+            if (Arrays.binarySearch(COMMON_STEPS, gap) < 0) {
+                steps[found++] = gap;
+            }
+        }
+        return Arrays.copyOf(steps, found);
+    }
+
+    // Of the ranges from first on the step's grid, each ending at a free time and skipping at most
+    // MAX_MISSING steps in a row, the one that saves the most; null if none has three times
+    private static Range longestSaving(boolean[] free, boolean[] covered, int first, int step) {
+        Range best = null;
+        int bestSaving = Integer.MIN_VALUE;
+        int missingRun = 0;
+        int missing = 0;
+        int times = 1;
+        int newlyCovered = covered[first] ? 0 : 1;
+        for (int m = first + step; m < free.length; m += step) {
+            if (!free[m]) {
+                if (++missingRun > MAX_MISSING) {
+                    break;
+                }
+                missing++;
+                continue;
+            }
+            missingRun = 0;
+            times++;
+            if (!covered[m]) {
+                newlyCovered++;
+            }
+            int saving = saving(newlyCovered, missing, step);
+            if (times >= 3 && saving > bestSaving) {
+                best = new Range(first, m, step);
+                bestSaving = saving;
+            }
+        }
+        return best;
+    }
+
+    // Characters saved by writing a range rather than listing the times in it that nothing covers yet:
+    // a range is "hh:mm–hh:mm every Nm", plus " except " and a time for each missing step
+    private static int saving(int newlyCovered, int missing, int step) {
+        int length = 11 + EVERY.length() + digits(step) + 1 + PART.length()
+                + (missing == 0 ? 0 : EXCEPT.length() + missing * LISTED - TIME.length());
+        return newlyCovered * LISTED - length;
+    }
+
+    private static int saving(boolean[] free, boolean[] covered, Range range) {
+        int newlyCovered = 0;
+        int missing = 0;
+        for (int m = range.first(); m <= range.last(); m += range.step()) {
+            if (!free[m]) {
+                missing++;
+            } else if (!covered[m]) {
+                newlyCovered++;
+            }
+        }
+        return saving(newlyCovered, missing, range.step());
+    }
+
+    private static void appendRange(StringBuilder out, boolean[] free, Range range) {
+        appendTime(out, range.first()).append(DASH);
+        appendTime(out, range.last()).append(EVERY).append(range.step()).append('m');
+        boolean first = true;
+        for (int m = range.first(); m <= range.last(); m += range.step()) {
+            if (!free[m]) {
+                appendTime(out.append(first ? EXCEPT : TIME), m);
+                first = false;
+            }
+        }
+    }
+
+    // Reads a day written by appendDay, passing each minute in ascending order
+    static void parseDay(CharSequence text, int start, int end, IntConsumer minutes) {
+        boolean[] free = new boolean[SlotTime.MINUTES_PER_DAY];
+        int position = start;
+        while (position < end) {
+            int partEnd = indexOf(text, PART, position, end);
+            parsePart(text, position, partEnd, minute -> free[minute] = true);
+            position = partEnd + PART.length();
+        }
+        for (int m = 0; m < free.length; m++) {
+            if (free[m]) {
+                minutes.accept(m);
+            }
+        }
+    }
+
+    // Reads a slot section, "yyyy-MM-dd: ...\n" per day, passing each slot as a SlotTime epoch minute
+    static void parseSection(CharSequence section, IntConsumer slots) {
+        int lineStart = 0;
+        while (lineStart < section.length()) {
+            int lineEnd = lineStart;
+            while (lineEnd < section.length() && section.charAt(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int day = SlotTime.parse(section, lineStart, "00:00", 0);
+            if (day == SlotTime.INVALID || lineEnd - lineStart < 12 || !regionMatches(section, lineStart + 10, ": ")) {
+                throw malformed(section, lineStart);
+            }
+            parseDay(section, lineStart + 12, lineEnd, minute -> slots.accept(day + minute));
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    private static void parsePart(CharSequence text, int start, int end, IntConsumer minutes) {
+        if (end - start > 5 && text.charAt(start + 5) == DASH.charAt(0)) {
+            int first = time(text, start);
+            int last = time(text, start + 6);
+            int stepStart = start + 11 + EVERY.length();
+            if (!regionMatches(text, start + 11, EVERY)) {
+                throw malformed(text, start);
+            }
+            int stepEnd = stepStart;
+            while (stepEnd < end && Character.isDigit(text.charAt(stepEnd))) {
+                stepEnd++;
+            }
+            if (stepEnd == stepStart || stepEnd >= end || text.charAt(stepEnd) != 'm') {
+                throw malformed(text, start);
+            }
+            int step = Integer.parseInt(text, stepStart, stepEnd, 10);
+            int[] except = new int[0];
+            if (stepEnd + 1 < end) {
+                if (!regionMatches(text, stepEnd + 1, EXCEPT)) {
+                    throw malformed(text, start);
+                }
+                except = times(text, stepEnd + 1 + EXCEPT.length(), end);
+            }
+            if (step <= 0 || last < first || (last - first) % step != 0) {
+                throw malformed(text, start);
+            }
+            for (int m = first; m <= last; m += step) {
+                if (Arrays.binarySearch(except, m) < 0) {
+                    minutes.accept(m);
+                }
+            }
+            return;
+        }
+        for (int m : times(text, start, end)) {
+            minutes.accept(m);
+        }
+    }
+
+    // "hh:mm, hh:mm, ..."
+    private static int[] times(CharSequence text, int start, int end) {
+        int[] times = new int[(end - start + TIME.length()) / (5 + TIME.length())];
+        int position = start;
+        for (int k = 0; k < times.length; k++) {
+            times[k] = time(text, position);
+            position += 5;
+            if (k + 1 < times.length && !regionMatches(text, position, TIME)) {
+                throw malformed(text, start);
+            }
+            position += TIME.length();
+        }
+        if (position - TIME.length() != end) {
+            throw malformed(text, start);
+        }
+        return times;
+    }
+
+    // "hh:mm" as a minute of the day
+    private static int time(CharSequence text, int position) {
+        if (position + 5 > text.length() || text.charAt(position + 2) != ':') {
+            throw malformed(text, position);
+        }
+        int hour = twoDigits(text, position);
+        int minute = twoDigits(text, position + 3);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            throw malformed(text, position);
+        }
+        return hour * 60 + minute;
+    }
+
+    private static int twoDigits(CharSequence text, int position) {
+        int high = text.charAt(position) - '0';
+        int low = text.charAt(position + 1) - '0';
+        return high < 0 || high > 9 || low < 0 || low > 9 ? -1 : high * 10 + low;
+    }
+
+    private static StringBuilder appendTime(StringBuilder out, int minute) {
+        return SlotTime.appendTime(out, SlotTime.of(0, minute));
+    }
+
+    private static int digits(int value) {
+        return value < 10 ? 1 : value < 100 ? 2 : value < 1000 ? 3 : 4;
+    }
+
+    private static int indexOf(CharSequence text, String token, int from, int end) {
+        for (int i = from; i + token.length() <= end; i++) {
+            if (regionMatches(text, i, token)) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static boolean regionMatches(CharSequence text, int position, String token) {
+        if (position + token.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            if (text.charAt(position + i) != token.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static IllegalArgumentException malformed(CharSequence text, int position) {
+        return new IllegalArgumentException("Malformed slot list at " + position + ": "
+                + text.subSequence(position, Math.min(text.length(), position + 40)));
+    }
+}
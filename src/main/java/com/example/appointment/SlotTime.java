@@ -0,0 +1,129 @@
+package com.example.appointment;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+// A slot as a single int: minutes since 1970-01-01T00:00, i.e. epochDay * 1440 + minute of the day.
+// Messages, intents and the inventory pass slots around in this form; text is only parsed where it
+// comes in (LLM commands and phrases, the /cancel console command) and only formatted where it goes
+// out (replies and the system prompt). An int covers the years 0000 to 6053.
+public final class SlotTime {
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    // What parse returns for text that is not a valid slot; no inventory ever contains it
+    public static final int INVALID = Integer.MIN_VALUE;
+
+    private SlotTime() {
+    }
+
+    public static int of(LocalDate date, LocalTime time) {
+        return of(date.toEpochDay(), SlotInventory.minuteOf(time));
+    }
+
+    public static int of(LocalDateTime dateTime) {
+        return of(dateTime.toLocalDate(), dateTime.toLocalTime());
+    }
+
+    static int of(long epochDay, int minuteOfDay) {
+        long slot = epochDay * MINUTES_PER_DAY + minuteOfDay;
+        return slot > Integer.MAX_VALUE || slot <= INVALID ? INVALID : (int) slot;
+    }
+
+    static long epochDay(int slot) {
+        return Math.floorDiv(slot, MINUTES_PER_DAY);
+    }
+
+    static int minuteOfDay(int slot) {
+        return Math.floorMod(slot, MINUTES_PER_DAY);
+    }
+
+    public static LocalDateTime toLocalDateTime(int slot) {
+        return LocalDate.ofEpochDay(epochDay(slot)).atTime(SlotInventory.timeOf(minuteOfDay(slot)));
+    }
+
+    // 'yyyy-MM-dd' and 'HH:mm'
+    public static int parse(String date, String time) {
+        if (date.length() != 10 || time.length() != 5) {
+            return INVALID;
+        }
+        return parse(date, 0, time, 0);
+    }
+
+    // Reads 'yyyy-MM-dd' at dateStart and 'HH:mm' at timeStart without copying either out of the text
+    static int parse(CharSequence dateText, int dateStart, CharSequence timeText, int timeStart) {
+        int year = digits(dateText, dateStart, 4);
+        int month = digits(dateText, dateStart + 5, 2);
+        int day = digits(dateText, dateStart + 8, 2);
+        int hour = digits(timeText, timeStart, 2);
+        int minute = digits(timeText, timeStart + 3, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+                || dateText.charAt(dateStart + 4) != '-' || dateText.charAt(dateStart + 7) != '-'
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || timeText.charAt(timeStart + 2) != ':') {
+            return INVALID;
+        }
+        return of(epochDay(year, month, day), hour * 60 + minute);
+    }
+
+    // 'yyyy-MM-dd', the same text LocalDate.toString gives for these years
+    public static String formatDate(int slot) {
+        return appendDate(new StringBuilder(10), slot).toString();
+    }
+
+    // 'HH:mm', the same text LocalTime.toString gives for whole minutes
+    public static String formatTime(int slot) {
+        return appendTime(new StringBuilder(5), slot).toString();
+    }
+
+    static StringBuilder appendDate(StringBuilder out, int slot) {
+        return out.append(LocalDate.ofEpochDay(epochDay(slot)));
+    }
+
+    static StringBuilder appendTime(StringBuilder out, int slot) {
+        int minute = minuteOfDay(slot);
+        return pad(pad(out, minute / 60).append(':'), minute % 60);
+    }
+
+    private static StringBuilder pad(StringBuilder out, int value) {
+        return out.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    private static int digits(CharSequence text, int start, int count) {
+        if (start + count > text.length()) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    // Same arithmetic as LocalDate.toEpochDay, without building the LocalDate
+    private static long epochDay(int year, int month, int day) {
+        long total = 365L * year;
+        if (year >= 0) {
+            total += (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        }
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (lengthOfMonth(year, 2) == 28) {
+                total--;
+            }
+        }
+        return total - 719528;
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.appointment;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Compact point-in-time image of everything the journal describes up to `position`: the calendar as
+// per-day minute lists (free, then booked with each booking's owner) and each session's state as a
+// MessageCodec frame. Written to a temporary file, forced and renamed into place, and checksummed, so a
+// snapshot is either complete or absent.
+final class SnapshotFile {
+    private static final int MAGIC = 0x41505353; // "APSS"
+    // Format 1 wrote each session's fields with fixed-width lengths; 2 stores the codec frame; 3 adds the
+    // owner of each booking. 2 and 3 are read, a format 2 snapshot's bookings coming back without owners.
+    private static final int FORMAT = 3;
+    private static final int UNOWNED_FORMAT = 2;
+    // Written for a booking without an owner
+    private static final int NO_OWNER = -1;
+
+    record Contents(long position, SlotInventory inventory, Map<String, AppointmentState> sessions) {}
+
+    // One day's bookings; owners.get(i) booked minutes.get(i)
+    private record Bookings(long epochDay, List<Integer> minutes, List<String> owners) {}
+
+    private SnapshotFile() {
+    }
+
+    static void write(Path target, long position, SlotInventoryService inventory, Map<String, AppointmentState> sessions)
+            throws IOException {
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        CRC32C checksum = new CRC32C();
+        try (OutputStream file = Files.newOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(
+                     new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), checksum))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeLong(position);
+            writeCalendar(out, inventory);
+            out.writeInt(sessions.size());
+            for (Map.Entry<String, AppointmentState> session : sessions.entrySet()) {
+                writeString(out, session.getKey());
+                byte[] state = MessageCodec.encode(session.getValue());
+                out.writeInt(state.length);
+                out.write(state);
+            }
+            // The checksum covers everything before it
+            out.flush();
+            new DataOutputStream(file).writeLong(checksum.getValue());
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    static Contents read(Path source) throws IOException {
+        CRC32C checksum = new CRC32C();
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(source), 1 << 16);
+             DataInputStream in = new DataInputStream(new CheckedInputStream(file, checksum))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a snapshot: " + source);
+            }
+            int format = in.readInt();
+            if (format != FORMAT && format != UNOWNED_FORMAT) {
+                throw new IOException("Unsupported snapshot format " + format + ": " + source);
+            }
+            long position = in.readLong();
+
+            SlotInventory inventory = SlotInventory.empty();
+            for (int days = in.readInt(); days > 0; days--) {
+                LocalDate date = LocalDate.ofEpochDay(in.readLong());
+                for (int count = in.readShort(); count > 0; count--) {
+                    inventory = inventory.withSlot(date, SlotInventory.timeOf(in.readShort()));
+                }
+            }
+            for (int days = in.readInt(); days > 0; days--) {
+                long epochDay = in.readLong();
+                for (int count = in.readShort(); count > 0; count--) {
+                    int slot = SlotTime.of(epochDay, in.readShort());
+                    String owner = format == FORMAT ? readOwner(in) : null;
+                    inventory = inventory.withSlot(slot).book(slot, owner);
+                }
+            }
+
+            int sessionCount = in.readInt();
+            Map<String, AppointmentState> sessions = new HashMap<>(sessionCount * 2);
+            for (int i = 0; i < sessionCount; i++) {
+                String id = readString(in);
+                sessions.put(id, readState(in, source));
+            }
+
+            long expected = checksum.getValue();
+            if (new DataInputStream(file).readLong() != expected) {
+                throw new IOException("Snapshot checksum mismatch: " + source);
+            }
+            return new Contents(position, inventory, sessions);
+        } catch (EOFException e) {
+            throw new IOException("Truncated snapshot: " + source, e);
+        }
+    }
+
+    private static AppointmentState readState(DataInputStream in, Path source) throws IOException {
+        byte[] frame = new byte[in.readInt()];
+        in.readFully(frame);
+        try {
+            return MessageCodec.decodeState(ByteBuffer.wrap(frame));
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt session state in snapshot: " + source, e);
+        }
+    }
+
+    // Free and booked minutes of every day, both read from the same immutable stripe snapshot so that a
+    // slot changing while the snapshot is written is still in exactly one of the two sections
+    private static void writeCalendar(DataOutputStream out, SlotInventoryService inventory) throws IOException {
+        List<Map.Entry<LocalDate, List<LocalTime>>> free = new ArrayList<>();
+        List<Bookings> booked = new ArrayList<>();
+        inventory.forEachDay((epochDay, token, owner) -> {
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            // Holds do not survive a restart; their slots are written as free
+            SlotInventory day = owner.withoutHolds(epochDay);
+            day.forEachFreeDay(date, date.plusDays(1), (d, times) -> free.add(Map.entry(d, times)));
+            Bookings bookings = new Bookings(epochDay, new ArrayList<>(), new ArrayList<>());
+            day.forEachBooking(epochDay, epochDay + 1, (bookedBy, slot) -> {
+                bookings.minutes().add(SlotTime.minuteOfDay(slot));
+                bookings.owners().add(bookedBy);
+            });
+            if (!bookings.minutes().isEmpty()) {
+                booked.add(bookings);
+            }
+        });
+        writeDays(out, free);
+        writeBookings(out, booked);
+    }
+
+    private static void writeDays(DataOutputStream out, List<Map.Entry<LocalDate, List<LocalTime>>> days) throws IOException {
+        out.writeInt(days.size());
+        for (Map.Entry<LocalDate, List<LocalTime>> day : days) {
+            out.writeLong(day.getKey().toEpochDay());
+            out.writeShort(day.getValue().size());
+            for (LocalTime time : day.getValue()) {
+                out.writeShort(SlotInventory.minuteOf(time));
+            }
+        }
+    }
+
+    // As writeDays, each minute followed by the session that booked it
+    private static void writeBookings(DataOutputStream out, List<Bookings> days) throws IOException {
+        out.writeInt(days.size());
+        for (Bookings day : days) {
+            out.writeLong(day.epochDay());
+            out.writeShort(day.minutes().size());
+            for (int i = 0; i < day.minutes().size(); i++) {
+                out.writeShort(day.minutes().get(i));
+                String owner = day.owners().get(i);
+                if (owner == null) {
+                    out.writeInt(NO_OWNER);
+                } else {
+                    writeString(out, owner);
+                }
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readOwner(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == NO_OWNER) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.appointment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Splits a streamed completion into user-visible text and BOOK/CANCEL commands as it arrives.
+// Text is forwarded as soon as it can no longer turn into a command. From the first point of a line
+// where a command might start (or has) the rest is held back until its newline, so commands never
+// reach the user, wherever in the line they appear, and fire the moment their line is complete
+// rather than when the whole completion has been received. Whitespace at the end of the forwarded text
+// is held until more text follows; a reply that had commands drops it, as ResponseInterpreter trims it.
+class StreamingCommandDetector {
+    interface Listener {
+        void onText(String text);
+
+        void onIntent(ResponseInterpreter.Intent intent);
+    }
+
+    private final Listener listener;
+    private final StringBuilder line = new StringBuilder();
+    private final List<ResponseInterpreter.Intent> lineIntents = new ArrayList<>(2);
+    // Whitespace already taken out of the line but not yet forwarded
+    private final StringBuilder trailingSpace = new StringBuilder();
+    private int emitted;
+    private boolean commandsFired;
+
+    StreamingCommandDetector(Listener listener) {
+        this.listener = listener;
+    }
+
+    void accept(String delta) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < delta.length(); i++) {
+            char c = delta.charAt(i);
+            if (c == '\n') {
+                if (completeLine(text)) {
+                    text.append('\n');
+                }
+            } else {
+                line.append(c);
+            }
+        }
+        int held = heldFrom();
+        text.append(line, emitted, held);
+        emitted = held;
+        forward(text);
+    }
+
+    // Flushes a trailing line that arrived without a newline
+    void finish() {
+        StringBuilder text = new StringBuilder();
+        completeLine(text);
+        forward(text);
+        if (!commandsFired && !trailingSpace.isEmpty()) {
+            listener.onText(trailingSpace.toString());
+        }
+        trailingSpace.setLength(0);
+    }
+
+    boolean commandsFired() {
+        return commandsFired;
+    }
+
+    // Returns false when the line was a command line and has been swallowed entirely
+    private boolean completeLine(StringBuilder text) {
+        // Everything from the first possible command on is still held, so every command can be removed
+        String held = line.substring(emitted);
+        boolean wholeLine = emitted == 0;
+        String remainder = ResponseInterpreter.extractCommands(held, lineIntents);
+        for (ResponseInterpreter.Intent intent : lineIntents) {
+            commandsFired = true;
+            listener.onIntent(intent);
+        }
+        lineIntents.clear();
+        line.setLength(0);
+        emitted = 0;
+        if (remainder.length() != held.length() && wholeLine) {
+            if (remainder.isBlank()) {
+                return false;
+            }
+            remainder = remainder.strip();
+        }
+        text.append(remainder);
+        return true;
+    }
+
+    // Forwards text up to its trailing whitespace, which waits for the next text or finish()
+    private void forward(StringBuilder text) {
+        int end = text.length();
+        while (end > 0 && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        if (end == 0) {
+            trailingSpace.append(text);
+            return;
+        }
+        String visible = trailingSpace.isEmpty() ? text.substring(0, end) : trailingSpace + text.substring(0, end);
+        trailingSpace.setLength(0);
+        trailingSpace.append(text, end, text.length());
+        listener.onText(visible);
+    }
+
+    // Where the text not yet forwarded might start a command, or the line's end if nowhere. Leading
+    // whitespace is held with what follows it, so a command line does not leave a blank line behind.
+    private int heldFrom() {
+        int start = emitted;
+        if (emitted == 0) {
+            while (start < line.length() && Character.isWhitespace(line.charAt(start))) {
+                start++;
+            }
+            if (start == line.length()) {
+                return 0;
+            }
+        }
+        for (int i = start; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if ((c == 'B' || c == 'C') && ResponseInterpreter.mayBeCommand(line, i)) {
+                return i == start && emitted == 0 ? 0 : i;
+            }
+        }
+        return line.length();
+    }
+}
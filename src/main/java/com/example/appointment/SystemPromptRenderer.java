@@ -0,0 +1,208 @@
+package com.example.appointment;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Renders the system prompt once per inventory version and shares it across all sessions. The
+// instruction text is a constant; the slot section is rebuilt only when the availability version moves,
+// and even then only days whose slot data changed are re-formatted - the rest reuse their cached line.
+//
+// Two options keep the slot section short on large calendars. ranges writes each day with
+// SlotRangeFormat ("09:00–16:30 every 30m except 12:00") instead of listing every time, and a window of
+// windowDays days limits the section to the dates the conversation is about: from shortly before the
+// date it last named, or from today. Sessions looking at the same window share one rendered prompt.
+public class SystemPromptRenderer {
+    // What systemPrompt(focusDay) takes when the conversation has named no date
+    static final long NO_FOCUS = IntentRouter.NO_DAY;
+    // Days listed before the focus day, so the ones just around it are in view too
+    private static final int FOCUS_LEAD_DAYS = 2;
+    private static final int MAX_WINDOWS = 64;
+
+    private static final String ROLE = "You are an appointment scheduling assistant. ";
+    private static final String PREFIX = ROLE + "Here are the available time slots:\n";
+    private static final String RANGES_NOTE = "Ranges such as 09:00–11:00 every 30m include both ends, "
+            + "the times after \"except\" are taken, and a time is free if any part of its day lists it. ";
+
+    private static final String INSTRUCTIONS = "\nHelp the user find and book a suitable time slot. "
+            + "When the user confirms they want to book a specific date and time, you MUST respond with EXACTLY this format on a new line, even if the user uses natural language:\n"
+            + "BOOK:YYYY-MM-DD:HH:MM\n"
+            + "For example: BOOK:2025-11-06:09:00\n"
+            + "Then on the next line, provide your friendly confirmation message.\n"
+            + "Do not confirm a booking unless you have included the BOOK:... line.\n"
+            + "\nIf the user wants to cancel an appointment, you MUST respond with EXACTLY this format on a new line, even if the user uses natural language:\n"
+            + "CANCEL:YYYY-MM-DD:HH:MM\n"
+            + "For example: CANCEL:2025-11-06:09:00\n"
+            + "Then on the next line, provide your friendly cancellation confirmation message.\n"
+            + "Do not confirm a cancellation unless you have included the CANCEL:... line.\n";
+
+    private record Rendered(long version, String slotSection, String prompt) {}
+
+    private record DayLine(Object token, String line) {}
+
+    private final SlotInventoryService inventory;
+    private final boolean ranges;
+    private final int windowDays;
+    private final Clock clock;
+    // Guarded by this; only touched when the version has moved
+    private final Map<Long, DayLine> dayLines = new HashMap<>();
+    private final int[] minutes = new int[SlotTime.MINUTES_PER_DAY];
+    private volatile Rendered rendered;
+    // Windowed prompts by first day
+    private final Map<Long, Rendered> windows = new ConcurrentHashMap<>();
+    // Renders slotList(): this renderer when it writes plain lists already
+    private final SystemPromptRenderer listing;
+
+    // Every time of every day, as the prompt has always listed them
+    public SystemPromptRenderer(SlotInventoryService inventory) {
+        this(inventory, false, 0, Clock.systemDefaultZone());
+    }
+
+    // A windowDays of zero lists the whole calendar
+    public SystemPromptRenderer(SlotInventoryService inventory, boolean ranges, int windowDays, Clock clock) {
+        this.inventory = inventory;
+        this.ranges = ranges;
+        this.windowDays = windowDays;
+        this.clock = clock;
+        this.listing = ranges ? new SystemPromptRenderer(inventory) : this;
+    }
+
+    public static SystemPromptRenderer fromEnvironment(SlotInventoryService inventory) {
+        return new SystemPromptRenderer(inventory,
+                !"false".equalsIgnoreCase(System.getenv("PROMPT_SLOT_RANGES")),
+                Environment.intValue("PROMPT_WINDOW_DAYS", 14),
+                Clock.systemDefaultZone());
+    }
+
+    public String systemPrompt() {
+        return systemPrompt(NO_FOCUS);
+    }
+
+    // The prompt for a conversation whose last named date is focusDay (an epoch day, or NO_FOCUS)
+    public String systemPrompt(long focusDay) {
+        return windowDays <= 0 ? current().prompt() : window(windowStart(focusDay)).prompt();
+    }
+
+    // Without a focus day the window starts today, or at the start of a calendar that today is not in
+    long windowStart(long focusDay) {
+        if (focusDay != NO_FOCUS) {
+            return focusDay - FOCUS_LEAD_DAYS;
+        }
+        long today = LocalDate.now(clock).toEpochDay();
+        long start = inventory.startEpochDay();
+        long end = inventory.endEpochDay();
+        return start >= end || (today >= start && today < end) ? today : start;
+    }
+
+    int windowDays() {
+        return windowDays;
+    }
+
+    // Identifies the prompt systemPrompt(focusDay) renders now: its first day, or NO_FOCUS for the whole
+    // calendar. Two calls that agree on this and on the inventory version get the same prompt.
+    long promptWindow(long focusDay) {
+        return windowDays <= 0 ? NO_FOCUS : windowStart(focusDay);
+    }
+
+    // "date: time, time\n" (or its ranges form) for every day with free slots, in date order
+    public String slotSection() {
+        return current().slotSection();
+    }
+
+    // The whole calendar as plain "date: time, time" lines whatever the prompt uses, for people to read
+    public String slotList() {
+        return listing.slotSection();
+    }
+
+    // The slot section of systemPrompt(focusDay)
+    String slotSection(long focusDay) {
+        return windowDays <= 0 ? current().slotSection() : window(windowStart(focusDay)).slotSection();
+    }
+
+    private Rendered current() {
+        Rendered snapshot = rendered;
+        long version = inventory.availabilityVersion();
+        if (snapshot != null && snapshot.version() == version) {
+            return snapshot;
+        }
+        return render(version);
+    }
+
+    private synchronized Rendered render(long version) {
+        Rendered snapshot = rendered;
+        if (snapshot != null && snapshot.version() == version) {
+            return snapshot;
+        }
+        String slotSection = section(Long.MIN_VALUE, Long.MAX_VALUE);
+        Rendered updated = new Rendered(version, slotSection,
+                (ranges ? ROLE + RANGES_NOTE + "Here are the available time slots:\n" : PREFIX)
+                        + slotSection + INSTRUCTIONS);
+        rendered = updated;
+        return updated;
+    }
+
+    private Rendered window(long from) {
+        Rendered snapshot = windows.get(from);
+        long version = inventory.availabilityVersion();
+        if (snapshot != null && snapshot.version() == version) {
+            return snapshot;
+        }
+        return renderWindow(from, version);
+    }
+
+    private synchronized Rendered renderWindow(long from, long version) {
+        Rendered snapshot = windows.get(from);
+        if (snapshot != null && snapshot.version() == version) {
+            return snapshot;
+        }
+        if (windows.size() >= MAX_WINDOWS) {
+            windows.clear();
+        }
+        String slotSection = section(from, from + windowDays);
+        String prefix = ROLE + (ranges ? RANGES_NOTE : "") + "Here are the available time slots from "
+                + SlotTime.formatDate(SlotTime.of(from, 0)) + " to "
+                + SlotTime.formatDate(SlotTime.of(from + windowDays - 1, 0))
+                + "; other dates are not listed here but may have free slots too:\n";
+        Rendered updated = new Rendered(version, slotSection, prefix + slotSection + INSTRUCTIONS);
+        windows.put(from, updated);
+        return updated;
+    }
+
+    // Lines of the days in [fromDay, toDay); caller holds the lock
+    private String section(long fromDay, long toDay) {
+        StringBuilder section = new StringBuilder();
+        inventory.forEachDay(fromDay, toDay, (epochDay, token, owner) -> {
+            DayLine cached = dayLines.get(epochDay);
+            if (cached == null || cached.token() != token) {
+                cached = new DayLine(token, renderDay(epochDay, owner));
+                dayLines.put(epochDay, cached);
+            }
+            section.append(cached.line());
+        });
+        return section.toString();
+    }
+
+    // "2025-11-05: 09:00, 10:00\n", or the ranges form of it, or nothing for a day without free slots
+    private String renderDay(long epochDay, SlotInventory owner) {
+        StringBuilder line = new StringBuilder();
+        int[] count = { 0 };
+        owner.forEachFreeSlot(epochDay, epochDay + 1, slot -> {
+            if (line.isEmpty()) {
+                SlotTime.appendDate(line, slot).append(": ");
+            } else if (!ranges) {
+                line.append(", ");
+            }
+            if (ranges) {
+                minutes[count[0]++] = SlotTime.minuteOfDay(slot);
+            } else {
+                SlotTime.appendTime(line, slot);
+            }
+        });
+        if (ranges) {
+            SlotRangeFormat.appendDay(line, minutes, count[0]);
+        }
+        return line.isEmpty() ? "" : line.append('\n').toString();
+    }
+}
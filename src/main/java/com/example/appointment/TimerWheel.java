@@ -0,0 +1,128 @@
+package com.example.appointment;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+// Hashed timer wheel (Varghese and Lauck): a ring of buckets, one per tick, and one thread that moves to
+// the next bucket every tick and fires the timeouts in it whose round has come. A timeout lands in the
+// bucket of its deadline tick, with the number of whole turns of the wheel still to wait, so scheduling
+// is O(1) whatever the number pending, where a ScheduledThreadPoolExecutor sifts a heap of task objects.
+// Timeouts are intrusive - the caller's own object is the list node - and reach the wheel through a
+// lock-free stack, so scheduling allocates nothing and only the wheel thread touches the buckets.
+// Deadlines are rounded up to the next tick. There is no cancel; an expiry that is no longer wanted
+// should find nothing to do.
+final class TimerWheel {
+    abstract static class Timeout {
+        private long deadlineNanos;
+        private long rounds;
+        private Timeout next;
+
+        // Runs on the wheel thread, so it must be short and must not block
+        protected abstract void expire();
+    }
+
+    private final long tickNanos;
+    private final Timeout[] buckets;
+    private final int mask;
+    private final String name;
+    private final AtomicReference<Timeout> incoming = new AtomicReference<>();
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicReference<Thread> worker = new AtomicReference<>();
+    private long startNanos;
+    // Wheel thread only
+    private long tick;
+
+    TimerWheel(String name, long tickMillis, int wheelSize) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Wheel size must be a power of two: " + wheelSize);
+        }
+        this.name = name;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.buckets = new Timeout[wheelSize];
+        this.mask = wheelSize - 1;
+    }
+
+    void schedule(Timeout timeout, long delayNanos) {
+        timeout.deadlineNanos = System.nanoTime() + delayNanos;
+        pending.incrementAndGet();
+        Timeout head;
+        do {
+            head = incoming.get();
+            timeout.next = head;
+        } while (!incoming.compareAndSet(head, timeout));
+        if (worker.get() == null) {
+            start();
+        }
+    }
+
+    // Scheduled and not yet expired
+    long pending() {
+        return pending.get();
+    }
+
+    // The thread starts with the first timeout, so an unused wheel costs nothing
+    private void start() {
+        Thread thread = Thread.ofPlatform().daemon().name(name).unstarted(this::run);
+        if (worker.compareAndSet(null, thread)) {
+            startNanos = System.nanoTime();
+            thread.start();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            long wake = startNanos + (tick + 1) * tickNanos;
+            long now;
+            while ((now = System.nanoTime()) < wake) {
+                LockSupport.parkNanos(this, wake - now);
+            }
+            transfer();
+            expire(buckets[(int) (tick & mask)], (int) (tick & mask));
+            tick++;
+        }
+    }
+
+    // Moves newly scheduled timeouts into their buckets. Tick t's bucket is expired once (t + 1) ticks
+    // have passed, so a deadline goes in the bucket of the first tick that ends at or after it.
+    private void transfer() {
+        Timeout timeout = incoming.getAndSet(null);
+        while (timeout != null) {
+            Timeout following = timeout.next;
+            long deadlineTick = Math.max(
+                    Math.floorDiv(timeout.deadlineNanos - startNanos - 1, tickNanos), tick);
+            timeout.rounds = (deadlineTick - tick) / buckets.length;
+            int index = (int) (deadlineTick & mask);
+            timeout.next = buckets[index];
+            buckets[index] = timeout;
+            timeout = following;
+        }
+    }
+
+    private void expire(Timeout head, int index) {
+        Timeout previous = null;
+        Timeout timeout = head;
+        while (timeout != null) {
+            Timeout following = timeout.next;
+            if (timeout.rounds > 0) {
+                timeout.rounds--;
+                previous = timeout;
+            } else {
+                if (previous == null) {
+                    buckets[index] = following;
+                } else {
+                    previous.next = following;
+                }
+                timeout.next = null;
+                pending.decrementAndGet();
+                try {
+                    timeout.expire();
+                } catch (RuntimeException e) {
+                    System.err.println(name + ": timeout failed: " + e);
+                }
+            }
+            timeout = following;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.appointment;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConsoleScreenTest {
+    private static final String CLEAR_PROMPT = "\r\033[2K";
+    private static final String ERROR = AppointmentAgentHandler.ERROR_PREFIX + "connection reset";
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final ConsoleScreen screen = new ConsoleScreen(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+
+    @Test
+    void streamedReplyEndsWithTheFinalAndShowsWhatWasDeferred() {
+        screen.prompt();
+        screen.render(new AgentResponse("Booking ", AgentResponse.Part.FRAGMENT));
+        screen.render(new AgentResponse("that now.", AgentResponse.Part.FRAGMENT));
+        screen.render(new AgentResponse("Booked 2025-11-06 09:00"));
+        screen.render(new AgentResponse("Booking that now.", AgentResponse.Part.FINAL));
+
+        assertEquals("You: " + CLEAR_PROMPT + "Agent: Booking that now.\n"
+                + "Agent: Booked 2025-11-06 09:00\n"
+                + "You: ", shown());
+    }
+
+    // The stream breaks off after a few fragments: the line is closed, the error shown and the turn over,
+    // so the next reply starts on a line of its own
+    @Test
+    void streamThatFailsMidwayEndsTheTurn() {
+        screen.prompt();
+        screen.render(new AgentResponse("Let me ", AgentResponse.Part.FRAGMENT));
+        screen.render(new AgentResponse("check", AgentResponse.Part.FRAGMENT));
+        screen.render(new AgentResponse("Booked 2025-11-06 09:00"));
+        screen.render(new AgentResponse(ERROR, AgentResponse.Part.FAILED));
+        screen.inputEchoed();
+        screen.render(new AgentResponse("Hello", AgentResponse.Part.FRAGMENT));
+        screen.render(new AgentResponse("Hello", AgentResponse.Part.FINAL));
+
+        assertEquals("You: " + CLEAR_PROMPT + "Agent: Let me check\n"
+                + "Agent: " + ERROR + "\n"
+                + "Agent: Booked 2025-11-06 09:00\n"
+                + "You: "
+                + "Agent: Hello\n"
+                + "You: ", shown());
+    }
+
+    @Test
+    void streamThatFailsBeforeAnyTextShowsTheError() {
+        screen.prompt();
+        screen.render(new AgentResponse(ERROR, AgentResponse.Part.FAILED));
+
+        assertEquals("You: " + CLEAR_PROMPT + "Agent: " + ERROR + "\nYou: ", shown());
+    }
+
+    private String shown() {
+        return bytes.toString(StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n");
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.appointment;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class IntentRouterTest {
+    // Tuesday, 4 November 2025
+    private static final LocalDate TODAY = LocalDate.of(2025, 11, 4);
+    private static final String SESSION = "session-a";
+    private static final String OTHER = "session-b";
+
+    private final IntentRouter router = new IntentRouter(
+            Clock.fixed(TODAY.atTime(8, 0).toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+
+    @Test
+    void routesExplicitRequests() {
+        SlotInventoryService inventory = inventory();
+        Object[][] table = {
+                { "book 2025-11-06 09:00", new IntentRouter.Book(slot(6, 9, 0)) },
+                { "Please book November 6th at 9am.", new IntentRouter.Book(slot(6, 9, 0)) },
+                { "reserve the 7th 2:30 pm", new IntentRouter.Book(slot(7, 14, 30)) },
+                { "book wednesday at noon", new IntentRouter.Book(slot(5, 12, 0)) },
+                { "cancel my 10:00 on the 5th", new IntentRouter.Cancel(slot(5, 10, 0)) },
+                { "what's free tomorrow", new IntentRouter.ShowSlots(TODAY.plusDays(1).toEpochDay()) },
+                { "What's available on Nov 6?", new IntentRouter.ShowSlots(TODAY.plusDays(2).toEpochDay()) },
+        };
+        for (Object[] row : table) {
+            assertEquals(row[1], router.route((String) row[0], inventory, SESSION), (String) row[0]);
+        }
+    }
+
+    // A date-only or time-only cancel routes only when exactly one of the session's own bookings fits
+    @Test
+    void resolvesPartialCancelsAgainstTheSessionsBookings() {
+        SlotInventoryService inventory = inventory();
+        inventory.tryBook(slot(5, 10, 0), SESSION);
+        inventory.tryBook(slot(6, 9, 0), SESSION);
+        inventory.tryBook(slot(6, 11, 0), SESSION);
+        inventory.tryBook(slot(7, 10, 0), OTHER);
+        inventory.tryBook(slot(7, 14, 0), OTHER);
+        Object[][] table = {
+                // Time only: the session's one 10:00; the other session's 10:00 on the 7th does not count
+                { "cancel my 10:00", new IntentRouter.Cancel(slot(5, 10, 0)) },
+                { "cancel my 10am appointment", new IntentRouter.Cancel(slot(5, 10, 0)) },
+                // Date only: one booking that day
+                { "cancel my appointment on the 5th", new IntentRouter.Cancel(slot(5, 10, 0)) },
+                { "cancel my booking tomorrow", new IntentRouter.Cancel(slot(5, 10, 0)) },
+                // Two bookings on the 6th, so the day alone does not say which
+                { "cancel my appointment on the 6th", null },
+                // Only the other session has bookings that fit
+                { "cancel my 2pm", null },
+                { "cancel the 7th", null },
+                // Nothing booked that day, or at that time
+                { "cancel my appointment on the 8th", null },
+                { "cancel my 3:00", null },
+        };
+        for (Object[] row : table) {
+            assertEquals(row[1], router.route((String) row[0], inventory, SESSION), (String) row[0]);
+        }
+    }
+
+    // Dates that do not exist, and weekdays that could mean today or a week from now
+    @Test
+    void leavesAmbiguousDatesToTheLlm() {
+        SlotInventoryService inventory = inventory();
+        String[] messages = {
+                "book February 30 at 10:00",
+                "book 2026-02-30 10:00",
+                "book 30th of feb 10:00",
+                "what's free on feb 30",
+                "book tuesday 10:00",
+                "what's free on tuesday",
+                "book 2025-11-06 09:00 on the 7th",
+        };
+        for (String message : messages) {
+            assertNull(router.route(message, inventory, SESSION), message);
+        }
+        assertEquals(IntentRouter.NO_DAY, router.mentionedDay("February 30"));
+        assertEquals(IntentRouter.NO_DAY, router.mentionedDay("tuesday"));
+        assertEquals(TODAY.plusDays(1).toEpochDay(), router.mentionedDay("wednesday"));
+    }
+
+    // A month with an hour after it names no day
+    @Test
+    void leavesAMonthWithoutADayToTheLlm() {
+        SlotInventoryService inventory = inventory();
+        inventory.tryBook(slot(5, 10, 0), SESSION);
+        String[] messages = { "book dec 10:00", "what's free dec 10:00", "cancel dec 10:00", "cancel my 10:00 in dec" };
+        for (String message : messages) {
+            assertNull(router.route(message, inventory, SESSION), message);
+        }
+        assertEquals(IntentRouter.NO_DAY, router.mentionedDay("dec 10:00"));
+    }
+
+    // Every UNCERTAIN word sends an otherwise routable message to the LLM
+    @Test
+    void anyUncertainWordGoesToTheLlm() {
+        SlotInventoryService inventory = inventory();
+        String[] words = {
+                "not", "no", "don't", "dont", "can't", "cannot", "won't", "shouldn't", "should", "instead", "maybe",
+                "perhaps", "or", "and", "if", "either", "unless", "change", "move", "reschedule", "rebook", "next",
+                "last", "this", "after", "before", "between", "around", "about", "morning", "afternoon", "evening",
+                "night", "earliest", "latest", "first", "soonest", "any", "anything", "week", "weekend", "month",
+                "all", "both", "every", "other", "another", "else", "isn't", "couldn’t"
+        };
+        assertEquals(new IntentRouter.Book(slot(6, 9, 0)), router.route("book 2025-11-06 09:00", inventory, SESSION));
+        for (String word : words) {
+            String message = "book 2025-11-06 09:00 " + word;
+            assertNull(router.route(message, inventory, SESSION), message);
+        }
+    }
+
+    // Four slots a day for the coming two weeks
+    private static SlotInventoryService inventory() {
+        SlotInventory calendar = SlotInventory.empty();
+        for (int day = 0; day < 14; day++) {
+            calendar = calendar.withSlots(TODAY.plusDays(day), LocalTime.of(9, 0), LocalTime.of(10, 0),
+                    LocalTime.of(11, 0), LocalTime.of(14, 0));
+        }
+        return new SlotInventoryService(calendar);
+    }
+
+    private static int slot(int dayOfMonth, int hour, int minute) {
+        return SlotTime.of(TODAY.withDayOfMonth(dayOfMonth), LocalTime.of(hour, minute));
+    }
+}
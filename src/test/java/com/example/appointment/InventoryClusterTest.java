@@ -0,0 +1,193 @@
+package com.example.appointment;
+
+import com.cajunsystems.ActorContext;
+import com.cajunsystems.ActorSystem;
+import com.cajunsystems.Pid;
+import com.cajunsystems.handler.Handler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InventoryClusterTest {
+    private static final int DAYS = 60;
+    private static final int SESSIONS = 8;
+    private static final LocalTime[] TIMES = {
+            LocalTime.of(9, 0), LocalTime.of(10, 0), LocalTime.of(11, 0), LocalTime.of(14, 0)
+    };
+
+    private final List<ActorSystem> systems = new ArrayList<>();
+    private final ActorSystem client = new ActorSystem();
+    private final Semaphore replies = new Semaphore(0);
+    private int[] slots;
+
+    // Every slot a session was told it booked (or cancelled), with how often
+    private final Map<String, Map<Integer, Integer>> succeeded = new ConcurrentHashMap<>();
+
+    @AfterEach
+    void shutdown() {
+        systems.forEach(ActorSystem::shutdown);
+        client.shutdown();
+    }
+
+    @Test
+    void nodesJoinAndLeaveWithoutLosingOrDoublingBookings() throws Exception {
+        LocalDate first = LocalDate.of(2025, 11, 3);
+        SlotInventory calendar = SlotInventory.empty();
+        List<Integer> slotList = new ArrayList<>();
+        for (int day = 0; day < DAYS; day++) {
+            calendar = calendar.withSlots(first.plusDays(day), TIMES);
+            for (LocalTime time : TIMES) {
+                slotList.add(SlotTime.of(first.plusDays(day), time));
+            }
+        }
+        slots = slotList.stream().mapToInt(Integer::intValue).toArray();
+
+        // Committed changes reach the journal through the view, whichever node committed them
+        RecordingJournal journal = new RecordingJournal();
+        InventoryCluster cluster = new InventoryCluster(new SlotInventoryService(calendar, 8, journal), 3, 16);
+        join(cluster, "node-0").join();
+        join(cluster, "node-1").join();
+        Pid[] sessions = new Pid[SESSIONS];
+        for (int i = 0; i < SESSIONS; i++) {
+            sessions[i] = client.actorOf(new Session()).withId("session-" + i).spawn();
+        }
+
+        // Every session goes for every slot while the membership changes underneath
+        CompletableFuture<Void> churn = CompletableFuture.runAsync(() -> {
+            join(cluster, "node-2").join();
+            join(cluster, "node-3").join();
+            cluster.leave("node-0").join();
+            join(cluster, "node-4").join();
+            cluster.leave("node-2").join();
+        });
+        int expected = send(cluster, sessions, slots, true);
+        churn.get(30, TimeUnit.SECONDS);
+        assertTrue(replies.tryAcquire(expected, 30, TimeUnit.SECONDS), "unanswered booking requests");
+
+        Map<Integer, String> winners = new HashMap<>();
+        succeeded.forEach((session, booked) -> booked.forEach((slot, times) -> {
+            assertEquals(1, (int) times, "slot booked twice by " + session);
+            assertNull(winners.put(slot, session), "slot booked by two sessions");
+        }));
+        assertEquals(slots.length, winners.size());
+        assertEquals(slots.length, cluster.view().bookedCount());
+        assertEquals(slots.length, cluster.bookedByNode().values().stream().mapToInt(Integer::intValue).sum());
+        for (int slot : slots) {
+            assertEquals(winners.get(slot), cluster.view().owner(slot));
+        }
+        assertEquals(winners, journal.booked);
+        assertEquals(0, journal.cancelled.size());
+
+        // Now every session tries to cancel every slot; only the owners get anywhere
+        succeeded.clear();
+        churn = CompletableFuture.runAsync(() -> {
+            cluster.leave("node-1").join();
+            join(cluster, "node-5").join();
+            cluster.leave("node-3").join();
+        });
+        expected = send(cluster, sessions, slots, false);
+        churn.get(30, TimeUnit.SECONDS);
+        assertTrue(replies.tryAcquire(expected, 30, TimeUnit.SECONDS), "unanswered cancel requests");
+
+        Map<Integer, String> cancelledBy = new HashMap<>();
+        succeeded.forEach((session, cancelled) -> cancelled.forEach((slot, times) -> {
+            assertEquals(1, (int) times, "slot cancelled twice by " + session);
+            assertNull(cancelledBy.put(slot, session), "slot cancelled by two sessions");
+        }));
+        assertEquals(winners, cancelledBy);
+        assertEquals(0, cluster.view().bookedCount());
+        assertEquals(0, cluster.bookedByNode().values().stream().mapToInt(Integer::intValue).sum());
+        assertEquals(winners.keySet(), journal.cancelled);
+    }
+
+    private CompletableFuture<Void> join(InventoryCluster cluster, String nodeId) {
+        ActorSystem system = new ActorSystem();
+        synchronized (systems) {
+            systems.add(system);
+        }
+        return cluster.join(nodeId, system);
+    }
+
+    // Even sessions send one SlotChange per slot, odd ones a single batch; returns how many replies to expect
+    private static int send(InventoryCluster cluster, Pid[] sessions, int[] slots, boolean book) {
+        List<CompletableFuture<Integer>> senders = new ArrayList<>();
+        for (int i = 0; i < sessions.length; i++) {
+            Pid session = sessions[i];
+            boolean batch = i % 2 == 1;
+            senders.add(CompletableFuture.supplyAsync(() -> {
+                if (batch) {
+                    return cluster.route(slots, book, session);
+                }
+                for (int slot : slots) {
+                    cluster.route(new InventoryPartition.SlotChange(slot, book, false, session, null, System.nanoTime()));
+                }
+                return slots.length;
+            }));
+        }
+        return senders.stream().mapToInt(CompletableFuture::join).sum();
+    }
+
+    // Remembers who each slot was journaled as booked by, and which were journaled as cancelled
+    private static final class RecordingJournal implements AppointmentJournal {
+        final Map<Integer, String> booked = new ConcurrentHashMap<>();
+        final Set<Integer> cancelled = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public void slotBooked(long epochDay, int minute, String owner) {
+            assertNull(booked.put(SlotTime.of(epochDay, minute), owner), "booking journaled twice");
+        }
+
+        @Override
+        public void slotCancelled(long epochDay, int minute) {
+            assertTrue(cancelled.add(SlotTime.of(epochDay, minute)), "cancel journaled twice");
+        }
+
+        @Override
+        public void messageAppended(String sessionId, String role, String content, AppointmentState state) {
+        }
+
+        @Override
+        public AppointmentState recoveredSession(String sessionId) {
+            return new AppointmentState();
+        }
+    }
+
+    private final class Session implements Handler<AppointmentMessage> {
+        @Override
+        public void receive(AppointmentMessage message, ActorContext context) {
+            Map<Integer, Integer> mine = succeeded.computeIfAbsent(context.getActorId(), id -> new ConcurrentHashMap<>());
+            switch (message) {
+                case SlotChanged changed -> {
+                    if (changed.succeeded()) {
+                        mine.merge(changed.slot(), 1, Integer::sum);
+                    }
+                }
+                // Positions index slots, which every batching session sends whole
+                case SlotsChanged changed -> {
+                    for (int i = 0; i < changed.positions().length; i++) {
+                        if (changed.succeeded()[i]) {
+                            mine.merge(slots[changed.positions()[i]], 1, Integer::sum);
+                        }
+                    }
+                }
+                default -> throw new IllegalStateException("Unexpected " + message);
+            }
+            replies.release();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.appointment;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalStoreTest {
+    private static final LocalDate FIRST_DAY = LocalDate.of(2025, 11, 3);
+    private static final LocalTime[] TIMES = {
+            LocalTime.of(9, 0), LocalTime.of(10, 0), LocalTime.of(11, 0), LocalTime.of(14, 0), LocalTime.of(15, 30)
+    };
+
+    @TempDir
+    Path directory;
+
+    private final ContextWindow contextWindow = new ContextWindow(3000, 6);
+    private final List<Integer> slots = new ArrayList<>();
+
+    @Test
+    void snapshotDropsCoveredSegmentsAndOlderSnapshots() throws Exception {
+        SlotInventory initial = calendar(20);
+        Map<Integer, String> owners = new HashMap<>();
+        try (JournalStore store = open(initial, 512, Long.MAX_VALUE)) {
+            for (int i = 0; i < slots.size(); i += 2) {
+                assertTrue(store.inventory().tryBook(slots.get(i), "session-" + i % 7));
+                owners.put(slots.get(i), "session-" + i % 7);
+            }
+            store.sync();
+            int segmentsBefore = files(".log").size();
+            store.snapshot();
+
+            assertEquals(1, files(".snap").size());
+            assertTrue(files(".log").size() < segmentsBefore,
+                    "segments before " + segmentsBefore + ", after " + files(".log").size());
+
+            for (int i = 1; i < slots.size(); i += 4) {
+                assertTrue(store.inventory().tryBook(slots.get(i), "late"));
+                owners.put(slots.get(i), "late");
+            }
+            store.sync();
+            store.snapshot();
+            assertEquals(1, files(".snap").size());
+        }
+
+        try (JournalStore store = open(initial, 512, Long.MAX_VALUE)) {
+            assertOwners(owners, store);
+        }
+    }
+
+    @Test
+    void replayMatchesTheLiveState() throws IOException {
+        SlotInventory initial = calendar(30);
+        Random random = new Random(42);
+        Map<Integer, String> owners = new HashMap<>();
+        Map<String, AppointmentState> sessions = new HashMap<>();
+
+        // A small snapshot interval and small segments, so recovery goes through snapshot plus tail
+        try (JournalStore store = open(initial, 2048, 50)) {
+            for (int i = 0; i < 5_000; i++) {
+                int slot = slots.get(random.nextInt(slots.size()));
+                String session = "session-" + random.nextInt(12);
+                switch (random.nextInt(3)) {
+                    case 0 -> {
+                        if (store.inventory().tryBook(slot, session)) {
+                            owners.put(slot, session);
+                        }
+                    }
+                    case 1 -> {
+                        if (store.inventory().cancel(slot, session)) {
+                            owners.remove(slot);
+                        }
+                    }
+                    default -> {
+                        String role = random.nextBoolean() ? "user" : "assistant";
+                        String content = "turn " + i + " für " + session;
+                        AppointmentState state = contextWindow.fit(
+                                sessions.getOrDefault(session, new AppointmentState()).addMessage(role, content));
+                        sessions.put(session, state);
+                        store.messageAppended(session, role, content, state);
+                    }
+                }
+            }
+            assertOwners(owners, store);
+        }
+        assertEquals(1, files(".snap").size());
+
+        try (JournalStore store = open(initial, 2048, 50)) {
+            assertOwners(owners, store);
+            for (Map.Entry<String, AppointmentState> session : sessions.entrySet()) {
+                assertEquals(session.getValue(), store.recoveredSession(session.getKey()), session.getKey());
+            }
+        }
+    }
+
+    private JournalStore open(SlotInventory initial, int segmentBytes, long snapshotEvery) {
+        return JournalStore.open(directory, initial, contextWindow, 4, segmentBytes, 1, snapshotEvery);
+    }
+
+    private SlotInventory calendar(int days) {
+        SlotInventory calendar = SlotInventory.empty();
+        for (int day = 0; day < days; day++) {
+            LocalDate date = FIRST_DAY.plusDays(day);
+            calendar = calendar.withSlots(date, TIMES);
+            for (LocalTime time : TIMES) {
+                slots.add(SlotTime.of(date, time));
+            }
+        }
+        return calendar;
+    }
+
+    private void assertOwners(Map<Integer, String> owners, JournalStore store) {
+        for (int slot : slots) {
+            assertEquals(owners.get(slot), store.inventory().owner(slot), SlotTime.toLocalDateTime(slot).toString());
+        }
+        assertEquals(owners.size(), store.inventory().bookedCount());
+    }
+
+    private List<Path> files(String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(suffix)).toList();
+        }
+    }
+}
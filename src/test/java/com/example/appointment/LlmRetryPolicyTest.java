@@ -0,0 +1,251 @@
+package com.example.appointment;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LlmRetryPolicyTest {
+    // Enough answered calls for the policy to start hedging
+    private static final int HEDGE_WARMUP = 20;
+
+    private final ScriptedServer server = new ScriptedServer();
+    private final LlmClient client = new LlmClient(16, Duration.ofSeconds(5));
+
+    @AfterEach
+    void shutdown() {
+        server.close();
+    }
+
+    @Test
+    void readsOnlyTheHedgeWhenItAnswersFirst() throws Exception {
+        LlmRetryPolicy policy = new LlmRetryPolicy(10_000, 10_000, 3, 100, 20, true);
+        warmUp(policy);
+        // The first attempt stalls well past the hedge delay; the hedge answers at once
+        server.script(new Reply(200, 3_000, "first"), new Reply(200, 0, "hedge"));
+
+        AtomicInteger bodiesRead = new AtomicInteger();
+        HttpResponse<String> response = policy.send(client, request(), countingBodies(bodiesRead))
+                .get(10, TimeUnit.SECONDS);
+
+        assertEquals("hedge", response.body());
+        assertEquals(1, bodiesRead.get());
+        assertEquals(1, policy.stats().hedges());
+        assertEquals(1, policy.stats().hedgeWins());
+    }
+
+    @Test
+    void readsOnlyTheFirstAttemptWhenTheHedgeLoses() throws Exception {
+        LlmRetryPolicy policy = new LlmRetryPolicy(10_000, 10_000, 3, 100, 20, true);
+        warmUp(policy);
+        // Slow enough for the hedge to go out, but well ahead of the hedge's own reply
+        server.script(new Reply(200, 400, "first"), new Reply(200, 3_000, "hedge"));
+
+        AtomicInteger bodiesRead = new AtomicInteger();
+        HttpResponse<String> response = policy.send(client, request(), countingBodies(bodiesRead))
+                .get(10, TimeUnit.SECONDS);
+
+        assertEquals("first", response.body());
+        assertEquals(1, bodiesRead.get());
+        assertEquals(1, policy.stats().hedges());
+        assertEquals(0, policy.stats().hedgeWins());
+        assertEquals(2, server.requests() - HEDGE_WARMUP);
+    }
+
+    @Test
+    void retriesAServiceUnavailableOnceAfterABackoff() throws Exception {
+        long backoffMillis = 200;
+        LlmRetryPolicy policy = new LlmRetryPolicy(10_000, 10_000, 3, backoffMillis, 20, false);
+        server.script(new Reply(503, 0, "overloaded"), new Reply(200, 0, "ok"));
+
+        HttpResponse<String> response = policy.send(client, request(), HttpResponse.BodyHandlers.ofString())
+                .get(10, TimeUnit.SECONDS);
+
+        assertEquals(200, response.statusCode());
+        assertEquals("ok", response.body());
+        assertEquals(2, server.requests());
+        assertEquals(1, policy.stats().retries());
+        // The first backoff is jittered between half and all of backoffMillis
+        long gapMillis = TimeUnit.NANOSECONDS.toMillis(server.arrivals.get(1) - server.arrivals.get(0));
+        assertTrue(gapMillis >= backoffMillis / 2, "retried after " + gapMillis + " ms");
+    }
+
+    @Test
+    void failsWithTheLastStatusOnceTheBudgetIsSpent() throws Exception {
+        // No deposits, so only the ten tokens the budget starts with
+        LlmRetryPolicy policy = new LlmRetryPolicy(10_000, 10_000, 50, 1, 0, false);
+        for (int i = 0; i < 10; i++) {
+            server.script(new Reply(503, 0, "overloaded"));
+        }
+        server.script(new Reply(429, 0, "slow down"));
+
+        CompletableFuture<HttpResponse<String>> call = policy.send(client, request(),
+                HttpResponse.BodyHandlers.ofString());
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> call.get(10, TimeUnit.SECONDS));
+
+        IOException cause = assertInstanceOf(IOException.class, failure.getCause());
+        assertTrue(cause.getMessage().endsWith("429"), cause.getMessage());
+        assertEquals(11, server.requests());
+        assertEquals(10, policy.stats().retries());
+        assertEquals(1, policy.stats().budgetExhausted());
+    }
+
+    @Test
+    void deadlineCancelsAStreamStillRunning() throws Exception {
+        LlmRetryPolicy policy = new LlmRetryPolicy(10_000, 300, 3, 100, 20, false);
+        server.streamForever();
+
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> call = policy.send(client, request(),
+                HttpResponse.BodyHandlers.ofString());
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> call.get(10, TimeUnit.SECONDS));
+
+        assertInstanceOf(HttpTimeoutException.class, failure.getCause());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        // The exchange was aborted, so the server's writes start failing
+        assertTrue(server.streamAborted.await(10, TimeUnit.SECONDS), "stream still being read");
+        assertEquals(1, policy.stats().deadlinesExceeded());
+        assertEquals(1, server.requests());
+    }
+
+    // Answers enough quick calls for the p95 time to headers to be known
+    private void warmUp(LlmRetryPolicy policy) throws Exception {
+        for (int i = 0; i < HEDGE_WARMUP; i++) {
+            server.script(new Reply(200, 20, "warm-up"));
+            policy.send(client, request(), HttpResponse.BodyHandlers.ofString()).get(10, TimeUnit.SECONDS);
+        }
+        assertTrue(policy.stats().hedgeDelayMillis() < 400, "hedge delay " + policy.stats().hedgeDelayMillis());
+    }
+
+    private HttpRequest request() {
+        return HttpRequest.newBuilder()
+                .uri(server.uri())
+                .POST(HttpRequest.BodyPublishers.ofString("{}"))
+                .build();
+    }
+
+    // Reads bodies as strings, counting how many attempts were handed the real body handler
+    private static HttpResponse.BodyHandler<String> countingBodies(AtomicInteger bodiesRead) {
+        return info -> {
+            bodiesRead.incrementAndGet();
+            return HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+        };
+    }
+
+    private record Reply(int status, long delayMillis, String body) {}
+
+    // Answers requests in arrival order from a script of replies
+    private static final class ScriptedServer implements AutoCloseable {
+        private final HttpServer http;
+        private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        private final ConcurrentLinkedQueue<Reply> script = new ConcurrentLinkedQueue<>();
+        private volatile boolean streamForever;
+        final List<Long> arrivals = new CopyOnWriteArrayList<>();
+        final CountDownLatch streamAborted = new CountDownLatch(1);
+
+        ScriptedServer() {
+            try {
+                http = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            http.setExecutor(executor);
+            http.createContext("/v1/chat/completions", this::handle);
+            http.start();
+        }
+
+        void script(Reply... replies) {
+            script.addAll(List.of(replies));
+        }
+
+        // Every request gets a 200 whose body never ends
+        void streamForever() {
+            streamForever = true;
+        }
+
+        URI uri() {
+            return LlmSettings.completionsUri("http://127.0.0.1:" + http.getAddress().getPort() + "/v1");
+        }
+
+        int requests() {
+            return arrivals.size();
+        }
+
+        @Override
+        public void close() {
+            http.stop(0);
+            executor.shutdownNow();
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            arrivals.add(System.nanoTime());
+            try (InputStream in = exchange.getRequestBody()) {
+                in.readAllBytes();
+            }
+            if (streamForever) {
+                stream(exchange);
+                return;
+            }
+            Reply reply = script.poll();
+            if (reply == null) {
+                reply = new Reply(500, 0, "unscripted");
+            }
+            byte[] body = reply.body().getBytes(StandardCharsets.UTF_8);
+            try {
+                Thread.sleep(reply.delayMillis());
+                exchange.sendResponseHeaders(reply.status(), body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (InterruptedException | IOException e) {
+                // Closing, or the client gave up on this attempt
+                exchange.close();
+            }
+        }
+
+        private void stream(HttpExchange exchange) {
+            byte[] event = "data: {}\n\n".getBytes(StandardCharsets.UTF_8);
+            try {
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream out = exchange.getResponseBody();
+                while (true) {
+                    out.write(event);
+                    out.flush();
+                    Thread.sleep(20);
+                }
+            } catch (IOException e) {
+                streamAborted.countDown();
+            } catch (InterruptedException e) {
+                // Server is closing
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.appointment;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedJournalTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void tornFinalRecordIsDroppedAndOverwritten() throws IOException {
+        long lastStart;
+        try (MappedJournal journal = MappedJournal.open(directory, 4096, 1)) {
+            journal.append(bytes("first"));
+            lastStart = journal.append(bytes("second"));
+            journal.append(bytes("third"));
+        }
+
+        // Flip a payload byte of the last record, as if the crash hit halfway through writing it
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, lastStart + 8);
+            one.flip();
+            one.put(0, (byte) (one.get(0) ^ 0x55));
+            channel.write(one, lastStart + 8);
+        }
+
+        try (MappedJournal journal = MappedJournal.open(directory, 4096, 1)) {
+            assertEquals(List.of("first", "second"), replay(journal, 0));
+            assertEquals(lastStart, journal.position());
+            journal.append(bytes("fourth"));
+            assertEquals(List.of("first", "second", "fourth"), replay(journal, 0));
+        }
+        try (MappedJournal journal = MappedJournal.open(directory, 4096, 1)) {
+            assertEquals(List.of("first", "second", "fourth"), replay(journal, 0));
+        }
+    }
+
+    @Test
+    void rollsOverIntoNewSegments() throws IOException {
+        List<String> written = new ArrayList<>();
+        long middle = 0;
+        List<String> fromMiddle = new ArrayList<>();
+        try (MappedJournal journal = MappedJournal.open(directory, 256, 1)) {
+            for (int i = 0; i < 200; i++) {
+                String record = "record-" + i;
+                if (i == 100) {
+                    middle = journal.position();
+                }
+                if (i >= 100) {
+                    fromMiddle.add(record);
+                }
+                written.add(record);
+                journal.append(bytes(record));
+            }
+            // Bigger than a whole segment: gets a segment of its own
+            String large = "x".repeat(1000);
+            written.add(large);
+            fromMiddle.add(large);
+            journal.append(bytes(large));
+            assertEquals(written, replay(journal, 0));
+        }
+
+        assertTrue(segments().size() > 10, "expected several segments, found " + segments().size());
+        try (MappedJournal journal = MappedJournal.open(directory, 256, 1)) {
+            assertEquals(written, replay(journal, 0));
+            assertEquals(fromMiddle, replay(journal, middle));
+            journal.append(bytes("after"));
+            written.add("after");
+            assertEquals(written, replay(journal, 0));
+        }
+    }
+
+    @Test
+    void deleteBeforeKeepsTheRecordsItCovers() throws Exception {
+        try (MappedJournal journal = MappedJournal.open(directory, 256, 1)) {
+            for (int i = 0; i < 100; i++) {
+                journal.append(bytes("old-" + i));
+            }
+            long cut = journal.position();
+            journal.append(bytes("new-0"));
+            journal.append(bytes("new-1"));
+            int before = segments().size();
+
+            journal.awaitDurable(journal.position());
+            journal.deleteBefore(cut);
+
+            assertTrue(segments().size() < before);
+            assertEquals(List.of("new-0", "new-1"), replay(journal, cut));
+        }
+    }
+
+    private List<String> replay(MappedJournal journal, long from) {
+        List<String> records = new ArrayList<>();
+        journal.replay(from, payload -> records.add(StandardCharsets.UTF_8.decode(payload).toString()));
+        return records;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".log")).sorted().toList();
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.appointment;
+
+import com.cajunsystems.ActorSystem;
+import com.cajunsystems.Pid;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageCodecTest {
+    private static final String NON_ASCII = "Können wir 10:00–11:00 nehmen? 予約 ✓ 🙂";
+
+    private final ActorSystem system = new ActorSystem();
+    private final Pid session = new Pid("session-ß-7", system);
+    private final int slot = SlotTime.parse("2025-11-05", "10:00");
+
+    @AfterEach
+    void shutdown() {
+        system.shutdown();
+    }
+
+    @Test
+    void textMessagesRoundTrip() {
+        UserMessage user = (UserMessage) roundTrip(new UserMessage(NON_ASCII, session));
+        assertEquals(NON_ASCII, user.text());
+        assertEquals(session.actorId(), user.replyTo().actorId());
+
+        assertEquals(new LLMResponse(NON_ASCII, true), roundTrip(new LLMResponse(NON_ASCII, true)));
+        assertEquals(new LLMResponse("", false), roundTrip(new LLMResponse("", false)));
+        assertNull(((GetAvailableSlots) roundTrip(new GetAvailableSlots(null))).replyTo());
+        assertEquals(session.actorId(),
+                ((GetBookedAppointments) roundTrip(new GetBookedAppointments(session))).replyTo().actorId());
+    }
+
+    @Test
+    void slotMessagesRoundTrip() {
+        assertEquals(slot, ((BookAppointment) roundTrip(new BookAppointment(slot, session))).slot());
+        assertEquals(SlotTime.INVALID,
+                ((CancelAppointment) roundTrip(new CancelAppointment(SlotTime.INVALID, session))).slot());
+
+        for (long nanos : new long[] { 0, 1, -1, -123_456_789_012L, Long.MIN_VALUE, Long.MAX_VALUE }) {
+            SlotChanged changed = (SlotChanged) roundTrip(new SlotChanged(slot, true, false, true, session, nanos));
+            assertEquals(nanos, changed.receivedNanos());
+            assertEquals(slot, changed.slot());
+            assertTrue(changed.book());
+            assertFalse(changed.succeeded());
+            assertTrue(changed.fastPath());
+            assertEquals(session.actorId(), changed.replyTo().actorId());
+        }
+
+        int[] slots = { slot, SlotTime.INVALID, slot - 60, Integer.MAX_VALUE, 0, slot };
+        assertArrayEquals(slots, ((BookAppointments) roundTrip(new BookAppointments(slots, session))).slots());
+        assertArrayEquals(new int[0], ((CancelAppointments) roundTrip(new CancelAppointments(new int[0], null))).slots());
+
+        boolean[] succeeded = { true, false, false, true, true, false, true, true, false };
+        int[] positions = { 0, 1, 2, 3, 4, 5, 6, 7, 8 };
+        SlotsChanged changed = (SlotsChanged) roundTrip(new SlotsChanged(positions, succeeded));
+        assertArrayEquals(positions, changed.positions());
+        assertArrayEquals(succeeded, changed.succeeded());
+    }
+
+    @Test
+    void queriesAndPagesKeepInvalidCursors() {
+        QuerySlots first = new QuerySlots(Long.MIN_VALUE, Long.MAX_VALUE, 0, SlotTime.MINUTES_PER_DAY, false,
+                QuerySlots.START, 20, session);
+        QuerySlots decoded = (QuerySlots) roundTrip(first);
+        assertEquals(QuerySlots.START, decoded.cursor());
+        assertEquals(Long.MIN_VALUE, decoded.fromDay());
+        assertEquals(Long.MAX_VALUE, decoded.toDay());
+        assertEquals(first.limit(), decoded.limit());
+
+        SlotPage last = new SlotPage(new int[] { slot, slot + 30 }, SlotPage.END);
+        SlotPage page = MessageCodec.decodeSlotPage(ByteBuffer.wrap(MessageCodec.encode(last)));
+        assertArrayEquals(last.slots(), page.slots());
+        assertEquals(SlotPage.END, page.nextCursor());
+        assertFalse(page.hasMore());
+        assertEquals(slot + 30, MessageCodec.decodeSlotPage(
+                ByteBuffer.wrap(MessageCodec.encode(new SlotPage(new int[0], slot + 30)))).nextCursor());
+    }
+
+    @Test
+    void repliesAndStateRoundTrip() {
+        for (AgentResponse.Part part : AgentResponse.Part.values()) {
+            AgentResponse response = new AgentResponse(NON_ASCII, part);
+            assertEquals(response, MessageCodec.decodeResponse(ByteBuffer.wrap(MessageCodec.encode(response))));
+        }
+
+        BatchResult result = new BatchResult(false, new int[] { slot, SlotTime.INVALID }, new boolean[] { true, false });
+        BatchResult batch = MessageCodec.decodeBatchResult(ByteBuffer.wrap(MessageCodec.encode(result)));
+        assertFalse(batch.book());
+        assertArrayEquals(result.slots(), batch.slots());
+        assertArrayEquals(result.succeeded(), batch.succeeded());
+
+        AppointmentState state = new AppointmentState(PersistentVector.empty(), "Früher: 予約 10:00", 1234)
+                .addMessage("user", NON_ASCII)
+                .addMessage("assistant", "")
+                .addMessage("system", "ok")
+                .addMessage("tool ✓", "custom role");
+        assertEquals(state, MessageCodec.decodeState(ByteBuffer.wrap(MessageCodec.encode(state))));
+    }
+
+    @Test
+    void framesReadBackToBackFromADirectBuffer() {
+        byte[] first = MessageCodec.encode(new LLMResponse(NON_ASCII, false));
+        byte[] second = MessageCodec.encode(new SlotChanged(SlotTime.INVALID, false, true, false, null, -1));
+        ByteBuffer in = ByteBuffer.allocateDirect(first.length + second.length).put(first).put(second).flip();
+
+        assertEquals(new LLMResponse(NON_ASCII, false), MessageCodec.decodeMessage(in, system));
+        assertEquals(new SlotChanged(SlotTime.INVALID, false, true, false, null, -1), MessageCodec.decodeMessage(in, system));
+        assertFalse(in.hasRemaining());
+    }
+
+    @Test
+    void rejectsUnknownVersionsAndTypes() {
+        byte[] frame = MessageCodec.encode(new GetAvailableSlots(session));
+        frame[0] = MessageCodec.VERSION + 1;
+        assertThrows(IllegalArgumentException.class, () -> MessageCodec.decodeMessage(ByteBuffer.wrap(frame), system));
+
+        byte[] state = MessageCodec.encode(new AppointmentState());
+        assertThrows(IllegalArgumentException.class, () -> MessageCodec.decodeMessage(ByteBuffer.wrap(state), system));
+        assertThrows(IllegalArgumentException.class, () -> MessageCodec.decodeSlotPage(ByteBuffer.wrap(state)));
+    }
+
+    private AppointmentMessage roundTrip(AppointmentMessage message) {
+        ByteBuffer in = ByteBuffer.wrap(MessageCodec.encode(message));
+        AppointmentMessage decoded = MessageCodec.decodeMessage(in, system);
+        assertFalse(in.hasRemaining());
+        return decoded;
+    }
+}
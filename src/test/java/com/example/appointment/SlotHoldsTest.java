@@ -0,0 +1,129 @@
+package com.example.appointment;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlotHoldsTest {
+    private static final long TTL_MILLIS = 100;
+    private static final String HOLDER = "session-a";
+    private static final String OTHER = "session-b";
+
+    @Test
+    void holdsKeepSlotsFromOthersUntilReleased() {
+        int[] slots = slots(1);
+        SlotInventoryService inventory = inventory(1);
+        SlotHolds holds = new SlotHolds(inventory, 60_000, 3);
+
+        assertTrue(holds.hold(slots[0], HOLDER));
+        assertTrue(inventory.isHeld(slots[0]));
+        assertFalse(holds.hold(slots[0], OTHER));
+        assertFalse(holds.book(slots[0], OTHER));
+        assertTrue(holds.hold(slots[0], HOLDER), "renewing the holder's own hold");
+
+        holds.release(slots[0], OTHER);
+        assertTrue(holds.isHeldBy(slots[0], HOLDER));
+        holds.release(slots[0], HOLDER);
+        assertTrue(inventory.isAvailable(slots[0]));
+
+        assertTrue(holds.hold(slots[1], HOLDER));
+        assertTrue(holds.book(slots[1], HOLDER));
+        assertEquals(HOLDER, inventory.owner(slots[1]));
+        assertEquals(new SlotHolds.Stats(2, 1, 1, 0, 0), holds.stats());
+    }
+
+    // The holder books every slot, another session tries to and the holder gives them up, all while the
+    // holds expire. Whichever gets there first takes each slot out of the held state, and only that one.
+    @Test
+    void bookReleaseAndExpiryEndEachHoldOnce() throws Exception {
+        for (int round = 0; round < 6; round++) {
+            int days = 20;
+            int[] slots = slots(days);
+            SlotInventoryService inventory = inventory(days);
+            SlotHolds holds = new SlotHolds(inventory, TTL_MILLIS, 3);
+            for (int slot : slots) {
+                assertTrue(holds.hold(slot, HOLDER));
+            }
+
+            // Start the sweeps a little before, at or after the expiry, so they straddle it
+            TimeUnit.MILLISECONDS.sleep(TTL_MILLIS - 40 + round * 30);
+            AtomicInteger booked = new AtomicInteger();
+            List<CompletableFuture<Void>> sweeps = new ArrayList<>();
+            sweeps.add(CompletableFuture.runAsync(() -> sweep(slots, false, slot -> {
+                if (holds.book(slot, HOLDER)) {
+                    booked.incrementAndGet();
+                }
+            })));
+            sweeps.add(CompletableFuture.runAsync(() -> sweep(slots, true, slot -> {
+                if (holds.book(slot, OTHER)) {
+                    booked.incrementAndGet();
+                }
+            })));
+            sweeps.add(CompletableFuture.runAsync(() -> sweep(slots, true, slot -> holds.release(slot, HOLDER))));
+            CompletableFuture.allOf(sweeps.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+
+            // Whatever the sweeps left is expired by the wheel
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (holds.stats().active() > 0 && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+
+            SlotHolds.Stats stats = holds.stats();
+            assertEquals(0, stats.active());
+            assertEquals(slots.length, stats.placed());
+            assertEquals(stats.placed(), stats.converted() + stats.released() + stats.expired(), stats.toString());
+            int bookedSlots = 0;
+            for (int slot : slots) {
+                assertFalse(inventory.isHeld(slot));
+                if (inventory.isBooked(slot)) {
+                    bookedSlots++;
+                } else {
+                    assertTrue(inventory.isAvailable(slot));
+                }
+            }
+            assertEquals(booked.get(), bookedSlots);
+            assertEquals(bookedSlots, inventory.bookedCount());
+            assertTrue(stats.converted() <= bookedSlots);
+        }
+    }
+
+    // Visits every slot, forwards or backwards, spread over a couple of wheel ticks
+    private static void sweep(int[] slots, boolean backwards, IntConsumer action) {
+        for (int i = 0; i < slots.length; i++) {
+            action.accept(slots[backwards ? slots.length - 1 - i : i]);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(400));
+        }
+    }
+
+    private static SlotInventoryService inventory(int days) {
+        SlotInventory calendar = SlotInventory.empty();
+        for (int slot : slots(days)) {
+            calendar = calendar.withSlot(slot);
+        }
+        return new SlotInventoryService(calendar);
+    }
+
+    // Hourly slots, 9:00 to 16:00, over the given number of days
+    private static int[] slots(int days) {
+        LocalDate first = LocalDate.of(2025, 11, 3);
+        int[] slots = new int[days * 8];
+        for (int day = 0; day < days; day++) {
+            for (int hour = 0; hour < 8; hour++) {
+                slots[day * 8 + hour] = SlotTime.of(first.plusDays(day), LocalTime.of(9 + hour, 0));
+            }
+        }
+        return slots;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.appointment;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlotInventoryServiceTest {
+    private static final int THREADS = 16;
+    private static final LocalDate DAY = LocalDate.of(2025, 11, 6);
+    private static final int SLOT = SlotTime.of(DAY, LocalTime.of(9, 0));
+    private static final String OWNER = "session-a";
+    private static final String OTHER = "session-b";
+
+    @Test
+    void oneOfManyConcurrentBookingsWins() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            assertOneWinner(new SlotInventoryService(calendar(), 4), null);
+        }
+    }
+
+    // The journaled path takes the stripe's lock, and only the winner is journaled
+    @Test
+    void oneOfManyConcurrentJournaledBookingsWins() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            RecordingJournal journal = new RecordingJournal();
+            assertOneWinner(new SlotInventoryService(calendar(), 4, journal), journal);
+        }
+    }
+
+    @Test
+    void onlyTheOwnerCancels() {
+        RecordingJournal journal = new RecordingJournal();
+        SlotInventoryService inventory = new SlotInventoryService(calendar(), 4, journal);
+        assertTrue(inventory.tryBook(SLOT, OWNER));
+        long version = inventory.version();
+
+        assertFalse(inventory.cancel(SLOT, OTHER));
+        assertTrue(inventory.isBooked(SLOT));
+        assertEquals(OWNER, inventory.owner(SLOT));
+        assertEquals(version, inventory.version());
+        assertEquals(List.of("book " + OWNER), journal.changes);
+
+        assertTrue(inventory.cancel(SLOT, OWNER));
+        assertTrue(inventory.isAvailable(SLOT));
+        assertNull(inventory.owner(SLOT));
+        assertFalse(inventory.cancel(SLOT, OWNER), "nothing left to cancel");
+        assertEquals(List.of("book " + OWNER, "cancel"), journal.changes);
+    }
+
+    // Every thread is released at once to book the same slot
+    private static void assertOneWinner(SlotInventoryService inventory, RecordingJournal journal) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<String> winners = new CopyOnWriteArrayList<>();
+        List<CompletableFuture<Void>> bookers = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            String session = "session-" + i;
+            bookers.add(CompletableFuture.runAsync(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                if (inventory.tryBook(SLOT, session)) {
+                    winners.add(session);
+                }
+            }, runnable -> Thread.ofPlatform().start(runnable)));
+        }
+        start.countDown();
+        CompletableFuture.allOf(bookers.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+
+        assertEquals(1, winners.size(), winners.toString());
+        assertEquals(winners.get(0), inventory.owner(SLOT));
+        assertEquals(1, inventory.bookedCount());
+        assertEquals(1, inventory.version());
+        if (journal != null) {
+            assertEquals(List.of("book " + winners.get(0)), journal.changes);
+        }
+    }
+
+    private static SlotInventory calendar() {
+        return SlotInventory.empty().withSlots(DAY, LocalTime.of(9, 0), LocalTime.of(10, 0));
+    }
+
+    // Keeps the changes in the order they were journaled
+    private static final class RecordingJournal implements AppointmentJournal {
+        final List<String> changes = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void slotBooked(long epochDay, int minute, String owner) {
+            assertEquals(SLOT, SlotTime.of(epochDay, minute));
+            changes.add("book " + owner);
+        }
+
+        @Override
+        public void slotCancelled(long epochDay, int minute) {
+            assertEquals(SLOT, SlotTime.of(epochDay, minute));
+            changes.add("cancel");
+        }
+
+        @Override
+        public void messageAppended(String sessionId, String role, String content, AppointmentState state) {
+        }
+
+        @Override
+        public AppointmentState recoveredSession(String sessionId) {
+            return new AppointmentState();
+        }
+    }
+}
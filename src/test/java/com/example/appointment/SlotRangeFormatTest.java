@@ -0,0 +1,58 @@
+package com.example.appointment;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SlotRangeFormatTest {
+    @Test
+    void writesAGridWithAGapAsOneRange() {
+        int[] minutes = IntStream.iterate(9 * 60, m -> m <= 16 * 60 + 30, m -> m + 30)
+                .filter(m -> m != 12 * 60)
+                .toArray();
+        String line = format(minutes, minutes.length);
+        assertEquals("09:00–16:30 every 30m except 12:00", line);
+        assertArrayEquals(minutes, parse(line));
+    }
+
+    // Random sets of minutes: a grid with a random step, offset and share of gaps, plus stray times
+    @Test
+    void randomDaysRoundTrip() {
+        Random random = new Random(1);
+        int[] minutes = new int[SlotTime.MINUTES_PER_DAY];
+        for (int round = 0; round < 10_000; round++) {
+            boolean[] day = new boolean[SlotTime.MINUTES_PER_DAY];
+            int step = 1 + random.nextInt(90);
+            int keep = 1 + random.nextInt(100);
+            for (int m = random.nextInt(step); m < day.length; m += step) {
+                day[m] = random.nextInt(100) < keep;
+            }
+            for (int stray = random.nextInt(10); stray > 0; stray--) {
+                day[random.nextInt(day.length)] = true;
+            }
+            int count = 0;
+            for (int m = 0; m < day.length; m++) {
+                if (day[m]) {
+                    minutes[count++] = m;
+                }
+            }
+            String line = format(minutes, count);
+            assertArrayEquals(Arrays.copyOf(minutes, count), parse(line), line);
+        }
+    }
+
+    private static String format(int[] minutes, int count) {
+        return SlotRangeFormat.appendDay(new StringBuilder(), minutes, count).toString();
+    }
+
+    private static int[] parse(String line) {
+        IntStream.Builder parsed = IntStream.builder();
+        SlotRangeFormat.parseDay(line, 0, line.length(), parsed::add);
+        return parsed.build().toArray();
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.appointment;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class StreamingCommandDetectorTest {
+    private static final String[] REPLIES = {
+            "Sure, booking that now.\nBOOK:2025-11-06:09:00\nSee you then!",
+            // A command in the middle of a line
+            "Done. BOOK:2025-11-06:09:00 You're all set.",
+            "Your appointment is gone: CANCEL:2025-11-05:10:00",
+            "CANCEL:2025-11-05:10:00\nYour appointment is cancelled.",
+            // A trailing line with no newline, with and without a command
+            "You're booked.\nBOOK:2025-11-06:09:00",
+            "Here is what's free:\n2025-11-06 at 09:00\nBook it?",
+            "Nothing booked yet.\n",
+            "I booked both.\nBOOK:2025-11-06:09:00 BOOK:2025-11-07:10:00\nAnything else?",
+            "  BOOK:2025-11-06:09:00\nIndented command.",
+            // Text that starts like a command but is not one
+            "BOOKS: none yet. CANCEL: nothing to cancel. BOOK:tomorrow\nCould you pick a time?",
+    };
+
+    @Test
+    void forwardsWholeReplies() {
+        for (String reply : REPLIES) {
+            check(reply, List.of(reply));
+        }
+    }
+
+    @Test
+    void forwardsOneCharacterAtATime() {
+        for (String reply : REPLIES) {
+            List<String> deltas = new ArrayList<>();
+            for (int i = 0; i < reply.length(); i++) {
+                deltas.add(reply.substring(i, i + 1));
+            }
+            check(reply, deltas);
+        }
+    }
+
+    // Every place a reply can be split in two, including inside "BOOK:" and inside the date after it
+    @Test
+    void forwardsEveryTwoWaySplit() {
+        for (String reply : REPLIES) {
+            for (int split = 1; split < reply.length(); split++) {
+                check(reply, List.of(reply.substring(0, split), reply.substring(split)));
+            }
+        }
+    }
+
+    @Test
+    void forwardsRandomDeltas() {
+        Random random = new Random(1);
+        for (int round = 0; round < 1_000; round++) {
+            String reply = REPLIES[random.nextInt(REPLIES.length)];
+            List<String> deltas = new ArrayList<>();
+            for (int start = 0; start < reply.length(); ) {
+                int end = Math.min(reply.length(), start + 1 + random.nextInt(8));
+                deltas.add(reply.substring(start, end));
+                start = end;
+            }
+            check(reply, deltas);
+        }
+    }
+
+    // Streams the deltas through a detector and compares what it forwarded with the interpreter's reading
+    // of the whole reply
+    private static void check(String reply, List<String> deltas) {
+        StringBuilder forwarded = new StringBuilder();
+        List<ResponseInterpreter.Intent> fired = new ArrayList<>();
+        StreamingCommandDetector detector = new StreamingCommandDetector(new StreamingCommandDetector.Listener() {
+            @Override
+            public void onText(String text) {
+                forwarded.append(text);
+            }
+
+            @Override
+            public void onIntent(ResponseInterpreter.Intent intent) {
+                fired.add(intent);
+            }
+        });
+        deltas.forEach(detector::accept);
+        detector.finish();
+
+        ResponseInterpreter.Interpretation expected = ResponseInterpreter.interpret(reply);
+        String message = deltas.toString();
+        assertEquals(expected.text(), forwarded.toString(), message);
+        assertFalse(forwarded.indexOf("BOOK:20") >= 0 || forwarded.indexOf("CANCEL:20") >= 0, message);
+        assertEquals(expected.intents().stream().filter(ResponseInterpreter.Intent::explicit).toList(), fired,
+                message);
+        assertEquals(!fired.isEmpty(), detector.commandsFired(), message);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.appointment;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class SystemPromptRendererTest {
+    private static final LocalDate FIRST_DAY = LocalDate.of(2025, 11, 3);
+    private static final int WINDOW_DAYS = 14;
+
+    @Test
+    void clinicSlotsRoundTrip() {
+        assertRoundTrip(PromptSlotCheck.clinic(24, 6, 30, new Random(1)));
+    }
+
+    @Test
+    void regularSlotsRoundTrip() {
+        assertRoundTrip(PromptSlotCheck.regular(6, 30, new Random(2)));
+    }
+
+    // Every way of rendering the slot section parses back to exactly the free slots it covers
+    private static void assertRoundTrip(SlotInventory calendar) {
+        SlotInventoryService inventory = new SlotInventoryService(calendar);
+        Clock clock = Clock.fixed(FIRST_DAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        SystemPromptRenderer list = new SystemPromptRenderer(inventory, false, 0, clock);
+        SystemPromptRenderer ranges = new SystemPromptRenderer(inventory, true, 0, clock);
+        SystemPromptRenderer window = new SystemPromptRenderer(inventory, true, WINDOW_DAYS, clock);
+
+        int[] free = freeSlots(inventory, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertArrayEquals(free, parse(list.slotSection()), "list");
+        assertArrayEquals(free, parse(ranges.slotSection()), "ranges");
+
+        long from = window.windowStart(SystemPromptRenderer.NO_FOCUS);
+        assertArrayEquals(freeSlots(inventory, from, from + WINDOW_DAYS),
+                parse(window.slotSection(SystemPromptRenderer.NO_FOCUS)), "window from today");
+        // A conversation about a date three weeks in
+        long focus = FIRST_DAY.plusDays(21).toEpochDay();
+        from = window.windowStart(focus);
+        assertArrayEquals(freeSlots(inventory, from, from + WINDOW_DAYS),
+                parse(window.slotSection(focus)), "window around a focus day");
+    }
+
+    private static int[] parse(String section) {
+        IntStream.Builder slots = IntStream.builder();
+        SlotRangeFormat.parseSection(section, slots::add);
+        return slots.build().toArray();
+    }
+
+    private static int[] freeSlots(SlotInventoryService inventory, long fromDay, long toDay) {
+        IntStream.Builder slots = IntStream.builder();
+        for (long d = Math.max(fromDay, inventory.startEpochDay()); d < Math.min(toDay, inventory.endEpochDay()); d++) {
+            inventory.forEachFreeSlot(d, slots::add);
+        }
+        return slots.build().toArray();
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.appointment;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelTest {
+    private static final long TICK_MILLIS = 20;
+    private static final int WHEEL_SIZE = 8;
+    // Well under a turn of the wheel, so a timeout that waited a whole extra turn cannot pass
+    private static final long SLACK_MILLIS = 3 * TICK_MILLIS;
+
+    private final TimerWheel wheel = new TimerWheel("timer-wheel-test", TICK_MILLIS, WHEEL_SIZE);
+
+    @Test
+    void delayBelowOneTickFiresOnTheNextTick() throws Exception {
+        for (long delayMillis : new long[] { 0, 1, TICK_MILLIS / 2, TICK_MILLIS - 1 }) {
+            assertFiresOnTime(delayMillis);
+        }
+    }
+
+    // Lands in the bucket the wheel is on, one round ahead
+    @Test
+    void delayOfExactlyOneTurnWaitsOneTurn() throws Exception {
+        assertFiresOnTime(WHEEL_SIZE * TICK_MILLIS);
+        assertFiresOnTime(WHEEL_SIZE * TICK_MILLIS - 1);
+        assertFiresOnTime(WHEEL_SIZE * TICK_MILLIS + 1);
+    }
+
+    @Test
+    void delayOfSeveralTurnsWaitsThemAll() throws Exception {
+        assertFiresOnTime(3 * WHEEL_SIZE * TICK_MILLIS);
+        assertFiresOnTime(3 * WHEEL_SIZE * TICK_MILLIS + 2 * TICK_MILLIS + 1);
+    }
+
+    // Timeouts scheduled at once, one per tick over several turns, each fire after their own delay
+    @Test
+    void manyTimeoutsEachFireOnTime() throws Exception {
+        int count = 3 * WHEEL_SIZE;
+        Recorder[] recorders = new Recorder[count];
+        for (int i = 0; i < count; i++) {
+            recorders[i] = new Recorder(TimeUnit.MILLISECONDS.toNanos(i * TICK_MILLIS + 1));
+            wheel.schedule(recorders[i], recorders[i].delayNanos);
+        }
+        for (Recorder recorder : recorders) {
+            recorder.assertFiredOnTime();
+        }
+        assertEquals(0, wheel.pending());
+    }
+
+    private void assertFiresOnTime(long delayMillis) throws Exception {
+        Recorder recorder = new Recorder(TimeUnit.MILLISECONDS.toNanos(delayMillis));
+        wheel.schedule(recorder, recorder.delayNanos);
+        recorder.assertFiredOnTime();
+    }
+
+    private static final class Recorder extends TimerWheel.Timeout {
+        final long delayNanos;
+        final long scheduledNanos = System.nanoTime();
+        final CountDownLatch fired = new CountDownLatch(1);
+        volatile long firedNanos;
+
+        Recorder(long delayNanos) {
+            this.delayNanos = delayNanos;
+        }
+
+        @Override
+        protected void expire() {
+            firedNanos = System.nanoTime();
+            fired.countDown();
+        }
+
+        // Never before the deadline, and no later than the tick after it plus scheduling noise
+        void assertFiredOnTime() throws InterruptedException {
+            assertTrue(fired.await(10, TimeUnit.SECONDS), "never fired");
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(firedNanos - scheduledNanos);
+            long delayMillis = TimeUnit.NANOSECONDS.toMillis(delayNanos);
+            assertTrue(firedNanos - scheduledNanos >= delayNanos,
+                    "delay " + delayMillis + " ms fired after " + elapsedMillis + " ms");
+            assertTrue(elapsedMillis <= delayMillis + TICK_MILLIS + SLACK_MILLIS,
+                    "delay " + delayMillis + " ms fired after " + elapsedMillis + " ms");
+        }
+    }
+}